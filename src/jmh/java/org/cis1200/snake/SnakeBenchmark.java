@@ -0,0 +1,170 @@
+package org.cis1200.snake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the per-tick simulation paths, parameterized by snake
+ * length and food count.
+ *
+ * The snake runs clockwise around a square loop at one pixel per tick. The
+ * loop is longer than the longest snake, so it never runs into itself, and
+ * the food sits inside the loop where the head never reaches it. That keeps
+ * every benchmark in the same steady state for as long as it runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnakeBenchmark {
+    private static final int BOARD_SIZE = 2600;
+    private static final int LOOP_MIN = 100;
+    private static final int LOOP_MAX = 2500;
+    private static final int LOOP_SIDE = LOOP_MAX - LOOP_MIN;
+    private static final int LOOP_LENGTH = 4 * LOOP_SIDE;
+
+    @Param({"16", "1024", "8192"})
+    public int snakeLength;
+
+    @Param({"4", "1024", "16384"})
+    public int foodCount;
+
+    private SnakeEngine engine;
+    private Snake snake;
+    private Apple apple;
+    private int goldenCount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // Lay the body out behind the head along the loop
+        List<Point> body = new ArrayList<>();
+        for (int i = 0; i < snakeLength; i++) {
+            body.add(pointOnLoop(snakeLength - i));
+        }
+        Point head = body.get(0);
+        snake = new Snake(head.x, head.y, BOARD_SIZE, BOARD_SIZE, body);
+        snake.setSnakeVX(1);
+        snake.setSnakeVY(1);
+
+        // Fill the inside of the loop with food
+        apple = new Apple(BOARD_SIZE, BOARD_SIZE);
+        apple.remove(0);
+        int inner = LOOP_SIDE - 2 * 200;
+        int perRow = (int) Math.ceil(Math.sqrt(foodCount));
+        int spacing = Math.max(1, inner / perRow);
+        for (int i = 0; i < foodCount; i++) {
+            apple.addPoint(LOOP_MIN + 200 + (i % perRow) * spacing,
+                    LOOP_MIN + 200 + (i / perRow) * spacing);
+        }
+
+        GoldenApple goldenApple = new GoldenApple(BOARD_SIZE, BOARD_SIZE);
+        goldenApple.remove(0);
+        PoisonApple poisonApple = new PoisonApple(BOARD_SIZE, BOARD_SIZE);
+        poisonApple.remove(0);
+        goldenCount = 0;
+
+        engine = new SnakeEngine(BOARD_SIZE, BOARD_SIZE, 42L);
+        engine.load(snake, apple, goldenApple, poisonApple, 0);
+        engine.steer(directionAt(head.x, head.y));
+    }
+
+    /**
+     * Returns the point the given distance clockwise from the loop's
+     * upper-left corner.
+     */
+    private static Point pointOnLoop(int distance) {
+        int d = Math.floorMod(distance, LOOP_LENGTH);
+        if (d < LOOP_SIDE) {
+            return new Point(LOOP_MIN + d, LOOP_MIN);
+        } else if (d < 2 * LOOP_SIDE) {
+            return new Point(LOOP_MAX, LOOP_MIN + d - LOOP_SIDE);
+        } else if (d < 3 * LOOP_SIDE) {
+            return new Point(LOOP_MAX - (d - 2 * LOOP_SIDE), LOOP_MAX);
+        } else {
+            return new Point(LOOP_MIN, LOOP_MAX - (d - 3 * LOOP_SIDE));
+        }
+    }
+
+    /**
+     * Returns the direction that keeps a head at (x, y) on the loop.
+     */
+    private static Direction directionAt(int x, int y) {
+        if (y == LOOP_MIN && x < LOOP_MAX) {
+            return Direction.RIGHT;
+        } else if (x == LOOP_MAX && y < LOOP_MAX) {
+            return Direction.DOWN;
+        } else if (y == LOOP_MAX && x > LOOP_MIN) {
+            return Direction.LEFT;
+        } else {
+            return Direction.UP;
+        }
+    }
+
+    private Direction nextDirection() {
+        return directionAt(snake.getPx(), snake.getPy());
+    }
+
+    @Benchmark
+    public int snakeMove() {
+        engine.steer(nextDirection());
+        snake.move();
+        return snake.getPx();
+    }
+
+    @Benchmark
+    public boolean snakeHasHitItself() {
+        return snake.hasHitItself();
+    }
+
+    @Benchmark
+    public int snakeGrow() {
+        snake.grow(1);
+        snake.shrink(1);
+        return snake.getSegments().size();
+    }
+
+    @Benchmark
+    public boolean foodIntersects() {
+        engine.steer(nextDirection());
+        snake.move();
+        return apple.intersects(snake);
+    }
+
+    @Benchmark
+    public int generateApples() {
+        engine.generateApples();
+        // Undo any golden apple spawn so the food count stays fixed
+        GoldenApple golden = engine.getGoldenApple();
+        while (golden.getSegments().size() > goldenCount) {
+            golden.remove(golden.getSegments().size() - 1);
+        }
+        return golden.getSegments().size();
+    }
+
+    /**
+     * One full game tick: steer, move, food collisions and game-over checks.
+     * This is the work GameCourt.begin() hands to the engine before it
+     * repaints.
+     */
+    @Benchmark
+    public int tick() {
+        return engine.step(nextDirection());
+    }
+}
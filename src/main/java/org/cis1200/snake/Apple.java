@@ -1,47 +1,49 @@
 package org.cis1200.snake;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 // The Apple class represents the apple object in the Snake game
 public class Apple extends GameObj implements Food {
     // Constants for the size and initial positions of the apple
     public static final int SIZE = 30;
-    public static final int INIT_POS_X = (int)(Math.random() * 560);
-    public static final int INIT_POS_Y = (int)(Math.random() * 360);
     public static final int INIT_VEL_X = 0;
     public static final int INIT_VEL_Y = 0;
+    public static final String IMAGE_PATH = "files/Apple.png";
+
+    // Fallback drawing colors
+    private static final Color FALLBACK_COLOR = new Color(231, 76, 60);
+    private static final Color HIGHLIGHT_COLOR = new Color(255, 255, 255, 100);
 
     private BufferedImage appleImg; // Image for the apple
 
     // Constructor for creating an Apple object with random initial position
     public Apple(int boardWidth, int boardHeight) {
-        super(INIT_VEL_X, INIT_VEL_Y, INIT_POS_X, INIT_POS_Y, SIZE, SIZE, boardWidth, boardHeight);
+        this(boardWidth, boardHeight, new SplittableRandom());
+    }
 
-        // Load the apple image from a file
-        try {
-            appleImg = ImageIO.read(new File("files/apple.png"));
-        } catch (IOException e) {
-            System.out.println("Error loading apple image");
-        }
+    // Constructor for creating an Apple object placed by the given random stream
+    public Apple(int boardWidth, int boardHeight, SplittableRandom random) {
+        super(INIT_VEL_X, INIT_VEL_Y, 0, 0, SIZE, SIZE, boardWidth, boardHeight);
+        useSpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
+        setRandom(random);
+        respawn();
+
+        // Shared with every other apple; decoded and scaled only once
+        appleImg = SpriteCache.get(IMAGE_PATH, SIZE, SIZE);
     }
 
     // Constructor for creating an Apple object with specified position
     public Apple(int positionX, int positionY, int boardWidth,
-                 int boardHeight, LinkedList<Point> objs) {
+                 int boardHeight, List<Point> objs) {
         super(INIT_VEL_X, INIT_VEL_Y, positionX, positionY,
                 SIZE, SIZE, boardWidth, boardHeight, objs);
+        useSpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
 
-        // Load the apple image from a file
-        try {
-            appleImg = ImageIO.read(new File("files/apple.png"));
-        } catch (IOException e) {
-            System.out.println("Error loading apple image");
-        }
+        // Shared with every other apple; decoded and scaled only once
+        appleImg = SpriteCache.get(IMAGE_PATH, SIZE, SIZE);
     }
 
     // Method to update the snake when it eats the apple
@@ -52,42 +54,33 @@ public class Apple extends GameObj implements Food {
     // Draw method to display the apple on the game board
     @Override
     public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
+        Graphics2D g2d = (Graphics2D) g;
+        Object oldAntialias = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        Stroke oldStroke = g2d.getStroke();
+        Color oldColor = g2d.getColor();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
-        for (Point p : getGameObjects()) {
+        SegmentBuffer items = getSegments();
+        for (int i = 0; i < items.size(); i++) {
+            int x = items.getX(i);
+            int y = items.getY(i);
             if (appleImg != null) {
                 // Draw apple image directly without shadow to avoid silhouette
-                g2d.drawImage(appleImg, p.x, p.y, SIZE, SIZE, null);
+                g2d.drawImage(appleImg, x, y, null);
             } else {
                 // Fallback to colored circle if image fails to load
-                g2d.setColor(new Color(231, 76, 60));
-                g2d.fillOval(p.x, p.y, SIZE, SIZE);
+                g2d.setColor(FALLBACK_COLOR);
+                g2d.fillOval(x, y, SIZE, SIZE);
                 
                 // Add highlight
-                g2d.setColor(new Color(255, 255, 255, 100));
-                g2d.fillOval(p.x + 5, p.y + 5, SIZE/3, SIZE/3);
+                g2d.setColor(HIGHLIGHT_COLOR);
+                g2d.fillOval(x + 5, y + 5, SIZE/3, SIZE/3);
             }
         }
         
-        g2d.dispose();
-    }
-
-    // Method to check if the apple intersects with another game object
-    @Override
-    public boolean intersects(GameObj that) {
-        for (int i = 0; i < getGameObjects().size(); i++) {
-            Point p = getGameObjects().get(i);
-            // Check for intersection based on the coordinates of the objects
-            if (p.x + getWidth() >= that.getPx()
-                    && p.y + getHeight() >= that.getPy()
-                    && that.getPx() + that.getWidth() >= p.x
-                    && that.getPy() + that.getHeight() >= p.y) {
-                remove(i); // Remove the eaten apple
-                return true;
-            }
-        }
-        return false;
+        g2d.setColor(oldColor);
+        g2d.setStroke(oldStroke);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, oldAntialias);
     }
     
     /**
@@ -107,9 +100,9 @@ public class Apple extends GameObj implements Food {
         int minX = 200; // Leave space for scoreboard
         int minY = 100; // Leave space for top area
         
-        int x = minX + (int)(Math.random() * (getMaxX() - minX));
-        int y = minY + (int)(Math.random() * (getMaxY() - minY));
+        int x = randomBetween(minX, getMaxX());
+        int y = randomBetween(minY, getMaxY());
         
-        getGameObjects().add(new Point(x, y));
+        addPoint(x, y);
     }
 }
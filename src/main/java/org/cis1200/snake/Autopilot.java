@@ -0,0 +1,319 @@
+package org.cis1200.snake;
+
+import java.util.Arrays;
+
+/**
+ * A computer player that steers along the shortest safe path to the nearest
+ * apple or golden apple.
+ *
+ * The snake moves a whole step of its speed every tick, so the positions its
+ * head can reach form a lattice through the head with that spacing. Planning
+ * runs a breadth-first search over that lattice, where a state is a lattice
+ * cell plus the direction the head arrived from. A move is allowed if it
+ * does not turn straight back, stays on the board, misses the body and the
+ * poison apples, and would not end the game at once: the engine ends it when
+ * the move after this one would leave the board or hit the body, so that
+ * cell must be clear too. The body is treated as if it stayed where it is,
+ * which only errs on the safe side since the tail moves away. The first
+ * cell where the head would overlap food ends the search.
+ *
+ * The path is then followed one move per tick, and only planned again when
+ * the snake's position, speed, score or food no longer match it. If no food
+ * can be reached the snake keeps to any move that does not end the game,
+ * preferring to go straight, and tries planning again every few ticks.
+ *
+ * All search arrays are allocated up front and reused; cells are marked with
+ * a stamp that changes each plan instead of being cleared. Deciding only
+ * allocates when the board or the snake's speed makes the lattice larger.
+ * The cost depends on the board size, not the snake's length, since the
+ * body is looked up in its occupancy grid.
+ */
+public class Autopilot implements BatchSimulator.Policy {
+    /* Ticks to wait before planning again after no food was in reach */
+    private static final int RETRY_TICKS = 8;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /* Per direction ordinal (UP, DOWN, LEFT, RIGHT) */
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
+    private static final int[] REVERSE = {1, 0, 3, 2};
+    private static final int NO_DIRECTION = 4;
+
+    /* Lattice of the current plan */
+    private int originX;
+    private int originY;
+    private int stepX;
+    private int stepY;
+    private int columns;
+    private int rows;
+
+    /* Per cell: stamp of the plan that marked it food or poison */
+    private int[] foodStamps = new int[0];
+    private int[] poisonStamps = new int[0];
+
+    /* Per state (cell * 4 + arrival direction) */
+    private int[] visitedStamps = new int[0];
+    private int[] parents = new int[0];
+    private int[] queue = new int[0];
+
+    private int stamp;
+
+    /* The planned moves, and what the game should look like before the next */
+    private byte[] path = new byte[0];
+    private int pathLength;
+    private int pathIndex;
+    private int expectedX;
+    private int expectedY;
+    private int plannedScore;
+    private int plannedFood;
+    private int plannedSpeedX;
+    private int plannedSpeedY;
+    private int plannedMaxX;
+    private int plannedMaxY;
+    private int retryIn;
+
+    /**
+     * Picks the direction to steer before the engine's next tick.
+     *
+     * @return the next move toward food, a move that survives if there is
+     *         no path, or null if every move ends the game
+     */
+    @Override
+    public Direction decide(SnakeEngine engine) {
+        Snake snake = engine.getSnake();
+        boolean unchanged = isUnchanged(engine);
+        boolean onPath = unchanged && pathIndex < pathLength
+                && snake.getPx() == expectedX && snake.getPy() == expectedY;
+        if (!onPath) {
+            if (unchanged && pathLength == 0 && retryIn > 0) {
+                retryIn--;
+            } else {
+                plan(engine);
+            }
+        }
+
+        OccupancyGrid body = snake.getSegments().getOccupancy();
+        int column = (snake.getPx() - originX) / stepX;
+        int row = (snake.getPy() - originY) / stepY;
+        if (pathIndex < pathLength) {
+            int d = path[pathIndex];
+            if (isSafe(body, column + STEP_X[d], row + STEP_Y[d], d)) {
+                pathIndex++;
+                expectedX = snake.getPx() + STEP_X[d] * stepX;
+                expectedY = snake.getPy() + STEP_Y[d] * stepY;
+                return DIRECTIONS[d];
+            }
+            // Something moved into the way; plan again next tick
+            pathLength = 0;
+        }
+
+        // No food in reach: survive, going straight if that is safe
+        int arrival = currentDirection(snake);
+        boolean hasNeck = snake.getSegments().size() > 1;
+        for (int i = 0; i < 4; i++) {
+            int d = arrival == NO_DIRECTION ? i : (arrival + i) % 4;
+            if (hasNeck && arrival != NO_DIRECTION && d == REVERSE[arrival]) {
+                continue;
+            }
+            if (isSafe(body, column + STEP_X[d], row + STEP_Y[d], d)) {
+                return DIRECTIONS[d];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether nothing the last plan depended on has changed: the snake is
+     * still on its lattice and nothing was eaten or spawned.
+     */
+    private boolean isUnchanged(SnakeEngine engine) {
+        Snake snake = engine.getSnake();
+        return stepX > 0
+                && snake.getSnakeVX() == plannedSpeedX && snake.getSnakeVY() == plannedSpeedY
+                && snake.getMaxX() == plannedMaxX && snake.getMaxY() == plannedMaxY
+                && Math.floorMod(snake.getPx() - originX, stepX) == 0
+                && Math.floorMod(snake.getPy() - originY, stepY) == 0
+                && engine.getScore() == plannedScore && foodCount(engine) == plannedFood;
+    }
+
+    private static int foodCount(SnakeEngine engine) {
+        return engine.getApple().getSegments().size()
+                + engine.getGoldenApple().getSegments().size()
+                + engine.getPoisonApple().getSegments().size();
+    }
+
+    /**************************************************************************
+     * PLANNING
+     **************************************************************************/
+
+    /**
+     * Searches for the nearest food and stores the moves that lead there,
+     * or an empty path if there is none in reach.
+     */
+    private void plan(SnakeEngine engine) {
+        Snake snake = engine.getSnake();
+        prepare(snake);
+        markFood(engine.getApple(), Apple.SIZE, foodStamps);
+        markFood(engine.getGoldenApple(), GoldenApple.SIZE, foodStamps);
+        markFood(engine.getPoisonApple(), PoisonApple.SIZE, poisonStamps);
+        pathLength = 0;
+        pathIndex = 0;
+        expectedX = snake.getPx();
+        expectedY = snake.getPy();
+        plannedScore = engine.getScore();
+        plannedFood = foodCount(engine);
+        plannedSpeedX = snake.getSnakeVX();
+        plannedSpeedY = snake.getSnakeVY();
+        plannedMaxX = snake.getMaxX();
+        plannedMaxY = snake.getMaxY();
+        retryIn = RETRY_TICKS;
+
+        OccupancyGrid body = snake.getSegments().getOccupancy();
+        boolean hasNeck = snake.getSegments().size() > 1;
+        int arrival = currentDirection(snake);
+        int startCell = cell((snake.getPx() - originX) / stepX, (snake.getPy() - originY) / stepY);
+        int start = startCell * 4 + (arrival == NO_DIRECTION ? 0 : arrival);
+
+        // Search outward from the head, remembering how each state was reached
+        int head = 0;
+        int tail = 0;
+        visitedStamps[start] = stamp;
+        queue[tail++] = start;
+        while (head < tail) {
+            int state = queue[head++];
+            int came = state == start ? arrival : state & 3;
+            int column = (state >> 2) % columns;
+            int row = (state >> 2) / columns;
+            for (int d = 0; d < 4; d++) {
+                if (came != NO_DIRECTION && d == REVERSE[came] && (hasNeck || state != start)) {
+                    continue;
+                }
+                int nextColumn = column + STEP_X[d];
+                int nextRow = row + STEP_Y[d];
+                if (!isSafe(body, nextColumn, nextRow, d)) {
+                    continue;
+                }
+                int next = cell(nextColumn, nextRow) * 4 + d;
+                if (visitedStamps[next] == stamp) {
+                    continue;
+                }
+                visitedStamps[next] = stamp;
+                parents[next] = state;
+                if (foodStamps[next >> 2] == stamp) {
+                    storePath(start, next);
+                    return;
+                }
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * Walks the parents back from the goal to store the moves in order.
+     */
+    private void storePath(int start, int goal) {
+        int length = 0;
+        for (int state = goal; state != start; state = parents[state]) {
+            length++;
+        }
+        int index = length;
+        for (int state = goal; state != start; state = parents[state]) {
+            path[--index] = (byte) (state & 3);
+        }
+        pathLength = length;
+    }
+
+    /**
+     * Lays the lattice through the snake's head, growing the arrays if it
+     * has more cells than before, and starts a new stamp.
+     */
+    private void prepare(Snake snake) {
+        stepX = Math.max(1, snake.getSnakeVX());
+        stepY = Math.max(1, snake.getSnakeVY());
+        originX = Math.floorMod(snake.getPx(), stepX);
+        originY = Math.floorMod(snake.getPy(), stepY);
+        columns = Math.max(0, snake.getMaxX() - originX) / stepX + 1;
+        rows = Math.max(0, snake.getMaxY() - originY) / stepY + 1;
+
+        int cells = columns * rows;
+        if (foodStamps.length < cells) {
+            foodStamps = new int[cells];
+            poisonStamps = new int[cells];
+            visitedStamps = new int[4 * cells];
+            parents = new int[4 * cells];
+            queue = new int[4 * cells];
+            path = new byte[4 * cells];
+            stamp = 0;
+        }
+        stamp++;
+        if (stamp == 0) {
+            // Wrapped around; old stamps could match again
+            Arrays.fill(foodStamps, 0);
+            Arrays.fill(poisonStamps, 0);
+            Arrays.fill(visitedStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Stamps every cell from which the snake's box overlaps one of the
+     * objects, using the same test as GameObj.intersects().
+     */
+    private void markFood(GameObj food, int size, int[] stamps) {
+        SegmentBuffer items = food.getSegments();
+        for (int i = 0; i < items.size(); i++) {
+            int minColumn = Math.max(0, ceilDiv(items.getX(i) - Snake.SIZE - originX, stepX));
+            int maxColumn = Math.min(columns - 1,
+                    Math.floorDiv(items.getX(i) + size - originX, stepX));
+            int minRow = Math.max(0, ceilDiv(items.getY(i) - Snake.SIZE - originY, stepY));
+            int maxRow = Math.min(rows - 1, Math.floorDiv(items.getY(i) + size - originY, stepY));
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int column = minColumn; column <= maxColumn; column++) {
+                    stamps[cell(column, row)] = stamp;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the head can move into the cell going in direction d without
+     * the game ending: the cell and the one after it must both be on the
+     * board and clear of the body, and the cell clear of poison.
+     */
+    private boolean isSafe(OccupancyGrid body, int column, int row, int d) {
+        int afterColumn = column + STEP_X[d];
+        int afterRow = row + STEP_Y[d];
+        if (column < 0 || column >= columns || row < 0 || row >= rows
+                || afterColumn < 0 || afterColumn >= columns
+                || afterRow < 0 || afterRow >= rows) {
+            return false;
+        }
+        if (poisonStamps[cell(column, row)] == stamp) {
+            return false;
+        }
+        return body.count(originX + column * stepX, originY + row * stepY) == 0
+                && body.count(originX + afterColumn * stepX, originY + afterRow * stepY) == 0;
+    }
+
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+
+    private static int ceilDiv(int x, int y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private static int currentDirection(Snake snake) {
+        if (snake.getVy() < 0) {
+            return Direction.UP.ordinal();
+        } else if (snake.getVy() > 0) {
+            return Direction.DOWN.ordinal();
+        } else if (snake.getVx() < 0) {
+            return Direction.LEFT.ordinal();
+        } else if (snake.getVx() > 0) {
+            return Direction.RIGHT.ordinal();
+        }
+        return NO_DIRECTION;
+    }
+}
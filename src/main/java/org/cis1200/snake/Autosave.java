@@ -0,0 +1,378 @@
+package org.cis1200.snake;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the game in the background while it is played, so that little is
+ * lost if the game is closed or crashes.
+ *
+ * Rewriting every segment each second would cost more the longer the snake
+ * gets, so most saves are deltas instead. Every tick adds a few bytes to the
+ * next delta: how far the head moved and how much the length changed. Once
+ * per delta interval the delta is sealed with the score, position and speed,
+ * plus the apples if any were eaten, and appended to a log. Every so many
+ * deltas a full GameSnapshot checkpoint replaces the log. Only that
+ * checkpoint depends on the snake's length.
+ *
+ * The log is laid out as:
+ *
+ *   int magic, int version,
+ *   then per delta: int length, payload, int CRC32 of the payload,
+ *   where the payload is varint ticks, 3 zigzag varints per tick (head x and
+ *   y change, length change), zigzag varint score, px, py, speed x and y,
+ *   byte food flag, and if it is set varint count and coordinates for the
+ *   apples and for the golden apples.
+ *
+ * Replaying a tick pushes the new head, drops the tail as move() does, then
+ * pads or cuts the tail to the recorded length, which is also how growing
+ * and shrinking change it. A new log is started before its checkpoint is
+ * written, so a crash in between pairs the old checkpoint with an empty log
+ * rather than the new log with the old checkpoint. A delta cut short by a
+ * crash fails its checksum and is ignored.
+ *
+ * Everything is written by a PersistenceService; the game thread only
+ * encodes.
+ */
+public class Autosave {
+    /* "SNKD" */
+    public static final int MAGIC = 0x534E4B44;
+    public static final int VERSION = 1;
+
+    /* Seal a delta about once a second */
+    public static final int DEFAULT_DELTA_TICKS = 1000 / SnakeEngine.TICK_MILLIS;
+    public static final int DEFAULT_DELTAS_PER_CHECKPOINT = 30;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path checkpointPath;
+    private final Path deltaPath;
+    private final PersistenceService persistence;
+    private final int deltaTicks;
+    private final int deltasPerCheckpoint;
+
+    /* Encoding state, used only by the game thread */
+    private final ByteArrayOutputStream ticks = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+    private final CRC32 crc = new CRC32();
+    private boolean started;
+    private int tickCount;
+    private int deltaCount;
+    private boolean foodChanged;
+    private int lastHeadX;
+    private int lastHeadY;
+    private int lastLength;
+
+    /* What the persistence thread still has to write, guarded by this */
+    private GameSnapshot pendingCheckpoint;
+    private final ByteArrayOutputStream pendingDeltas = new ByteArrayOutputStream();
+    private boolean pendingDiscard;
+
+    /* Set when a write failed, so that the next delta is a checkpoint */
+    private volatile boolean failed;
+
+    public Autosave(Path checkpointPath, Path deltaPath, PersistenceService persistence) {
+        this(checkpointPath, deltaPath, persistence,
+                DEFAULT_DELTA_TICKS, DEFAULT_DELTAS_PER_CHECKPOINT);
+    }
+
+    /**
+     * @param deltaTicks           ticks recorded in each delta
+     * @param deltasPerCheckpoint  deltas appended before the next checkpoint
+     */
+    public Autosave(Path checkpointPath, Path deltaPath, PersistenceService persistence,
+                    int deltaTicks, int deltasPerCheckpoint) {
+        this.checkpointPath = checkpointPath;
+        this.deltaPath = deltaPath;
+        this.persistence = persistence;
+        this.deltaTicks = deltaTicks;
+        this.deltasPerCheckpoint = deltasPerCheckpoint;
+    }
+
+    /**************************************************************************
+     * RECORDING
+     **************************************************************************/
+
+    /**
+     * Starts autosaving the engine's current game with a checkpoint.
+     */
+    public void start(SnakeEngine engine) {
+        checkpoint(engine);
+    }
+
+    /**
+     * Records the tick the engine just stepped, sealing a delta or taking a
+     * checkpoint when one is due.
+     *
+     * @param events what step() returned for the tick
+     */
+    public void recordTick(SnakeEngine engine, int events) {
+        if (!started) {
+            return;
+        }
+        SegmentBuffer body = engine.getSnake().getSegments();
+        int headX = body.firstX();
+        int headY = body.firstY();
+        Varint.write(ticks, Varint.zigzag(headX - lastHeadX));
+        Varint.write(ticks, Varint.zigzag(headY - lastHeadY));
+        Varint.write(ticks, Varint.zigzag(body.size() - lastLength));
+        lastHeadX = headX;
+        lastHeadY = headY;
+        lastLength = body.size();
+        tickCount++;
+        if ((events & (SnakeEngine.ATE_APPLE | SnakeEngine.ATE_GOLDEN_APPLE
+                | SnakeEngine.ATE_POISON_APPLE)) != 0) {
+            foodChanged = true;
+        }
+
+        if (tickCount >= deltaTicks) {
+            if (failed || deltaCount + 1 >= deltasPerCheckpoint) {
+                checkpoint(engine);
+            } else {
+                sealDelta(engine);
+            }
+        }
+    }
+
+    /**
+     * Stops autosaving and removes what was saved, for a game that has
+     * ended and has nothing left to resume.
+     */
+    public void discard() {
+        started = false;
+        synchronized (this) {
+            pendingCheckpoint = null;
+            pendingDeltas.reset();
+            pendingDiscard = true;
+        }
+        submit();
+    }
+
+    private void checkpoint(SnakeEngine engine) {
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.capture(engine);
+        SegmentBuffer body = engine.getSnake().getSegments();
+        lastHeadX = body.isEmpty() ? 0 : body.firstX();
+        lastHeadY = body.isEmpty() ? 0 : body.firstY();
+        lastLength = body.size();
+        ticks.reset();
+        tickCount = 0;
+        deltaCount = 0;
+        foodChanged = false;
+        started = true;
+
+        synchronized (this) {
+            // The checkpoint supersedes every delta not yet written
+            pendingCheckpoint = snapshot;
+            pendingDeltas.reset();
+        }
+        submit();
+    }
+
+    private void sealDelta(SnakeEngine engine) {
+        Snake snake = engine.getSnake();
+        delta.reset();
+        Varint.write(delta, tickCount);
+        byte[] moves = ticks.toByteArray();
+        delta.write(moves, 0, moves.length);
+        Varint.write(delta, Varint.zigzag(engine.getScore()));
+        Varint.write(delta, Varint.zigzag(snake.getPx()));
+        Varint.write(delta, Varint.zigzag(snake.getPy()));
+        Varint.write(delta, Varint.zigzag(snake.getSnakeVX()));
+        Varint.write(delta, Varint.zigzag(snake.getSnakeVY()));
+        delta.write(foodChanged ? 1 : 0);
+        if (foodChanged) {
+            // Only a handful of apples are ever on the board
+            writeFood(engine.getApple().getSegments());
+            writeFood(engine.getGoldenApple().getSegments());
+        }
+        ticks.reset();
+        tickCount = 0;
+        deltaCount++;
+        foodChanged = false;
+
+        crc.reset();
+        byte[] payload = delta.toByteArray();
+        crc.update(payload);
+        synchronized (this) {
+            writeInt(pendingDeltas, payload.length);
+            pendingDeltas.write(payload, 0, payload.length);
+            writeInt(pendingDeltas, (int) crc.getValue());
+        }
+        submit();
+    }
+
+    private void writeFood(SegmentBuffer food) {
+        Varint.write(delta, food.size());
+        for (int i = 0; i < food.size(); i++) {
+            Varint.write(delta, Varint.zigzag(food.getX(i)));
+            Varint.write(delta, Varint.zigzag(food.getY(i)));
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**************************************************************************
+     * WRITING
+     **************************************************************************/
+
+    private void submit() {
+        persistence.submit(this, this::writePending);
+    }
+
+    /**
+     * Runs on the persistence thread: removes, checkpoints and appends
+     * whatever the game thread queued, in that order.
+     */
+    private void writePending() throws IOException {
+        boolean discard;
+        GameSnapshot checkpoint;
+        byte[] deltas;
+        synchronized (this) {
+            discard = pendingDiscard;
+            checkpoint = pendingCheckpoint;
+            deltas = pendingDeltas.toByteArray();
+            pendingDiscard = false;
+            pendingCheckpoint = null;
+            pendingDeltas.reset();
+        }
+
+        try {
+            if (discard) {
+                Files.deleteIfExists(deltaPath);
+                Files.deleteIfExists(checkpointPath);
+            }
+            if (checkpoint != null) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                PersistenceService.writeAtomically(deltaPath, header);
+                checkpoint.write(checkpointPath);
+                failed = false;
+            }
+            if (deltas.length > 0 && !failed) {
+                try (FileChannel channel = FileChannel.open(deltaPath,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(deltas);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The log no longer matches the checkpoint; start over with a new one
+            failed = true;
+            throw e;
+        }
+    }
+
+    /**************************************************************************
+     * READING
+     **************************************************************************/
+
+    /**
+     * Reads the checkpoint and replays every complete delta logged after it.
+     *
+     * @return the autosaved game, or null if there is none
+     * @throws IOException if the checkpoint or the log cannot be read
+     */
+    public static GameSnapshot read(Path checkpointPath, Path deltaPath) throws IOException {
+        GameSnapshot snapshot = GameSnapshot.read(checkpointPath);
+        if (snapshot == null) {
+            return null;
+        }
+        ByteBuffer log;
+        try {
+            log = ByteBuffer.wrap(Files.readAllBytes(deltaPath));
+        } catch (NoSuchFileException e) {
+            return snapshot;
+        }
+        if (log.remaining() < HEADER_BYTES || log.getInt() != MAGIC) {
+            throw new IOException("Not an autosave log: " + deltaPath);
+        }
+        int version = log.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported autosave version " + version + " in " + deltaPath);
+        }
+
+        SegmentBuffer body = snapshot.copySnake();
+        CRC32 check = new CRC32();
+        while (log.remaining() >= Integer.BYTES) {
+            int length = log.getInt();
+            if (length < 0 || length > log.remaining() - Integer.BYTES) {
+                // Cut short by a crash mid-append
+                break;
+            }
+            check.reset();
+            check.update(log.array(), log.position(), length);
+            if ((int) check.getValue() != log.getInt(log.position() + length)) {
+                break;
+            }
+            applyDelta(snapshot, body,
+                    new ByteArrayInputStream(log.array(), log.position(), length));
+            log.position(log.position() + length + Integer.BYTES);
+        }
+        snapshot.setSnake(body);
+        return snapshot;
+    }
+
+    private static void applyDelta(GameSnapshot snapshot, SegmentBuffer body, InputStream in)
+            throws IOException {
+        int headX = body.isEmpty() ? 0 : body.firstX();
+        int headY = body.isEmpty() ? 0 : body.firstY();
+        int length = body.size();
+        long count = Varint.read(in);
+        for (long i = 0; i < count; i++) {
+            headX += Varint.unzigzag(Varint.read(in));
+            headY += Varint.unzigzag(Varint.read(in));
+            length += Varint.unzigzag(Varint.read(in));
+
+            // Move as Snake.move() does, then grow or shrink to the new length
+            body.addFirst(headX, headY);
+            if (body.size() > 1) {
+                body.removeLast();
+            }
+            while (body.size() < length) {
+                body.addLast(body.lastX(), body.lastY());
+            }
+            body.truncate(length);
+        }
+
+        snapshot.setScore((int) Varint.unzigzag(Varint.read(in)));
+        int px = (int) Varint.unzigzag(Varint.read(in));
+        int py = (int) Varint.unzigzag(Varint.read(in));
+        int vx = (int) Varint.unzigzag(Varint.read(in));
+        int vy = (int) Varint.unzigzag(Varint.read(in));
+        snapshot.setPosition(px, py, vx, vy);
+        if (in.read() == 1) {
+            int[] apples = readFood(in);
+            int[] goldenApples = readFood(in);
+            snapshot.setFood(apples, apples.length / 2, goldenApples, goldenApples.length / 2);
+        }
+    }
+
+    private static int[] readFood(InputStream in) throws IOException {
+        long count = Varint.read(in);
+        if (count > in.available()) {
+            throw new IOException("Bad food count " + count);
+        }
+        int[] coords = new int[2 * (int) count];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = (int) Varint.unzigzag(Varint.read(in));
+        }
+        return coords;
+    }
+}
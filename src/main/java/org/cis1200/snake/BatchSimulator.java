@@ -0,0 +1,409 @@
+package org.cis1200.snake;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plays many headless games at once, one per core, with a built-in policy
+ * at the controls, and reports how fast they ran and how they scored.
+ *
+ * Game i is played with the i-th seed drawn from the batch seed, the same
+ * seed the i-th reset() of a SnakeEngine created with the batch seed would
+ * use. Each game only ever runs on one thread, so a batch scores the same
+ * on any number of threads and any game can be replayed from its seed.
+ *
+ * Run it from the command line:
+ *
+ *   java -cp target/classes org.cis1200.snake.BatchSimulator
+ *       [--games N] [--seed S] [--max-ticks T] [--threads K]
+ *       [--policy chase|autopilot]
+ *
+ * With the autopilot and a high tick limit it doubles as a soak test.
+ */
+public class BatchSimulator {
+    public static final int DEFAULT_GAMES = 10_000;
+    public static final int DEFAULT_MAX_TICKS = 20_000;
+    public static final int BOARD_WIDTH = 600;
+    public static final int BOARD_HEIGHT = 400;
+
+    private static final int HISTOGRAM_BUCKETS = 10;
+    private static final int HISTOGRAM_WIDTH = 50;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int games;
+    private final long seed;
+    private final int maxTicks;
+    private final int threads;
+    private final Supplier<? extends Policy> policies;
+
+    /**
+     * Decides where a simulated player steers before each tick. Each thread
+     * gets its own instance, so a policy may keep state between calls.
+     */
+    public interface Policy {
+        /**
+         * @return the direction to steer, or null to keep going
+         */
+        Direction decide(SnakeEngine engine);
+    }
+
+    /**
+     * Heads for the nearest apple or golden apple along whichever axis it
+     * is further away on, unless that would end the game next tick, in
+     * which case it tries the other axis and then any safe direction.
+     */
+    public static final Policy CHASE = BatchSimulator::chase;
+
+    /**
+     * @param games     number of games to play
+     * @param seed      seed the game seeds are drawn from
+     * @param maxTicks  ticks after which a game still alive is stopped
+     * @param threads   number of threads to play on
+     * @param policies  makes the player for each thread
+     */
+    public BatchSimulator(int games, long seed, int maxTicks, int threads,
+                          Supplier<? extends Policy> policies) {
+        if (games < 0 || maxTicks <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("games, maxTicks and threads must be positive");
+        }
+        this.games = games;
+        this.seed = seed;
+        this.maxTicks = maxTicks;
+        this.threads = threads;
+        this.policies = policies;
+    }
+
+    /**************************************************************************
+     * SIMULATION
+     **************************************************************************/
+
+    /**
+     * Plays every game and waits for all of them to finish.
+     */
+    public Report run() throws InterruptedException {
+        long[] seeds = new long[games];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < games; i++) {
+            seeds[i] = random.nextLong();
+        }
+        int[] scores = new int[games];
+        int[] ticks = new int[games];
+
+        // Games vary a lot in length, so threads take one game at a time
+        AtomicInteger next = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> play(next, seeds, scores, ticks), "snake-sim-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Report(seeds, scores, ticks, maxTicks, threads, nanos);
+    }
+
+    private void play(AtomicInteger next, long[] seeds, int[] scores, int[] ticks) {
+        SnakeEngine engine = new SnakeEngine(BOARD_WIDTH, BOARD_HEIGHT, 0);
+        Policy policy = policies.get();
+        int game;
+        while ((game = next.getAndIncrement()) < games) {
+            engine.reset(seeds[game]);
+            while (engine.isPlaying() && engine.getTick() < maxTicks) {
+                engine.step(policy.decide(engine));
+            }
+            scores[game] = engine.getScore();
+            ticks[game] = (int) engine.getTick();
+        }
+    }
+
+    private static Direction chase(SnakeEngine engine) {
+        Snake snake = engine.getSnake();
+        SegmentBuffer body = snake.getSegments();
+        int headX = body.firstX();
+        int headY = body.firstY();
+
+        // Aim the head's corner so the head ends up over the food's middle
+        int targetX = headX;
+        int targetY = headY;
+        long nearest = Long.MAX_VALUE;
+        SegmentBuffer apples = engine.getApple().getSegments();
+        for (int i = 0; i < apples.size(); i++) {
+            int x = apples.getX(i) + (Apple.SIZE - Snake.SIZE) / 2;
+            int y = apples.getY(i) + (Apple.SIZE - Snake.SIZE) / 2;
+            long distance = (long) Math.abs(x - headX) + Math.abs(y - headY);
+            if (distance < nearest) {
+                nearest = distance;
+                targetX = x;
+                targetY = y;
+            }
+        }
+        SegmentBuffer goldenApples = engine.getGoldenApple().getSegments();
+        for (int i = 0; i < goldenApples.size(); i++) {
+            int x = goldenApples.getX(i) + (GoldenApple.SIZE - Snake.SIZE) / 2;
+            int y = goldenApples.getY(i) + (GoldenApple.SIZE - Snake.SIZE) / 2;
+            long distance = (long) Math.abs(x - headX) + Math.abs(y - headY);
+            if (distance < nearest) {
+                nearest = distance;
+                targetX = x;
+                targetY = y;
+            }
+        }
+
+        int dx = targetX - headX;
+        int dy = targetY - headY;
+        Direction horizontal = dx >= 0 ? Direction.RIGHT : Direction.LEFT;
+        Direction vertical = dy >= 0 ? Direction.DOWN : Direction.UP;
+        Direction preferred = Math.abs(dx) > Math.abs(dy) ? horizontal : vertical;
+        Direction second = preferred == horizontal ? vertical : horizontal;
+        if (isSafe(snake, preferred)) {
+            return preferred;
+        }
+        if (isSafe(snake, second)) {
+            return second;
+        }
+        for (Direction direction : DIRECTIONS) {
+            if (isSafe(snake, direction)) {
+                return direction;
+            }
+        }
+        return preferred;
+    }
+
+    /**
+     * Whether steering this way keeps the snake alive through the next
+     * tick. The engine ends the game when the move after the one it just
+     * made would leave the board or land on the body, so this looks two
+     * moves ahead.
+     */
+    private static boolean isSafe(Snake snake, Direction direction) {
+        int vx = 0;
+        int vy = 0;
+        switch (direction) {
+            case LEFT:
+                vx = -snake.getSnakeVX();
+                break;
+            case RIGHT:
+                vx = snake.getSnakeVX();
+                break;
+            case UP:
+                vy = -snake.getSnakeVY();
+                break;
+            case DOWN:
+                vy = snake.getSnakeVY();
+                break;
+            default:
+                break;
+        }
+        SegmentBuffer body = snake.getSegments();
+        // Turning straight back would run the head into the neck
+        if (body.size() > 1 && (vx * snake.getVx() < 0 || vy * snake.getVy() < 0)) {
+            return false;
+        }
+        int x = snake.getPx() + 2 * vx;
+        int y = snake.getPy() + 2 * vy;
+        if (x < 0 || x > snake.getMaxX() || y < 0 || y > snake.getMaxY()) {
+            return false;
+        }
+        OccupancyGrid grid = body.getOccupancy();
+        return !grid.contains(x, y) || grid.count(x, y) == 0;
+    }
+
+    /**************************************************************************
+     * REPORT
+     **************************************************************************/
+
+    /**
+     * The outcome of a batch: each game's seed, score and length in ticks,
+     * and how long the batch took.
+     */
+    public static final class Report {
+        private final long[] seeds;
+        private final int[] scores;
+        private final int[] ticks;
+        private final int maxTicks;
+        private final int threads;
+        private final long nanos;
+        private final int[] sortedScores;
+
+        Report(long[] seeds, int[] scores, int[] ticks, int maxTicks, int threads, long nanos) {
+            this.seeds = seeds;
+            this.scores = scores;
+            this.ticks = ticks;
+            this.maxTicks = maxTicks;
+            this.threads = threads;
+            this.nanos = nanos;
+            this.sortedScores = scores.clone();
+            Arrays.sort(sortedScores);
+        }
+
+        public int getGames() {
+            return scores.length;
+        }
+
+        public long getSeed(int game) {
+            return seeds[game];
+        }
+
+        public int getScore(int game) {
+            return scores[game];
+        }
+
+        public int getTicks(int game) {
+            return ticks[game];
+        }
+
+        public long getTotalTicks() {
+            long total = 0;
+            for (int t : ticks) {
+                total += t;
+            }
+            return total;
+        }
+
+        /**
+         * Number of games that were still alive at the tick limit.
+         */
+        public int getTimedOut() {
+            int count = 0;
+            for (int t : ticks) {
+                if (t >= maxTicks) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public long getElapsedNanos() {
+            return nanos;
+        }
+
+        public double getGamesPerSecond() {
+            return getGames() * 1e9 / Math.max(1, nanos);
+        }
+
+        public double getTicksPerSecond() {
+            return getTotalTicks() * 1e9 / Math.max(1, nanos);
+        }
+
+        public double getMeanScore() {
+            long total = 0;
+            for (int score : scores) {
+                total += score;
+            }
+            return scores.length == 0 ? 0 : (double) total / scores.length;
+        }
+
+        /**
+         * Returns the score that the given fraction of games scored at most,
+         * e.g. 0.5 for the median.
+         */
+        public int getScorePercentile(double fraction) {
+            if (sortedScores.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(fraction * sortedScores.length) - 1;
+            return sortedScores[Math.min(sortedScores.length - 1, Math.max(0, index))];
+        }
+
+        /**
+         * Prints the throughput, the score percentiles and a histogram.
+         */
+        public void print(PrintStream out) {
+            out.printf("%d games on %d threads in %.2f s: %.0f games/s, %.0f ticks/s%n",
+                    getGames(), threads, nanos / 1e9, getGamesPerSecond(), getTicksPerSecond());
+            out.printf("%d died, %d still alive after %d ticks, %.0f ticks per game%n",
+                    getGames() - getTimedOut(), getTimedOut(), maxTicks,
+                    getGames() == 0 ? 0.0 : (double) getTotalTicks() / getGames());
+            if (getGames() == 0) {
+                return;
+            }
+            int best = 0;
+            for (int i = 1; i < scores.length; i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            out.printf("score: min %d, mean %.1f, p50 %d, p90 %d, p99 %d, max %d (seed %d)%n",
+                    sortedScores[0], getMeanScore(), getScorePercentile(0.5),
+                    getScorePercentile(0.9), getScorePercentile(0.99),
+                    sortedScores[sortedScores.length - 1], seeds[best]);
+
+            int min = sortedScores[0];
+            int max = sortedScores[sortedScores.length - 1];
+            int width = Math.max(1, (max - min + HISTOGRAM_BUCKETS) / HISTOGRAM_BUCKETS);
+            int[] buckets = new int[HISTOGRAM_BUCKETS];
+            for (int score : scores) {
+                buckets[Math.min(HISTOGRAM_BUCKETS - 1, (score - min) / width)]++;
+            }
+            int tallest = Arrays.stream(buckets).max().getAsInt();
+            for (int b = 0; b < HISTOGRAM_BUCKETS && min + b * width <= max; b++) {
+                int bar = (int) ((long) buckets[b] * HISTOGRAM_WIDTH / tallest);
+                out.printf("%6d-%-6d %-" + HISTOGRAM_WIDTH + "s %d%n", min + b * width,
+                        min + (b + 1) * width - 1, "#".repeat(bar), buckets[b]);
+            }
+        }
+    }
+
+    /**************************************************************************
+     * COMMAND LINE
+     **************************************************************************/
+
+    /**
+     * Plays a batch as configured by the arguments and prints its report.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int games = DEFAULT_GAMES;
+        long seed = new SplittableRandom().nextLong();
+        int maxTicks = DEFAULT_MAX_TICKS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Supplier<? extends Policy> policies = () -> CHASE;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--games":
+                        games = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--max-ticks":
+                        maxTicks = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--policy":
+                        if ("autopilot".equals(value)) {
+                            policies = Autopilot::new;
+                        } else if (!"chase".equals(value)) {
+                            usage();
+                            return;
+                        }
+                        break;
+                    default:
+                        usage();
+                        return;
+                }
+                i++;
+            }
+            System.out.printf("Seed %d%n", seed);
+            BatchSimulator simulator = new BatchSimulator(games, seed, maxTicks, threads, policies);
+            simulator.run().print(System.out);
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            usage();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: BatchSimulator [--games N] [--seed S] "
+                + "[--max-ticks T] [--threads K] [--policy chase|autopilot]");
+    }
+}
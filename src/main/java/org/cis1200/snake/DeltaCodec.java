@@ -0,0 +1,509 @@
+package org.cis1200.snake;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Encodes the state of a game at one tick as the difference from an earlier
+ * state the receiver already has, so that what is sent per tick depends on
+ * how much changed rather than on how long the snakes are.
+ *
+ * A State is a few int values (score, speed, ...) and a few tracks of
+ * points. A track is either ordered, like a snake's segments, or a bag,
+ * like the food, which is kept sorted so that both sides agree on its
+ * order. Each track is encoded in whichever way fits:
+ *
+ *   SAME   unchanged
+ *   SHIFT  an ordered track that gained points at the front and lost or
+ *          gained some at the back, as a snake does when it moves or
+ *          grows: how many old points are kept and the new points
+ *   EDIT   a bag: the points removed and the points added
+ *   FULL   every point
+ *
+ * All numbers are varints, signed ones zigzag encoded, and points are
+ * given relative to the point before them, so a snake's new head or a
+ * nearby apple takes a byte or two per coordinate. A delta is
+ *
+ *   varint tick, varint ticks since the baseline (0 for a keyframe),
+ *   varint value count, each value minus the baseline's,
+ *   varint track count, then each track's kind and encoding.
+ *
+ * A keyframe is a delta from nothing and is only needed while the receiver
+ * has no baseline in common with the sender.
+ */
+public final class DeltaCodec {
+    /* How each track is encoded */
+    private static final int SAME = 0;
+    private static final int SHIFT = 1;
+    private static final int EDIT = 2;
+    private static final int FULL = 3;
+
+    private static final State EMPTY = new State(0, new int[0], new SegmentBuffer[0], new boolean[0]);
+
+    private DeltaCodec() {
+    }
+
+    /**
+     * The values and tracks of a game at one tick. A state never changes
+     * once made, and bags are sorted when it is made.
+     */
+    public static final class State {
+        private final long tick;
+        private final int[] values;
+        private final SegmentBuffer[] tracks;
+        private final boolean[] ordered;
+
+        /**
+         * Takes ownership of the tracks, which must not be changed after.
+         *
+         * @param ordered  for each track, whether the order of its points
+         *                 matters; tracks where it does not are sorted
+         */
+        public State(long tick, int[] values, SegmentBuffer[] tracks, boolean[] ordered) {
+            if (tracks.length != ordered.length) {
+                throw new IllegalArgumentException("Every track must be marked ordered or not");
+            }
+            this.tick = tick;
+            this.values = values.clone();
+            this.tracks = tracks;
+            this.ordered = ordered.clone();
+            for (int i = 0; i < tracks.length; i++) {
+                if (!ordered[i] && !isSorted(tracks[i])) {
+                    sort(tracks[i]);
+                }
+            }
+        }
+
+        /**
+         * The state of a single-player game: score and the snake's velocity
+         * and speed, then the snake, apples, golden apples and poison apples.
+         */
+        public static State of(SnakeEngine engine) {
+            Snake snake = engine.getSnake();
+            int[] values = {engine.getScore(), snake.getVx(), snake.getVy(),
+                snake.getSnakeVX(), snake.getSnakeVY()};
+            SegmentBuffer[] tracks = {
+                copy(snake.getSegments()),
+                copy(engine.getApple().getSegments()),
+                copy(engine.getGoldenApple().getSegments()),
+                copy(engine.getPoisonApple().getSegments())
+            };
+            return new State(engine.getTick(), values, tracks,
+                    new boolean[] {true, false, false, false});
+        }
+
+        /**
+         * The state of a GiantWorld: a track per snake, then one with a
+         * point per unit of food.
+         */
+        public static State of(GiantWorld world) {
+            int snakes = world.getSnakeCount();
+            SegmentBuffer[] tracks = new SegmentBuffer[snakes + 1];
+            boolean[] ordered = new boolean[snakes + 1];
+            for (int id = 0; id < snakes; id++) {
+                tracks[id] = copy(world.getBody(id));
+                ordered[id] = true;
+            }
+            // Row by row is already sorted order
+            SegmentBuffer food = new SegmentBuffer();
+            for (int y = 0; y < world.getHeight(); y++) {
+                for (int x = 0; x < world.getWidth(); x++) {
+                    for (int units = world.getFood(x, y); units > 0; units--) {
+                        food.addLast(x, y);
+                    }
+                }
+            }
+            tracks[snakes] = food;
+            return new State(world.getTick(), new int[0], tracks, ordered);
+        }
+
+        public long getTick() {
+            return tick;
+        }
+
+        public int getValueCount() {
+            return values.length;
+        }
+
+        public int getValue(int index) {
+            return values[index];
+        }
+
+        public int getTrackCount() {
+            return tracks.length;
+        }
+
+        /**
+         * The points of a track; the buffer must not be changed.
+         */
+        public SegmentBuffer getTrack(int index) {
+            return tracks[index];
+        }
+
+        public boolean isOrdered(int index) {
+            return ordered[index];
+        }
+
+        /**
+         * Whether the other state has the same values and tracks, whatever
+         * its tick.
+         */
+        public boolean sameAs(State other) {
+            if (!Arrays.equals(values, other.values) || !Arrays.equals(ordered, other.ordered)) {
+                return false;
+            }
+            for (int i = 0; i < tracks.length; i++) {
+                if (!same(tracks[i], other.tracks[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**************************************************************************
+     * ENCODING
+     **************************************************************************/
+
+    /**
+     * Encodes a state as a delta from a baseline.
+     *
+     * @param baseline  a state the receiver has, or null for a keyframe
+     */
+    public static byte[] encode(State baseline, State current) {
+        if (baseline != null && baseline.tick >= current.tick) {
+            throw new IllegalArgumentException("The baseline must be older than the state");
+        }
+        State base = baseline == null ? EMPTY : baseline;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Varint.write(out, current.tick);
+        Varint.write(out, baseline == null ? 0 : current.tick - baseline.tick);
+
+        Varint.write(out, current.values.length);
+        for (int i = 0; i < current.values.length; i++) {
+            int old = i < base.values.length ? base.values[i] : 0;
+            Varint.write(out, Varint.zigzag((long) current.values[i] - old));
+        }
+
+        Varint.write(out, current.tracks.length);
+        for (int i = 0; i < current.tracks.length; i++) {
+            SegmentBuffer old = i < base.tracks.length && base.ordered[i] == current.ordered[i]
+                    ? base.tracks[i] : null;
+            writeTrack(out, old, current.tracks[i], current.ordered[i]);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeTrack(ByteArrayOutputStream out, SegmentBuffer old,
+                                   SegmentBuffer now, boolean ordered) {
+        if (old != null && same(old, now)) {
+            Varint.write(out, SAME << 1 | (ordered ? 1 : 0));
+            return;
+        }
+        int shift = ordered && old != null ? findShift(old, now) : -1;
+        SegmentBuffer removed = new SegmentBuffer();
+        SegmentBuffer added = new SegmentBuffer();
+        if (!ordered && old != null) {
+            diff(old, now, removed, added);
+        }
+        if (shift >= 0) {
+            // New heads from the old head outward, then new tail points on from the old tail
+            int kept = matchLength(old, now, shift);
+            int tail = shift + kept;
+            Varint.write(out, SHIFT << 1 | 1);
+            Varint.write(out, shift);
+            Varint.write(out, kept);
+            Varint.write(out, now.size() - tail);
+            for (int i = shift - 1; i >= 0; i--) {
+                Varint.write(out, Varint.zigzag(now.getX(i) - now.getX(i + 1)));
+                Varint.write(out, Varint.zigzag(now.getY(i) - now.getY(i + 1)));
+            }
+            for (int i = tail; i < now.size(); i++) {
+                Varint.write(out, Varint.zigzag(now.getX(i) - now.getX(i - 1)));
+                Varint.write(out, Varint.zigzag(now.getY(i) - now.getY(i - 1)));
+            }
+        } else if (!ordered && old != null && removed.size() + added.size() < now.size()) {
+            // Listing the changes is smaller than listing the bag
+            Varint.write(out, EDIT << 1);
+            Varint.write(out, removed.size());
+            writePoints(out, removed, 0, removed.size());
+            Varint.write(out, added.size());
+            writePoints(out, added, 0, added.size());
+        } else {
+            Varint.write(out, FULL << 1 | (ordered ? 1 : 0));
+            Varint.write(out, now.size());
+            writePoints(out, now, 0, now.size());
+        }
+    }
+
+    /**
+     * Finds how many points were added at the front of an ordered track so
+     * that as much as possible of the rest is the start of the old track,
+     * which leaves the fewest points to send.
+     *
+     * @return the number of new points at the front, or -1 if no point of
+     *         the old track is kept
+     */
+    private static int findShift(SegmentBuffer old, SegmentBuffer now) {
+        int best = -1;
+        int bestKept = 0;
+        for (int shift = 0; shift < now.size() && now.size() - shift > bestKept; shift++) {
+            int kept = matchLength(old, now, shift);
+            if (kept > bestKept) {
+                best = shift;
+                bestKept = kept;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Number of points from the given index of the new track on that match
+     * the old track from its start.
+     */
+    private static int matchLength(SegmentBuffer old, SegmentBuffer now, int shift) {
+        int length = 0;
+        while (length < old.size() && shift + length < now.size()
+                && now.getX(shift + length) == old.getX(length)
+                && now.getY(shift + length) == old.getY(length)) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Splits two sorted bags into the points only in the old one and the
+     * points only in the new one.
+     */
+    private static void diff(SegmentBuffer old, SegmentBuffer now,
+                             SegmentBuffer removed, SegmentBuffer added) {
+        int i = 0;
+        int j = 0;
+        while (i < old.size() || j < now.size()) {
+            int order = i == old.size() ? 1 : j == now.size() ? -1 : compare(old, i, now, j);
+            if (order < 0) {
+                removed.addLast(old.getX(i), old.getY(i));
+                i++;
+            } else if (order > 0) {
+                added.addLast(now.getX(j), now.getY(j));
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Writes each point relative to the one before, the first relative to
+     * the origin.
+     */
+    private static void writePoints(ByteArrayOutputStream out, SegmentBuffer points,
+                                    int from, int to) {
+        int x = 0;
+        int y = 0;
+        for (int i = from; i < to; i++) {
+            Varint.write(out, Varint.zigzag(points.getX(i) - x));
+            Varint.write(out, Varint.zigzag(points.getY(i) - y));
+            x = points.getX(i);
+            y = points.getY(i);
+        }
+    }
+
+    /**************************************************************************
+     * DECODING
+     **************************************************************************/
+
+    /**
+     * Reads the tick a delta brings the receiver to, without consuming it.
+     */
+    public static long peekTick(ByteBuffer in) throws IOException {
+        return Varint.read(in.duplicate());
+    }
+
+    /**
+     * Decodes a delta.
+     *
+     * @param in         the delta, which is consumed
+     * @param baselines  looks up an earlier state by tick, returning null
+     *                   if it is no longer kept
+     * @throws IOException if the baseline is not kept or the delta is
+     *                     malformed
+     */
+    public static State decode(ByteBuffer in, LongFunction<State> baselines) throws IOException {
+        try {
+            long tick = Varint.read(in);
+            long back = Varint.read(in);
+            State base = EMPTY;
+            if (back != 0) {
+                base = baselines.apply(tick - back);
+                if (base == null || base.tick != tick - back) {
+                    throw new IOException("Baseline for tick " + (tick - back) + " is not kept");
+                }
+            }
+
+            int[] values = new int[readCount(in)];
+            for (int i = 0; i < values.length; i++) {
+                int old = i < base.values.length ? base.values[i] : 0;
+                values[i] = (int) (old + Varint.unzigzag(Varint.read(in)));
+            }
+
+            int count = readCount(in);
+            SegmentBuffer[] tracks = new SegmentBuffer[count];
+            boolean[] ordered = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                long header = Varint.read(in);
+                int kind = (int) (header >>> 1);
+                ordered[i] = (header & 1) != 0;
+                SegmentBuffer old = i < base.tracks.length && base.ordered[i] == ordered[i]
+                        ? base.tracks[i] : null;
+                if (old == null && kind != FULL) {
+                    throw new IOException("Track " + i + " has no baseline to change");
+                }
+                tracks[i] = readTrack(in, kind, old);
+            }
+            return new State(tick, values, tracks, ordered);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed delta", e);
+        }
+    }
+
+    private static SegmentBuffer readTrack(ByteBuffer in, int kind, SegmentBuffer old)
+            throws IOException {
+        switch (kind) {
+            case SAME:
+                // States never change their tracks, so they can share them
+                return old;
+            case SHIFT: {
+                int shift = readCount(in);
+                long kept = Varint.read(in);
+                int added = readCount(in);
+                if (kept < 1 || kept > old.size()) {
+                    throw new IOException("Keeps " + kept + " of " + old.size() + " points");
+                }
+                SegmentBuffer track = new SegmentBuffer(shift + (int) kept + added);
+                for (int i = 0; i < kept; i++) {
+                    track.addLast(old.getX(i), old.getY(i));
+                }
+                int x = old.firstX();
+                int y = old.firstY();
+                for (int i = 0; i < shift; i++) {
+                    x += (int) Varint.unzigzag(Varint.read(in));
+                    y += (int) Varint.unzigzag(Varint.read(in));
+                    track.addFirst(x, y);
+                }
+                x = track.lastX();
+                y = track.lastY();
+                for (int i = 0; i < added; i++) {
+                    x += (int) Varint.unzigzag(Varint.read(in));
+                    y += (int) Varint.unzigzag(Varint.read(in));
+                    track.addLast(x, y);
+                }
+                return track;
+            }
+            case EDIT: {
+                SegmentBuffer removed = readPoints(in, readCount(in));
+                SegmentBuffer added = readPoints(in, readCount(in));
+                SegmentBuffer track = new SegmentBuffer(old.size() + added.size());
+                int r = 0;
+                for (int i = 0; i < old.size(); i++) {
+                    if (r < removed.size() && compare(old, i, removed, r) == 0) {
+                        r++;
+                    } else {
+                        track.addLast(old.getX(i), old.getY(i));
+                    }
+                }
+                if (r != removed.size()) {
+                    throw new IOException("Removes points the baseline does not have");
+                }
+                for (int i = 0; i < added.size(); i++) {
+                    track.addLast(added.getX(i), added.getY(i));
+                }
+                // State sorts the bag again
+                return track;
+            }
+            case FULL:
+                return readPoints(in, readCount(in));
+            default:
+                throw new IOException("Unknown track encoding " + kind);
+        }
+    }
+
+    private static SegmentBuffer readPoints(ByteBuffer in, int count) throws IOException {
+        SegmentBuffer points = new SegmentBuffer(count);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < count; i++) {
+            x += (int) Varint.unzigzag(Varint.read(in));
+            y += (int) Varint.unzigzag(Varint.read(in));
+            points.addLast(x, y);
+        }
+        return points;
+    }
+
+    private static int readCount(ByteBuffer in) throws IOException {
+        long count = Varint.read(in);
+        // Every point takes at least two bytes, every value one
+        if (count < 0 || count > in.remaining()) {
+            throw new IOException("Count " + count + " is larger than the delta");
+        }
+        return (int) count;
+    }
+
+    /**************************************************************************
+     * HELPERS
+     **************************************************************************/
+
+    private static SegmentBuffer copy(SegmentBuffer points) {
+        SegmentBuffer copy = new SegmentBuffer(Math.max(1, points.size()));
+        for (int i = 0; i < points.size(); i++) {
+            copy.addLast(points.getX(i), points.getY(i));
+        }
+        return copy;
+    }
+
+    private static boolean same(SegmentBuffer a, SegmentBuffer b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.getX(i) != b.getX(i) || a.getY(i) != b.getY(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders points by y, then x, as a GiantWorld's cells are laid out.
+     */
+    private static int compare(SegmentBuffer a, int i, SegmentBuffer b, int j) {
+        int order = Integer.compare(a.getY(i), b.getY(j));
+        return order != 0 ? order : Integer.compare(a.getX(i), b.getX(j));
+    }
+
+    private static boolean isSorted(SegmentBuffer points) {
+        for (int i = 1; i < points.size(); i++) {
+            if (compare(points, i - 1, points, i) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void sort(SegmentBuffer points) {
+        long[] keys = new long[points.size()];
+        for (int i = 0; i < keys.length; i++) {
+            // Flipping the sign bit of x keeps negative x in order in the low half
+            keys[i] = (long) points.getY(i) << 32 | (points.getX(i) ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            points.set(i, (int) keys[i] ^ Integer.MIN_VALUE, (int) (keys[i] >> 32));
+        }
+    }
+}
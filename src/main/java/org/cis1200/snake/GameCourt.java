@@ -1,17 +1,20 @@
 package org.cis1200.snake;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.util.LinkedList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GameCourt extends JPanel {
     // Logger for error handling
@@ -30,18 +33,58 @@ public class GameCourt extends JPanel {
     private static final Color BUTTON_TEXT_COLOR = Color.WHITE;
     private static final Color BUTTON_HOVER_COLOR = new Color(41, 128, 185);
 
+    // Paint constants, shared so that painting a frame allocates nothing
+    private static final Color GRID_COLOR = new Color(255, 255, 255, 10);
+    private static final Color CORNER_HIGHLIGHT_COLOR = new Color(255, 255, 255, 30);
+    private static final Color INSTRUCTIONS_PANEL_COLOR = new Color(0, 0, 0, 180);
+    private static final Color GAME_OVER_PANEL_COLOR = new Color(0, 0, 0, 200);
+    private static final Color SCORE_PANEL_COLOR = new Color(0, 0, 0, 180);
+    private static final Color SCORE_BORDER_COLOR = new Color(255, 255, 255, 60);
+    private static final Color SCORE_HIGHLIGHT_COLOR = new Color(255, 255, 255, 20);
+    private static final Color BEST_SCORE_COLOR = new Color(255, 215, 0);
+    private static final Color DECORATION_COLOR = new Color(255, 255, 255, 40);
+    private static final Font TITLE_FONT = new Font("Segoe UI", Font.BOLD, 24);
+    private static final Font GAME_OVER_FONT = new Font("Segoe UI", Font.BOLD, 20);
+    private static final Font SCORE_FONT = new Font("Segoe UI", Font.BOLD, 18);
+    private static final Font BEST_SCORE_FONT = new Font("Segoe UI", Font.BOLD, 16);
+    private static final Stroke GRID_STROKE = new BasicStroke(1);
+    private static final Stroke SCORE_BORDER_STROKE = new BasicStroke(2);
+    private static final Color METRICS_PANEL_COLOR = new Color(0, 0, 0, 200);
+    private static final Color METRICS_TEXT_COLOR = new Color(46, 204, 113);
+    private static final Font METRICS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
     // Game constants - these will be dynamic based on window size
     private int boardWidth = 600;
     private int boardHeight = 400;
-    private static final int TIMER_INTERVAL = 30;
-    private static final String BEST_SCORE_PATH = "files/bestScore.txt";
-    private static final String GAME_STATE_PATH = "files/gameState.txt";
-    private static final String SNAKE_OBJS_PATH = "files/snakeObjs.txt";
-    private static final String APPLE_OBJS_PATH = "files/appleObjs.txt";
-    private static final String GOLDEN_APPLE_OBJS_PATH = "files/goldenAppleObjs.txt";
-    private static final double GOLDEN_APPLE_SPAWN_CHANCE = 0.2;
-    private static final int MAX_APPLES = 4;
-    private static final int MAX_GOLDEN_APPLES = 2;
+    private static final int TIMER_INTERVAL = SnakeEngine.TICK_MILLIS;
+
+    // Interval between effect updates (particles, fade, shake)
+    static final int EFFECT_MILLIS = 16;
+    // Saves, autosaves and scores are kept here unless the court is given a directory
+    private static final String DATA_DIR = "files";
+    private static final String LEADERBOARD_FILE = "leaderboard.dat";
+    // Record every game's input here for replay: -Dsnake.journalDir=<dir>
+    private static final String JOURNAL_DIR = System.getProperty("snake.journalDir");
+    // Let the autopilot play after this long without input: -Dsnake.demoIdleSeconds=<s>
+    private static final long DEMO_IDLE_MILLIS =
+            Integer.getInteger("snake.demoIdleSeconds", -1) * 1000L;
+    private static final int DEMO_RESTART_MILLIS = 3000;
+    // Best score written by older versions, imported into an empty profile
+    private static final String BEST_SCORE_FILE = "bestScore.txt";
+    // The player's SAVE slot
+    private static final String SNAPSHOT_FILE = "game.snapshot";
+    // Checkpoint and deltas of the game being played, kept until it ends
+    private static final String AUTOSAVE_FILE = "autosave.snapshot";
+    private static final String AUTOSAVE_DELTAS_FILE = "autosave.deltas";
+    // A game an earlier run left unfinished, until RESUME continues it
+    private static final String RECOVERED_FILE = "recovered.snapshot";
+    // Text files written by older versions, still read if there is no snapshot
+    private static final String GAME_STATE_FILE = "gameState.txt";
+    private static final String SNAKE_OBJS_FILE = "snakeObjs.txt";
+    private static final String APPLE_OBJS_FILE = "appleObjs.txt";
+    private static final String GOLDEN_APPLE_OBJS_FILE = "goldenAppleObjs.txt";
+    private static final String GAME_OVER_IMAGE_PATH = "files/GameOver.png";
+    private static final String INSTRUCTIONS_IMAGE_PATH = "files/instructions.jpg";
     private static final double POISON_APPLE_SPAWN_CHANCE = 0.05;
     private static final int MAX_POISON_APPLES = 1;
 
@@ -50,77 +93,144 @@ public class GameCourt extends JPanel {
     private static final int SCREEN_SHAKE_DURATION = 300; // milliseconds
     private static final int PARTICLE_COUNT = 15;
     private static final int PARTICLE_LIFETIME = 60; // frames
+    private static final int PARTICLE_CAPACITY = 1 << 15;
+
+    // Area covered by the score overlay, including its border stroke
+    private static final int SCORE_PANEL_X = 20;
+    private static final int SCORE_PANEL_Y = 20;
+    private static final int SCORE_PANEL_WIDTH = 180;
+    private static final int SCORE_PANEL_HEIGHT = 60;
+    private static final int SCORE_PANEL_MARGIN = 2;
+
+    // Debug overlay with timings, in the upper-right corner
+    private static final int METRICS_PANEL_WIDTH = 300;
+    private static final int METRICS_LINE_HEIGHT = 15;
+    private static final int METRICS_PANEL_HEIGHT =
+            (GameMetrics.getPhaseCount() + 4) * METRICS_LINE_HEIGHT + 10;
+
+    // Largest food item; anything the head eats lies within this of it
+    private static final int MAX_FOOD_SIZE =
+            Math.max(Apple.SIZE, Math.max(GoldenApple.SIZE, PoisonApple.SIZE));
+
+    // Particle colors, as indices into the particle palette
+    private static final int APPLE_PARTICLE = 0;
+    private static final int GOLDEN_PARTICLE = 1;
+    private static final int POISON_PARTICLE = 2;
     
-    // Game components
-    private Snake snake;
-    private Apple apple;
-    private GoldenApple goldenApple;
-    private PoisonApple poisonApple;
+    // Game rules and state; this panel only draws it and feeds it input
+    private final SnakeEngine engine;
     private final JLabel status;
 
+    // Direction pressed since the last tick, applied by the next one
+    private Direction pendingDirection;
+
     // Game state variables
-    private int score = 0;
     private int bestScore = 0;
-    private boolean playing = false;
+    private Leaderboard leaderboard;
+    // When the current game started; with its seed, names its leaderboard entry
+    private long gameStartedAt = System.currentTimeMillis();
+    private final String profile = System.getProperty("snake.profile",
+            System.getProperty("user.name", "player"));
     private boolean instructionsClicked;
     private boolean reloadClicked;
     private boolean saveClicked;
 
+    // Demo mode: the autopilot plays until someone presses a key. Set only
+    // when a game starts, so a game the autopilot played never counts
+    private final Autopilot autopilot = new Autopilot();
+    private boolean demo;
+    private long lastInputMillis = System.currentTimeMillis();
+
     // Animation state variables
     private long gameOverStartTime = 0;
     private long screenShakeStartTime = 0;
     private int screenShakeIntensity = 0;
-    private LinkedList<Particle> particles = new LinkedList<>();
+    private final ParticleSystem particles = new ParticleSystem(PARTICLE_CAPACITY,
+            PARTICLE_LIFETIME, APPLE_COLOR, GOLDEN_APPLE_COLOR, POISON_APPLE_COLOR);
     private float fadeAlpha = 1.0f;
     private boolean isFading = false;
 
-    // Game images
-    private BufferedImage gameOverImg;
-    private BufferedImage instructionsImg;
+    // Union of the areas that changed since the last repaint request
+    private boolean dirty;
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+
+    // Overlay labels and the values they were built for
+    private String scoreText;
+    private int scoreTextValue;
+    private String bestScoreText;
+    private int bestScoreTextValue;
 
     // Timer for game loop
     private final javax.swing.Timer timer;
     private javax.swing.Timer poisonAppleTimer;
     private javax.swing.Timer animationTimer;
 
-    // Random generator for effects
-    private Random random = new Random();
+    // Guards the game state; held by Swing handlers and by the game loop
+    private final Object stateLock = new Object();
 
-    // Particle class for visual effects
-    private static class Particle {
-        int x, y;
-        int vx, vy;
-        int life;
-        Color color;
-        int size;
-        
-        Particle(int x, int y, Color color) {
-            this.x = x;
-            this.y = y;
-            this.color = color;
-            this.life = PARTICLE_LIFETIME;
-            Random rand = new Random();
-            this.size = rand.nextInt(4) + 2;
-            this.vx = rand.nextInt(8) - 4;
-            this.vy = rand.nextInt(8) - 4;
-        }
-        
-        void update() {
-            x += vx;
-            y += vy;
-            life--;
-            size = Math.max(1, size - 1);
-        }
-        
-        boolean isDead() {
-            return life <= 0;
-        }
-    }
+    // Active rendering; both are null while the Swing timers drive the game
+    private GameLoop gameLoop;
+    private Canvas canvas;
+
+    // Set while ticks are paused (after save or reload until a key is pressed)
+    private boolean ticksPaused;
+
+    // Set by close(); timer events still queued then do nothing
+    private boolean closed;
+
+    // Arrow key handling, shared by this panel and the game loop's canvas
+    private KeyAdapter keyHandler;
+
+    // Tick and paint timings, also published over JMX
+    private final GameMetrics metrics = new GameMetrics();
+    private boolean showMetrics;
+    private long lastAnimationNanos;
+
+    // Reused by every save
+    private final GameSnapshot snapshot = new GameSnapshot();
+
+    // Input of the current game, when journaling is on
+    private InputRecorder journal;
+    private Path journalPath;
+    // Turns finished journals into replays; started with the first one
+    private ExecutorService replayConverter;
+
+    // Records finished games off the game thread
+    private final PersistenceService persistence = new PersistenceService(metrics);
+
+    // Where saves, autosaves and scores are kept
+    private final Path dataDir;
+
+    // Saves the game in play about once a second
+    private final Autosave autosave;
+
+    // The board background, drawn once per board size
+    private final LayerCache backgroundLayer =
+            new LayerCache(GameCourt::paintBackground, Transparency.OPAQUE);
+
+    // What the game loop and paintComponent last copied out to draw
+    private FrameCopy loopFrame;
+    private FrameCopy paintFrame;
 
     /**
-     * Initializes the game board.
+     * Initializes the game board, keeping saves and scores in files/.
      */
     public GameCourt(JLabel statusInit) {
+        this(statusInit, Paths.get(DATA_DIR));
+    }
+
+    /**
+     * Initializes the game board, keeping saves, autosaves and scores in
+     * dataDir.
+     */
+    public GameCourt(JLabel statusInit, Path dataDir) {
+        this.dataDir = dataDir;
+        autosave = new Autosave(dataDir.resolve(AUTOSAVE_FILE),
+                dataDir.resolve(AUTOSAVE_DELTAS_FILE), persistence);
+
         // Creates border around the court area with enhanced styling
         setBorder(BorderFactory.createCompoundBorder(
             BorderFactory.createLineBorder(BORDER_COLOR, 4),
@@ -128,6 +238,9 @@ public class GameCourt extends JPanel {
         ));
         setBackground(BACKGROUND_COLOR);
 
+        engine = new SnakeEngine(boardWidth, boardHeight);
+        metrics.register();
+        recoverAutosave();
         loadGameImages();
         loadBestScore();
 
@@ -138,37 +251,80 @@ public class GameCourt extends JPanel {
         
         // Start animation timer for smooth effects
         ActionListener animate = e -> updateAnimations();
-        animationTimer = new javax.swing.Timer(16, animate); // 60 FPS
+        animationTimer = new javax.swing.Timer(EFFECT_MILLIS, animate); // 60 FPS
         animationTimer.start();
         
         setFocusable(true);
         setupKeyboardControls();
 
         status = statusInit; // initializes the status JLabel
-        poisonApple = new PoisonApple(boardWidth, boardHeight);
     }
 
     /**
-     * Loads game images from files.
+     * Decodes the overlay images up front so the first game over does not
+     * wait on the disk. They are scaled to the board when first drawn.
      */
     private void loadGameImages() {
+        SpriteCache.load(GAME_OVER_IMAGE_PATH);
+        SpriteCache.load(INSTRUCTIONS_IMAGE_PATH);
+    }
+
+    /**
+     * Moves a game the last run left unfinished, e.g. by crashing, into a
+     * slot of its own so that RESUME can continue it. The player's SAVE slot
+     * is never touched. Done before the first game starts autosaving.
+     */
+    private void recoverAutosave() {
+        Path checkpoint = dataDir.resolve(AUTOSAVE_FILE);
+        Path deltas = dataDir.resolve(AUTOSAVE_DELTAS_FILE);
         try {
-            gameOverImg = ImageIO.read(new File("files/GameOver.png"));
-            instructionsImg = ImageIO.read(new File("files/instructions.jpg"));
+            GameSnapshot unfinished = Autosave.read(checkpoint, deltas);
+            if (unfinished != null) {
+                unfinished.write(dataDir.resolve(RECOVERED_FILE));
+                LOGGER.log(Level.INFO, "Recovered an unfinished game; RESUME continues it");
+            }
+            Files.deleteIfExists(deltas);
+            Files.deleteIfExists(checkpoint);
         } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to load game images", e);
+            LOGGER.log(Level.WARNING, "Could not recover the autosaved game", e);
         }
     }
 
     /**
-     * Loads the best score from file.
+     * Opens the shared leaderboard and loads this profile's best score.
      */
     private void loadBestScore() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(BEST_SCORE_PATH))) {
-            bestScore = Integer.parseInt(reader.readLine().trim());
-        } catch (IOException | NumberFormatException e) {
-            LOGGER.log(Level.INFO, "Could not load best score, using default", e);
-            // If the file doesn't exist or has invalid content, bestScore remains 0
+        try {
+            Files.createDirectories(dataDir);
+            leaderboard = Leaderboard.open(dataDir.resolve(LEADERBOARD_FILE));
+            bestScore = leaderboard.getBestScore(profile);
+            if (bestScore == 0) {
+                importLegacyBestScore();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not open the leaderboard, scores will not be kept", e);
+        }
+    }
+
+    /**
+     * Copies the best score an older version saved as text into this
+     * profile, so upgrading does not lose it.
+     */
+    private void importLegacyBestScore() throws IOException {
+        File legacy = dataDir.resolve(BEST_SCORE_FILE).toFile();
+        if (!legacy.exists()) {
+            // Nothing to import; the usual case
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(legacy))) {
+            String line = reader.readLine();
+            int score = line == null ? 0 : Integer.parseInt(line.trim());
+            if (score > 0) {
+                leaderboard.record(profile, score, legacy.lastModified(), 0);
+                bestScore = score;
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Could not read the old best score in " + legacy, e);
         }
     }
 
@@ -176,88 +332,362 @@ public class GameCourt extends JPanel {
      * Sets up keyboard controls for the snake.
      */
     private void setupKeyboardControls() {
-        addKeyListener(new KeyAdapter() {
+        keyHandler = new KeyAdapter() {
             public void keyPressed(KeyEvent e) {
-                if (!timer.isRunning()) {
-                    timer.start();
-                }
+                synchronized (stateLock) {
+                    if (e.getKeyCode() == KeyEvent.VK_F3) {
+                        // Toggle the timing overlay; this is not playing
+                        showMetrics = !showMetrics;
+                        repaint();
+                        return;
+                    }
+
+                    resumeTicks();
+                    noteInput();
 
-                switch (e.getKeyCode()) {
-                    case KeyEvent.VK_LEFT:
-                        snake.setVy(0);
-                        snake.setVx(-snake.getSnakeVX());
-                        break;
-                    case KeyEvent.VK_RIGHT:
-                        snake.setVy(0);
-                        snake.setVx(snake.getSnakeVX());
-                        break;
-                    case KeyEvent.VK_DOWN:
-                        snake.setVx(0);
-                        snake.setVy(snake.getSnakeVY());
-                        break;
-                    case KeyEvent.VK_UP:
-                        snake.setVx(0);
-                        snake.setVy(-snake.getSnakeVY());
-                        break;
-                    default:
-                        // Ignore other keys
-                        break;
+                    switch (e.getKeyCode()) {
+                        case KeyEvent.VK_LEFT:
+                            pendingDirection = Direction.LEFT;
+                            break;
+                        case KeyEvent.VK_RIGHT:
+                            pendingDirection = Direction.RIGHT;
+                            break;
+                        case KeyEvent.VK_DOWN:
+                            pendingDirection = Direction.DOWN;
+                            break;
+                        case KeyEvent.VK_UP:
+                            pendingDirection = Direction.UP;
+                            break;
+                        default:
+                            // Ignore other keys
+                            break;
+                    }
                 }
             }
-        });
+        };
+        addKeyListener(keyHandler);
     }
 
     // GETTERS FOR TESTING
     public boolean isPlaying() {
-        return playing;
+        return engine.isPlaying();
     }
 
     public Apple getApple() {
-        return apple;
+        return engine.getApple();
     }
 
     public int getScore() {
-        return score;
+        return engine.getScore();
     }
 
     public GoldenApple getGoldenApple() {
-        return goldenApple;
+        return engine.getGoldenApple();
     }
 
     public Snake getSnake() {
-        return snake;
+        return engine.getSnake();
+    }
+
+    public SnakeEngine getEngine() {
+        return engine;
+    }
+
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+
+    public PersistenceService getPersistence() {
+        return persistence;
     }
 
     /**
      * (Re-)set the game to its initial state.
      */
     public void reset() {
-        if (!timer.isRunning()) {
-            timer.start();
+        synchronized (stateLock) {
+            lastInputMillis = System.currentTimeMillis();
+            startGame(false);
         }
-        
+    }
+
+    /**
+     * Starts a new game, played by the player or by the autopilot. The game
+     * it replaces is abandoned, so its autosave is discarded; only the
+     * player's games are autosaved.
+     */
+    private void startGame(boolean demoGame) {
+        resumeTicks();
+
         // Reset game components and variables
-        snake = new Snake(boardWidth, boardHeight);
-        apple = new Apple(boardWidth, boardHeight);
-        goldenApple = new GoldenApple(boardWidth, boardHeight);
-        poisonApple = new PoisonApple(boardWidth, boardHeight);
-        
+        engine.setBoardSize(boardWidth, boardHeight);
+        engine.reset();
+        gameStartedAt = System.currentTimeMillis();
+        demo = demoGame;
+        pendingDirection = null;
+        startJournal();
+        autosave.discard();
+        if (!demo) {
+            autosave.start(engine);
+        }
+
         // Stop the poison apple timer if it's running
         stopPoisonAppleTimer();
-        
-        snake.setSnakeVX(3);
-        snake.setSnakeVY(3);
-        score = 0;
-        
+
         updateScoreDisplay();
-        
+
         instructionsClicked = false;
-        playing = true;
-        
+
         repaint();
+        if (!demoGame) {
+            // A demo game starts itself, on the game loop thread when it
+            // drives the game, so only the player's games take focus
+            requestFocusInWindow();
+        }
+    }
+
+    /**
+     * Records that the player did something. If the autopilot was playing,
+     * the player gets a new game of their own rather than the autopilot's
+     * game and score.
+     */
+    private void noteInput() {
+        lastInputMillis = System.currentTimeMillis();
+        if (demo) {
+            startGame(false);
+        }
+    }
+
+    /**
+     * Starts a new game played by the autopilot.
+     */
+    private void startDemo() {
+        startGame(true);
+    }
+
+    /**
+     * Hands the game to the autopilot once nobody has touched it for
+     * DEMO_IDLE_MILLIS, and starts the next demo game a little while after
+     * the last one ended.
+     */
+    private void updateDemo() {
+        long now = System.currentTimeMillis();
+        if (demo) {
+            if (!engine.isPlaying() && !instructionsClicked
+                    && now - gameOverStartTime >= DEMO_RESTART_MILLIS) {
+                startDemo();
+            }
+        } else if (now - lastInputMillis >= DEMO_IDLE_MILLIS
+                && (!engine.isPlaying() || ticksPaused || instructionsClicked)) {
+            startDemo();
+        }
+    }
+
+    /**
+     * Ends the previous game's journal and, if journaling is on, starts one
+     * for the game just reset.
+     */
+    private void startJournal() {
+        finishJournal();
+        if (JOURNAL_DIR == null) {
+            return;
+        }
+        Path file = Paths.get(JOURNAL_DIR, Long.toHexString(engine.getSeed()) + ".journal");
+        try {
+            Files.createDirectories(file.getParent());
+            journal = new InputRecorder(new BufferedOutputStream(Files.newOutputStream(file)),
+                    engine.getSeed(), engine.getBoardWidth(), engine.getBoardHeight());
+            journalPath = file;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not start input journal " + file, e);
+        }
+    }
+
+    /**
+     * Marks the end of the current game's journal and closes it, then turns
+     * it into a seekable replay next to it in the background.
+     */
+    private void finishJournal() {
+        if (journal != null) {
+            try {
+                journal.finish(engine.getTick());
+                journal.close();
+                Path source = journalPath;
+                Path replay = source.resolveSibling(
+                        source.getFileName().toString().replace(".journal", ".replay"));
+                convertJournal(source, replay);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to finish input journal", e);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Queues a journal to be turned into a replay. Converting replays the
+     * whole game, so it runs on a thread of its own at low priority rather
+     * than holding up saves and scores on the persistence thread, and it
+     * never keeps the game from exiting: a journal left unconverted can
+     * still be converted with ReplayFile.
+     */
+    private void convertJournal(Path source, Path replay) {
+        if (replayConverter == null) {
+            replayConverter = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "snake-replays");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        replayConverter.execute(() -> {
+            try {
+                ReplayFile.convert(source, replay, ReplayFile.DEFAULT_KEYFRAME_INTERVAL);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not convert " + source + " to a replay", e);
+            }
+        });
+    }
+
+    /**
+     * Gives up on the current journal after a write failed.
+     */
+    private void stopJournal(IOException cause) {
+        LOGGER.log(Level.WARNING, "Input journal failed, no longer recording this game", cause);
+        try {
+            journal.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+        journal = null;
+    }
+
+    /**
+     * Lets the game tick again, starting the tick timer unless the game loop
+     * is driving the game.
+     */
+    private void resumeTicks() {
+        ticksPaused = false;
+        if (gameLoop == null && !timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops the game from ticking until resumeTicks() is called.
+     */
+    private void pauseTicks() {
+        ticksPaused = true;
+        timer.stop();
+    }
+
+    /**
+     * Whether the game should advance on the next tick.
+     */
+    boolean isTicking() {
+        return !ticksPaused;
+    }
+
+    /**
+     * The lock that must be held while reading or changing the game state
+     * from outside the event dispatch thread.
+     */
+    Object getStateLock() {
+        return stateLock;
+    }
+
+    /**
+     * Switches from the Swing timers and repaint() to a GameLoop that steps
+     * the game on its own thread and draws into a canvas covering this
+     * panel. Must be called on the event dispatch thread once the panel is
+     * showing.
+     */
+    public void startActiveRendering(int targetFps) {
+        if (gameLoop != null) {
+            return;
+        }
+        synchronized (stateLock) {
+            timer.stop();
+            animationTimer.stop();
+
+            canvas = new Canvas();
+            canvas.setBackground(BACKGROUND_COLOR);
+            canvas.addKeyListener(keyHandler);
+            setLayout(new BorderLayout());
+            add(canvas, BorderLayout.CENTER);
+            validate();
+
+            gameLoop = new GameLoop(this, canvas, targetFps);
+            gameLoop.start();
+        }
         requestFocusInWindow();
     }
 
+    /**
+     * Stops the game loop and hands the game back to the Swing timers.
+     */
+    public void stopActiveRendering() {
+        if (gameLoop == null) {
+            return;
+        }
+        gameLoop.stop();
+        synchronized (stateLock) {
+            gameLoop = null;
+            remove(canvas);
+            canvas = null;
+            validate();
+            animationTimer.start();
+            if (!ticksPaused) {
+                timer.start();
+            }
+        }
+        repaint();
+    }
+
+    public boolean isActiveRendering() {
+        return gameLoop != null;
+    }
+
+    /**
+     * Stops the game and its timers and writes out everything still queued.
+     * The autosave is kept, so the next run can resume a game closed while
+     * it was played. The court cannot be used after.
+     */
+    public void close() {
+        if (gameLoop != null) {
+            gameLoop.stop();
+        }
+        synchronized (stateLock) {
+            closed = true;
+            timer.stop();
+            animationTimer.stop();
+            stopPoisonAppleTimer();
+            finishJournal();
+            if (replayConverter != null) {
+                replayConverter.shutdown();
+            }
+        }
+        persistence.close();
+        if (leaderboard != null) {
+            try {
+                leaderboard.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close the leaderboard", e);
+            }
+            leaderboard = null;
+        }
+    }
+
+    /**
+     * Sends focus to whatever is showing the game, so arrow keys reach it.
+     */
+    @Override
+    public boolean requestFocusInWindow() {
+        if (canvas != null) {
+            return canvas.requestFocusInWindow();
+        }
+        return super.requestFocusInWindow();
+    }
+
     /**
      * Helper method to stop the poison apple timer if it exists and is running
      */
@@ -270,10 +700,33 @@ public class GameCourt extends JPanel {
     /**
      * Updates animations and visual effects
      */
-    private void updateAnimations() {
-        // Update particles
-        particles.removeIf(Particle::isDead);
-        particles.forEach(Particle::update);
+    void updateAnimations() {
+        if (closed) {
+            return;
+        }
+        // The game loop measures its own frames
+        long now = System.nanoTime();
+        if (gameLoop == null && lastAnimationNanos != 0) {
+            metrics.recordFrameInterval(now - lastAnimationNanos, EFFECT_MILLIS * 1_000_000L);
+        }
+        lastAnimationNanos = now;
+
+        if (DEMO_IDLE_MILLIS >= 0) {
+            updateDemo();
+        }
+
+        // Update particles; dead ones leave their old area to be cleared
+        for (int i = 0; i < particles.size(); i++) {
+            markParticle(i);
+        }
+        particles.update();
+        for (int i = 0; i < particles.size(); i++) {
+            markParticle(i);
+        }
+        metrics.setParticleCount(particles.size());
+        if (showMetrics) {
+            markDirty(metricsPanelX(), SCORE_PANEL_Y, METRICS_PANEL_WIDTH, METRICS_PANEL_HEIGHT);
+        }
         
         // Update fade effect
         if (isFading) {
@@ -284,11 +737,15 @@ public class GameCourt extends JPanel {
             } else {
                 fadeAlpha = 0.0f;
                 isFading = false;
+                // The game over panel disappears
+                repaint();
             }
         }
         
-        // Update screen shake
+        // Update screen shake; the whole board moves, including its final
+        // frame back in place
         if (screenShakeIntensity > 0) {
+            repaint();
             long currentTime = System.currentTimeMillis();
             long elapsed = currentTime - screenShakeStartTime;
             if (elapsed < SCREEN_SHAKE_DURATION) {
@@ -298,13 +755,78 @@ public class GameCourt extends JPanel {
             }
         }
         
-        repaint();
+        repaintDirty();
+    }
+
+    /**************************************************************************
+     * DIRTY REGIONS
+     **************************************************************************/
+
+    /**
+     * Adds a rectangle to the area that needs repainting.
+     */
+    private void markDirty(int x, int y, int width, int height) {
+        if (!dirty) {
+            dirty = true;
+            dirtyMinX = x;
+            dirtyMinY = y;
+            dirtyMaxX = x + width;
+            dirtyMaxY = y + height;
+        } else {
+            dirtyMinX = Math.min(dirtyMinX, x);
+            dirtyMinY = Math.min(dirtyMinY, y);
+            dirtyMaxX = Math.max(dirtyMaxX, x + width);
+            dirtyMaxY = Math.max(dirtyMaxY, y + height);
+        }
+    }
+
+    /**
+     * Marks the area a snake segment drawn at (x, y) covers, glow included.
+     */
+    private void markSnakeSprite(int x, int y) {
+        markDirty(x - SnakeAtlas.PAD, y - SnakeAtlas.PAD, SnakeAtlas.CELL, SnakeAtlas.CELL);
+    }
+
+    /**
+     * Marks the food items from index first onwards.
+     */
+    private void markFood(GameObj food, int size, int first) {
+        SegmentBuffer items = food.getSegments();
+        for (int i = Math.max(0, first); i < items.size(); i++) {
+            markDirty(items.getX(i) - 1, items.getY(i) - 1, size + 2, size + 2);
+        }
+    }
+
+    private void markParticle(int index) {
+        int size = particles.getSize(index);
+        markDirty(particles.getX(index) - 3, particles.getY(index) - 3, size + 6, size + 6);
+    }
+
+    private void markScorePanel() {
+        markDirty(SCORE_PANEL_X - SCORE_PANEL_MARGIN, SCORE_PANEL_Y - SCORE_PANEL_MARGIN,
+                SCORE_PANEL_WIDTH + 2 * SCORE_PANEL_MARGIN,
+                SCORE_PANEL_HEIGHT + 2 * SCORE_PANEL_MARGIN);
+    }
+
+    /**
+     * Asks Swing to repaint the union of everything marked since the last
+     * call, if anything was.
+     */
+    private void repaintDirty() {
+        if (dirty) {
+            dirty = false;
+            // The game loop redraws the whole canvas every frame anyway
+            if (gameLoop == null) {
+                repaint(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
+            }
+        }
     }
 
     /**
      * Creates particle effects at the specified location
      */
-    private void createParticleEffect(int x, int y, Color color) {
+    private void createParticleEffect(int x, int y, int color) {
+        SplittableRandom random = engine.getCosmeticRandom();
         for (int i = 0; i < PARTICLE_COUNT; i++) {
             // Create particles in a circular pattern around the snake head
             double angle = (2 * Math.PI * i) / PARTICLE_COUNT;
@@ -313,7 +835,12 @@ public class GameCourt extends JPanel {
             int particleX = x + 10 + (int) (Math.cos(angle) * radius);
             int particleY = y + 10 + (int) (Math.sin(angle) * radius);
             
-            particles.add(new Particle(particleX, particleY, color));
+            int size = random.nextInt(4) + 2;
+            int vx = random.nextInt(8) - 4;
+            int vy = random.nextInt(8) - 4;
+            if (particles.spawn(particleX, particleY, vx, vy, size, color)) {
+                markParticle(particles.size() - 1);
+            }
         }
     }
 
@@ -323,332 +850,297 @@ public class GameCourt extends JPanel {
     private void triggerScreenShake() {
         screenShakeStartTime = System.currentTimeMillis();
         screenShakeIntensity = 10;
+        // Shaking moves the whole board, so partial repaints would tear
+        repaint();
     }
 
     /**
      * Updates the score display.
      */
     private void updateScoreDisplay() {
-        status.setText("SCORE: " + score + " / BEST: " + bestScore);
+        String text = (demo ? "DEMO (press any key to play) " : "")
+                + "SCORE: " + engine.getScore() + " / BEST: " + bestScore;
+        if (SwingUtilities.isEventDispatchThread()) {
+            status.setText(text);
+        } else {
+            SwingUtilities.invokeLater(() -> status.setText(text));
+        }
     }
 
     /**
      * Helper method to generate apples, with golden apples appearing less frequently.
      */
     public void generateApples() {
-        if (apple.getGameObjects().size() < MAX_APPLES) {
-            apple.add();
-        }
-        
-        if (Math.random() <= GOLDEN_APPLE_SPAWN_CHANCE && 
-            goldenApple.getGameObjects().size() < MAX_GOLDEN_APPLES) {
-            goldenApple.add();
-        }
-       
+        engine.generateApples();
     }
 
     /**
      * This method is called every time the timer defined in the constructor triggers.
-     * It handles the main game logic.
+     * It steps the engine and turns what happened into effects on screen.
      */
     public void begin() {
-        if (playing) {
-            snake.move();
+        if (engine.isPlaying() && !closed) {
+            long start = System.nanoTime();
+
+            // Remember what the tick can change on screen
+            SegmentBuffer body = engine.getSnake().getSegments();
+            int oldHeadX = body.firstX();
+            int oldHeadY = body.firstY();
+            int oldTailX = body.lastX();
+            int oldTailY = body.lastY();
+            int apples = engine.getApple().getSegments().size();
+            int goldenApples = engine.getGoldenApple().getSegments().size();
+
+            if (demo) {
+                pendingDirection = autopilot.decide(engine);
+            }
+            if (journal != null && pendingDirection != null) {
+                try {
+                    journal.recordDirection(engine.getTick(), pendingDirection);
+                } catch (IOException e) {
+                    stopJournal(e);
+                }
+            }
+            int events = engine.step(pendingDirection);
+            pendingDirection = null;
+            if ((events & SnakeEngine.GAME_OVER) == 0) {
+                autosave.recordTick(engine, events);
+            }
+            long phaseStart = metrics.record(GameMetrics.TICK_ENGINE, start);
+
+            // Only the old head, the new head and the old tail look different
+            markSnakeSprite(oldHeadX, oldHeadY);
+            markSnakeSprite(oldTailX, oldTailY);
+            markSnakeSprite(body.firstX(), body.firstY());
 
-            // Check collisions with food
-            handleFoodCollisions();
+            handleFoodCollisions(events, apples, goldenApples);
             
             // Check for game over conditions
-            if (snake.hasHitItself() || snake.hasHitWall()) {
-                playing = false;
+            if ((events & SnakeEngine.GAME_OVER) != 0) {
+                recordGame();
+                finishJournal();
+                // Nothing is left to resume
+                autosave.discard();
                 gameOverStartTime = System.currentTimeMillis();
                 isFading = true;
                 triggerScreenShake();
             }
             
+            metrics.record(GameMetrics.TICK_EFFECTS, phaseStart);
+            metrics.setSnakeLength(body.size());
+            
             // Update the display
-            repaint();
+            repaintDirty();
+            metrics.record(GameMetrics.TICK, start);
         }
     }
 
     /**
-     * Handles collisions between the snake and food items.
+     * Shows the effects of any food the snake ate during the last tick.
+     * apples and goldenApples are the item counts from before the tick.
      */
-    private void handleFoodCollisions() {
-        // If snake hits an apple, increase length of snake
-        if (apple.intersects(snake)) {
-            // Get the snake's head position for better particle placement
-            Point snakeHead = snake.getGameObjects().getFirst();
-            apple.updateSnake(snake);
-            
-            // Create particle effects at snake head position for better visual effect
-            createParticleEffect(snakeHead.x, snakeHead.y, APPLE_COLOR);
-            
-            // Increase score by 1 point
-            score += 1;
-            updateScoreAndGenerateFood();
+    private void handleFoodCollisions(int events, int apples, int goldenApples) {
+        int eaten = SnakeEngine.ATE_APPLE | SnakeEngine.ATE_GOLDEN_APPLE
+                | SnakeEngine.ATE_POISON_APPLE;
+        if ((events & eaten) == 0) {
+            return;
         }
 
-        // If snake hits a golden apple, increase the velocity of snake
-        if (goldenApple.intersects(snake)) {
-            // Get the snake's head position for better particle placement
-            Point snakeHead = snake.getGameObjects().getFirst();
-            goldenApple.updateSnake(snake);
-            
-            // Create golden particle effects at snake head position
-            createParticleEffect(snakeHead.x, snakeHead.y, GOLDEN_APPLE_COLOR);
-            
-            // Increase score by 5 points
-            score += 5;
-            updateScoreAndGenerateFood();
-        }
-
-        // Poison apple: shrink to half, -5 points, clear timer
-        if (poisonApple.intersects(snake)) {
-            // Get the snake's head position for better particle placement
-            Point snakeHead = snake.getGameObjects().getFirst();
-            int half = Math.max(1, snake.getGameObjects().size() / 2);
-            while (snake.getGameObjects().size() > half) {
-                snake.getGameObjects().removeLast();
-            }
-            score = Math.max(0, score - 5);
+        // Eaten food overlapped the head; spawned food was appended at the end
+        Snake snake = engine.getSnake();
+        markDirty(snake.getPx() - MAX_FOOD_SIZE - 1, snake.getPy() - MAX_FOOD_SIZE - 1,
+                snake.getWidth() + 2 * MAX_FOOD_SIZE + 2, snake.getHeight() + 2 * MAX_FOOD_SIZE + 2);
+        int applesLeft = apples - ((events & SnakeEngine.ATE_APPLE) != 0 ? 1 : 0);
+        int goldenLeft = goldenApples - ((events & SnakeEngine.ATE_GOLDEN_APPLE) != 0 ? 1 : 0);
+        markFood(engine.getApple(), Apple.SIZE, applesLeft);
+        markFood(engine.getGoldenApple(), GoldenApple.SIZE, goldenLeft);
+        markScorePanel();
+
+        // Particles spawn at the snake's head position for better visual effect
+        int headX = engine.getSnake().getSegments().firstX();
+        int headY = engine.getSnake().getSegments().firstY();
+
+        if ((events & SnakeEngine.ATE_APPLE) != 0) {
+            createParticleEffect(headX, headY, APPLE_PARTICLE);
+        }
+
+        if ((events & SnakeEngine.ATE_GOLDEN_APPLE) != 0) {
+            createParticleEffect(headX, headY, GOLDEN_PARTICLE);
+        }
+
+        // Poison apple: clear timer, poison particles and screen shake
+        if ((events & SnakeEngine.ATE_POISON_APPLE) != 0) {
             stopPoisonAppleTimer();
-            
-            // Create poison particle effects and screen shake at snake head position
-            createParticleEffect(snakeHead.x, snakeHead.y, POISON_APPLE_COLOR);
+            createParticleEffect(headX, headY, POISON_PARTICLE);
             triggerScreenShake();
-            
-            updateScoreAndGenerateFood();
         }
+
+        updateScore();
     }
 
     /**
-     * Updates the score display and generates new food items.
+     * Updates the best score and the score display.
      */
-    private void updateScoreAndGenerateFood() {
-        // Update best score if needed
-        if (score > bestScore) {
-            bestScore = score;
-            saveBestScore();
+    private void updateScore() {
+        // Update best score if needed; demo games do not count
+        if (!demo && engine.getScore() > bestScore) {
+            bestScore = engine.getScore();
+            // Keep it even if the game is never finished
+            recordGame();
         }
         
         updateScoreDisplay();
-        generateApples();
     }
 
     /**
-     * Saves the best score to file.
+     * Queues the current game's score to be recorded on the leaderboard.
+     * Called whenever the game sets a best score and again when it ends;
+     * each call replaces the game's entry if the score is higher.
      */
-    private void saveBestScore() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(BEST_SCORE_PATH))) {
-            writer.write(Integer.toString(bestScore));
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Failed to save best score", e);
+    private void recordGame() {
+        if (leaderboard == null || demo) {
+            return;
         }
+        Leaderboard board = leaderboard;
+        String player = profile;
+        int score = engine.getScore();
+        long seed = engine.getSeed();
+        long startedAt = gameStartedAt;
+        persistence.submit("leaderboard entry for game " + seed + " started " + startedAt,
+                () -> board.record(player, score, startedAt, seed));
     }
 
     /**
      * Shows the instructions screen.
      */
     public void instructions() {
-        instructionsClicked = true;
-        playing = false;
-        repaint();
-        requestFocusInWindow();
-    }
-
-    /**
-     * Helper function to write game objects to file.
-     */
-    private void writeGameObjectsToFile(String filePath, LinkedList<Point> gameObjects) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, false))) {
-            for (Point gameObject : gameObjects) {
-                writer.write(Integer.toString(gameObject.x));
-                writer.write(",");
-                writer.write(Integer.toString(gameObject.y));
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Failed to write game objects to " + filePath, e);
+        synchronized (stateLock) {
+            noteInput();
+            instructionsClicked = true;
+            engine.setPlaying(false);
+            repaint();
+            requestFocusInWindow();
         }
     }
 
     /**
-     * Saves the current game state to files.
+     * Saves the current game state to a snapshot file.
      */
     public void save() {
-        // Save game state
-        try (BufferedWriter stateWriter = new BufferedWriter(new FileWriter(GAME_STATE_PATH, false))) {
-            // Write snake information
-            stateWriter.write("snake," + snake.getPx() + "," + snake.getPy());
-            stateWriter.newLine();
-            
-            // Write apple information
-            stateWriter.write("apple," + apple.getPx() + "," + apple.getPy());
-            stateWriter.newLine();
-            
-            // Write golden apple information
-            stateWriter.write("golden," + goldenApple.getPx() + "," + goldenApple.getPy());
-            stateWriter.newLine();
-            
-            // Write snake velocity
-            stateWriter.write(snake.getSnakeVX() + "," + snake.getSnakeVY());
-            stateWriter.newLine();
-            
-            // Write current score
-            stateWriter.write(Integer.toString(score));
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Failed to save game state", e);
-        }
-
-        // Save game objects
-        writeGameObjectsToFile(SNAKE_OBJS_PATH, snake.getGameObjects());
-        writeGameObjectsToFile(APPLE_OBJS_PATH, apple.getGameObjects());
-        writeGameObjectsToFile(GOLDEN_APPLE_OBJS_PATH, goldenApple.getGameObjects());
+        synchronized (stateLock) {
+            noteInput();
+            // Save the whole game to one file, replaced atomically; only
+            // the capture needs the lock, the write happens in the background
+            snapshot.capture(engine);
+            persistence.submit(dataDir.resolve(SNAPSHOT_FILE), snapshot.toBytes());
 
-        // Update button states
-        saveClicked = true;
-        instructionsClicked = false;
-        reloadClicked = false;
+            // Update button states
+            saveClicked = true;
+            instructionsClicked = false;
+            reloadClicked = false;
         
-        timer.stop();
-        playing = true;
+            pauseTicks();
+            engine.setPlaying(true);
 
-        repaint();
-        requestFocusInWindow();
+            repaint();
+            requestFocusInWindow();
+        }
     }
 
     /**
-     * Helper method to read game objects from a file.
+     * Reloads a saved game state.
      */
-    private LinkedList<Point> readGameObjectsFromFile(String fileName) {
-        LinkedList<Point> gameObjects = new LinkedList<>();
+    public void reload() {
+        synchronized (stateLock) {
+            lastInputMillis = System.currentTimeMillis();
+            // A save may still be queued
+            persistence.flush();
+            GameSnapshot saved = loadSnapshot();
         
-        try {
-            FileLineIterator iterator = new FileLineIterator("files/" + fileName);
-            
-            while (iterator.hasNext()) {
-                String[] coords = iterator.next().split(",");
-                gameObjects.add(new Point(
-                    Integer.parseInt(coords[0]), 
-                    Integer.parseInt(coords[1])
-                ));
+            if (saved == null) {
+                reset();
+                return;
             }
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error reading game objects from " + fileName, e);
+
+            restore(saved);
         }
-        
-        return gameObjects;
     }
 
     /**
-     * Reloads a saved game state.
+     * Whether an earlier run left a game unfinished that resume() can
+     * continue.
      */
-    public void reload() {
-        GameState gameState = loadGameState();
-        
-        if (gameState == null) {
-            reset();
-            return;
+    public boolean hasRecoveredGame() {
+        return Files.exists(dataDir.resolve(RECOVERED_FILE));
+    }
+
+    /**
+     * Continues the game an earlier run left unfinished, if there is one.
+     * It is then autosaved like any other game, and no longer offered.
+     */
+    public void resume() {
+        synchronized (stateLock) {
+            lastInputMillis = System.currentTimeMillis();
+            Path file = dataDir.resolve(RECOVERED_FILE);
+            try {
+                GameSnapshot recovered = GameSnapshot.read(file);
+                Files.deleteIfExists(file);
+                if (recovered != null) {
+                    restore(recovered);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not resume the unfinished game", e);
+            }
         }
-        
-        // Load the saved game objects
-        LinkedList<Point> snakeObjs = readGameObjectsFromFile("snakeObjs.txt");
-        LinkedList<Point> appleObjs = readGameObjectsFromFile("appleObjs.txt");
-        LinkedList<Point> goldenAppleObjs = readGameObjectsFromFile("goldenAppleObjs.txt");
-
-        // Recreate game objects from saved state
-        snake = new Snake(
-            gameState.snakePx, gameState.snakePy, 
-            boardWidth, boardHeight, snakeObjs
-        );
-        
-        apple = new Apple(
-            gameState.applePx, gameState.applePy, 
-            boardWidth, boardHeight, appleObjs
-        );
-        
-        goldenApple = new GoldenApple(
-            gameState.goldenPx, gameState.goldenPy, 
-            boardWidth, boardHeight, goldenAppleObjs
-        );
+    }
 
-        // Reset poison apple and its timer
-        poisonApple = new PoisonApple(boardWidth, boardHeight);
+    /**
+     * Replaces the game with a saved one, paused until a key is pressed.
+     */
+    private void restore(GameSnapshot saved) {
+        // Hand the restored objects and score to the engine, with a
+        // fresh poison apple. A restored game cannot be replayed from
+        // its seed, so it is not journaled.
+        finishJournal();
+        saved.restore(engine, boardWidth, boardHeight);
+        gameStartedAt = System.currentTimeMillis();
+        demo = false;
+        autosave.start(engine);
         stopPoisonAppleTimer();
-
-        // Set snake velocity from saved state
-        snake.setSnakeVX(gameState.snakeVX);
-        snake.setSnakeVY(gameState.snakeVY);
-        
-        // Set score from saved state
-        score = gameState.score;
+        pendingDirection = null;
         updateScoreDisplay();
 
         // Update button states
         reloadClicked = true;
         saveClicked = false;
         instructionsClicked = false;
-        
-        timer.stop();
-        playing = true;
+
+        pauseTicks();
 
         repaint();
         requestFocusInWindow();
     }
 
     /**
-     * Loads the game state from file.
+     * Loads the saved game, from the snapshot if there is one and from the
+     * older text files otherwise.
+     *
+     * @return the saved game, or null if there is none or it cannot be read
      */
-    private GameState loadGameState() {
-        GameState state = new GameState();
-        
-        try (BufferedReader stateReader = new BufferedReader(new FileReader(GAME_STATE_PATH))) {
-            // Read snake position
-            String snakePosLine = stateReader.readLine();
-            if (snakePosLine == null) {
-                return null;
-            }
-            
-            String[] snakePosition = snakePosLine.trim().split(",");
-            state.snakePx = Integer.parseInt(snakePosition[1]);
-            state.snakePy = Integer.parseInt(snakePosition[2]);
-
-            // Read apple position
-            String applePosLine = stateReader.readLine();
-            if (applePosLine != null) {
-                String[] applePosition = applePosLine.trim().split(",");
-                state.applePx = Integer.parseInt(applePosition[1]);
-                state.applePy = Integer.parseInt(applePosition[2]);
-            }
-
-            // Read golden apple position
-            String goldenPosLine = stateReader.readLine();
-            if (goldenPosLine != null) {
-                String[] goldenPosition = goldenPosLine.trim().split(",");
-                state.goldenPx = Integer.parseInt(goldenPosition[1]);
-                state.goldenPy = Integer.parseInt(goldenPosition[2]);
-            }
-
-            // Read snake velocity
-            String velocityLine = stateReader.readLine();
-            if (velocityLine != null) {
-                String[] velocity = velocityLine.trim().split(",");
-                state.snakeVX = Integer.parseInt(velocity[0]);
-                state.snakeVY = Integer.parseInt(velocity[1]);
+    private GameSnapshot loadSnapshot() {
+        try {
+            GameSnapshot saved = GameSnapshot.read(dataDir.resolve(SNAPSHOT_FILE));
+            if (saved == null) {
+                saved = GameSnapshot.readLegacy(dataDir.resolve(GAME_STATE_FILE).toString(),
+                        dataDir.resolve(SNAKE_OBJS_FILE).toString(),
+                        dataDir.resolve(APPLE_OBJS_FILE).toString(),
+                        dataDir.resolve(GOLDEN_APPLE_OBJS_FILE).toString());
             }
-
-            // Read score
-            String scoreLine = stateReader.readLine();
-            if (scoreLine != null) {
-                state.score = Integer.parseInt(scoreLine.trim());
+            if (saved == null) {
+                LOGGER.log(Level.INFO, "No saved game state found");
             }
-            
-            return state;
-        } catch (FileNotFoundException e) {
-            LOGGER.log(Level.INFO, "No saved game state found", e);
-            return null;
-        } catch (IOException | NumberFormatException e) {
+            return saved;
+        } catch (IOException e) {
             LOGGER.log(Level.WARNING, "Error loading game state", e);
             return null;
         }
@@ -660,193 +1152,290 @@ public class GameCourt extends JPanel {
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
+        if (gameLoop != null) {
+            // The game loop draws into the canvas on top of this panel
+            return;
+        }
         
         Graphics2D g2d = (Graphics2D) g.create();
+        synchronized (stateLock) {
+            paintFrame = capture(paintFrame);
+        }
+        drawFrame(g2d, paintFrame, 1.0);
+        g2d.dispose();
+    }
+
+    /**
+     * Copies what the next render() draws. The game loop calls this with the
+     * state lock held and then renders without it.
+     */
+    void captureFrame() {
+        loopFrame = capture(loopFrame);
+    }
+
+    /**
+     * Draws the frame last captured for the game loop, with the snake alpha
+     * of the way from its previous tick to its current one.
+     */
+    void render(Graphics2D g2d, int width, int height, double alpha) {
+        if (loopFrame == null) {
+            return;
+        }
+        g2d.setColor(BACKGROUND_COLOR);
+        g2d.fillRect(0, 0, width, height);
+        drawFrame(g2d, loopFrame, alpha);
+    }
+
+    /**
+     * Copies the game state that drawFrame() reads into frame, creating the
+     * frame on first use. Must be called with the state lock held.
+     */
+    private FrameCopy capture(FrameCopy frame) {
+        if (frame == null) {
+            frame = new FrameCopy(particles);
+        }
+        frame.snake.copyFrom(engine.getSnake());
+        frame.apple.copyFrom(engine.getApple());
+        frame.goldenApple.copyFrom(engine.getGoldenApple());
+        frame.poisonApple.copyFrom(engine.getPoisonApple());
+        frame.particles.copyFrom(particles);
+        frame.width = boardWidth;
+        frame.height = boardHeight;
+        frame.score = engine.getScore();
+        frame.bestScore = bestScore;
+        frame.playing = engine.isPlaying();
+        frame.instructions = instructionsClicked;
+        frame.fading = fadeAlpha > 0;
+        frame.showMetrics = showMetrics;
+
+        // Pick the screen shake offset now; the stream is game state
+        frame.shakeX = 0;
+        frame.shakeY = 0;
+        if (screenShakeIntensity > 0) {
+            SplittableRandom random = engine.getCosmeticRandom();
+            frame.shakeX = random.nextInt(screenShakeIntensity * 2) - screenShakeIntensity;
+            frame.shakeY = random.nextInt(screenShakeIntensity * 2) - screenShakeIntensity;
+        }
+        return frame;
+    }
+
+    /**
+     * Draws the board, the game objects and the overlays from a captured
+     * frame, so no game state is read while drawing.
+     */
+    private void drawFrame(Graphics2D g2d, FrameCopy frame, double alpha) {
+        long start = System.nanoTime();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
         
         // Apply screen shake effect
-        if (screenShakeIntensity > 0) {
-            int shakeX = random.nextInt(screenShakeIntensity * 2) - screenShakeIntensity;
-            int shakeY = random.nextInt(screenShakeIntensity * 2) - screenShakeIntensity;
-            g2d.translate(shakeX, shakeY);
-        }
+        g2d.translate(frame.shakeX, frame.shakeY);
 
         // Draw enhanced background with subtle pattern
-        drawEnhancedBackground(g2d);
+        drawEnhancedBackground(g2d, frame);
+        long phaseStart = metrics.record(GameMetrics.PAINT_BACKGROUND, start);
 
-        if (instructionsClicked) {
+        if (frame.instructions) {
             // Draw instructions image with enhanced styling
-            drawInstructionsWithStyle(g2d);
-        } else if (!playing) {
+            drawInstructionsWithStyle(g2d, frame);
+        } else if (!frame.playing) {
             // If not playing draw game over image with enhanced fade effect
-            if (fadeAlpha > 0) {
-                drawGameOverWithStyle(g2d);
+            if (frame.fading) {
+                drawGameOverWithStyle(g2d, frame);
             }
         } else {
             // If playing or reload/save clicked, draw snake and apples
-            snake.draw(g2d);
-            apple.draw(g2d);
-            goldenApple.draw(g2d);
-            poisonApple.draw(g2d);
+            frame.snake.draw(g2d, alpha);
+            frame.apple.draw(g2d);
+            frame.goldenApple.draw(g2d);
+            frame.poisonApple.draw(g2d);
         }
+        phaseStart = metrics.record(GameMetrics.PAINT_OBJECTS, phaseStart);
         
         // Draw enhanced particles
-        drawEnhancedParticles(g2d);
+        drawEnhancedParticles(g2d, frame);
+        phaseStart = metrics.record(GameMetrics.PAINT_PARTICLES, phaseStart);
         
         // Draw UI overlays
-        drawUIOverlays(g2d);
-        
-        // Reset translation for screen shake
-        if (screenShakeIntensity > 0) {
-            g2d.translate(-g2d.getClipBounds().x, -g2d.getClipBounds().y);
+        drawUIOverlays(g2d, frame);
+        if (frame.showMetrics) {
+            drawMetricsOverlay(g2d, frame);
         }
-        
-        g2d.dispose();
+        metrics.record(GameMetrics.PAINT_OVERLAYS, phaseStart);
+        metrics.record(GameMetrics.PAINT, start);
     }
 
     /**
      * Draws enhanced background with subtle pattern
      */
-    private void drawEnhancedBackground(Graphics2D g2d) {
+    private void drawEnhancedBackground(Graphics2D g2d, FrameCopy frame) {
+        backgroundLayer.draw(g2d, 0, 0, frame.width, frame.height, 0);
+    }
+
+    /**
+     * Paints the background layer: the board color, a subtle grid and
+     * highlights in the corners.
+     */
+    private static void paintBackground(Graphics2D g2d, int width, int height, int state) {
+        g2d.setColor(BACKGROUND_COLOR);
+        g2d.fillRect(0, 0, width, height);
+
         // Create subtle grid pattern
-        g2d.setColor(new Color(255, 255, 255, 10));
-        g2d.setStroke(new BasicStroke(1));
+        g2d.setColor(GRID_COLOR);
+        g2d.setStroke(GRID_STROKE);
         
-        for (int x = 0; x < boardWidth; x += 40) {
-            g2d.drawLine(x, 0, x, boardHeight);
+        for (int x = 0; x < width; x += 40) {
+            g2d.drawLine(x, 0, x, height);
         }
-        for (int y = 0; y < boardHeight; y += 40) {
-            g2d.drawLine(0, y, boardWidth, y);
+        for (int y = 0; y < height; y += 40) {
+            g2d.drawLine(0, y, width, y);
         }
         
         // Add subtle corner highlights
-        g2d.setColor(new Color(255, 255, 255, 30));
+        g2d.setColor(CORNER_HIGHLIGHT_COLOR);
         g2d.fillOval(0, 0, 60, 60);
-        g2d.fillOval(boardWidth - 60, 0, 60, 60);
-        g2d.fillOval(0, boardHeight - 60, 60, 60);
-        g2d.fillOval(boardWidth - 60, boardHeight - 60, 60, 60);
+        g2d.fillOval(width - 60, 0, 60, 60);
+        g2d.fillOval(0, height - 60, 60, 60);
+        g2d.fillOval(width - 60, height - 60, 60, 60);
     }
     
     /**
      * Draws instructions with enhanced styling
      */
-    private void drawInstructionsWithStyle(Graphics2D g2d) {
+    private void drawInstructionsWithStyle(Graphics2D g2d, FrameCopy frame) {
         // Draw background panel
-        g2d.setColor(new Color(0, 0, 0, 180));
-        g2d.fillRoundRect(40, 80, boardWidth - 80, boardHeight - 160, 20, 20);
+        g2d.setColor(INSTRUCTIONS_PANEL_COLOR);
+        g2d.fillRoundRect(40, 80, frame.width - 80, frame.height - 160, 20, 20);
         
         // Draw instructions image
-        g2d.drawImage(instructionsImg, 60, 100, boardWidth - 120, boardHeight - 200, null);
+        g2d.drawImage(SpriteCache.get(INSTRUCTIONS_IMAGE_PATH, frame.width - 120, frame.height - 200),
+                60, 100, null);
         
         // Add title
         g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        g2d.setFont(TITLE_FONT);
         // g2d.drawString("📖 Game Instructions", 80, 120);
     }
     
     /**
      * Draws game over with enhanced styling
      */
-    private void drawGameOverWithStyle(Graphics2D g2d) {
+    private void drawGameOverWithStyle(Graphics2D g2d, FrameCopy frame) {
         // Draw background panel
-        g2d.setColor(new Color(0, 0, 0, 200));
-        g2d.fillRoundRect(40, 80, boardWidth - 80, boardHeight - 160, 20, 20);
+        g2d.setColor(GAME_OVER_PANEL_COLOR);
+        g2d.fillRoundRect(40, 80, frame.width - 80, frame.height - 160, 20, 20);
         
         // Draw game over image
-        g2d.drawImage(gameOverImg, 60, 100, boardWidth - 120, boardHeight - 200, null);
+        g2d.drawImage(SpriteCache.get(GAME_OVER_IMAGE_PATH, frame.width - 120, frame.height - 200),
+                60, 100, null);
         
         // Add score display
         g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Segoe UI", Font.BOLD, 20));
-        g2d.drawString("Final Score: " + score, 80, 120);
-        g2d.drawString("Best Score: " + bestScore, 80, 150);
+        g2d.setFont(GAME_OVER_FONT);
+        g2d.drawString("Final Score: " + frame.score, 80, 120);
+        g2d.drawString("Best Score: " + frame.bestScore, 80, 150);
     }
     
     /**
      * Draws enhanced particle effects
      */
-    private void drawEnhancedParticles(Graphics2D g2d) {
-        for (Particle particle : particles) {
-            float alpha = (float) particle.life / PARTICLE_LIFETIME;
-            Color particleColor = new Color(
-                particle.color.getRed(),
-                particle.color.getGreen(),
-                particle.color.getBlue(),
-                (int) (255 * alpha)
-            );
-            
-            // Draw particle with glow effect
-            g2d.setColor(new Color(particle.color.getRed(), particle.color.getGreen(), 
-                                  particle.color.getBlue(), (int) (100 * alpha)));
-            g2d.fillOval(particle.x - 2, particle.y - 2, particle.size + 4, particle.size + 4);
-            
-            g2d.setColor(particleColor);
-            g2d.fillOval(particle.x, particle.y, particle.size, particle.size);
-        }
+    private void drawEnhancedParticles(Graphics2D g2d, FrameCopy frame) {
+        frame.particles.draw(g2d);
     }
     
     /**
      * Draws UI overlays
      */
-    private void drawUIOverlays(Graphics2D g2d) {
-        if (playing) {
+    private void drawUIOverlays(Graphics2D g2d, FrameCopy frame) {
+        if (frame.playing) {
             // Draw enhanced score overlay with better positioning and style
-            int scoreX = 20; // Position on left side to avoid apple overlap
-            int scoreY = 20;
-            int scoreWidth = 180;
-            int scoreHeight = 60; // Reduced height since we removed level
+            int scoreX = SCORE_PANEL_X; // Position on left side to avoid apple overlap
+            int scoreY = SCORE_PANEL_Y;
+            int scoreWidth = SCORE_PANEL_WIDTH;
+            int scoreHeight = SCORE_PANEL_HEIGHT; // Reduced height since we removed level
             
             // Main score panel with gradient-like effect
-            g2d.setColor(new Color(0, 0, 0, 180));
+            g2d.setColor(SCORE_PANEL_COLOR);
             g2d.fillRoundRect(scoreX, scoreY, scoreWidth, scoreHeight, 15, 15);
             
             // Add subtle border
-            g2d.setColor(new Color(255, 255, 255, 60));
-            g2d.setStroke(new BasicStroke(2));
+            g2d.setColor(SCORE_BORDER_COLOR);
+            g2d.setStroke(SCORE_BORDER_STROKE);
             g2d.drawRoundRect(scoreX, scoreY, scoreWidth, scoreHeight, 15, 15);
             
             // Add inner highlight
-            g2d.setColor(new Color(255, 255, 255, 20));
+            g2d.setColor(SCORE_HIGHLIGHT_COLOR);
             g2d.fillRoundRect(scoreX + 2, scoreY + 2, scoreWidth - 4, 20, 13, 13);
             
             // Score text with enhanced styling
             g2d.setColor(Color.WHITE);
-            g2d.setFont(new Font("Segoe UI", Font.BOLD, 18));
-            g2d.drawString("🎯 SCORE: " + score, scoreX + 15, scoreY + 25);
+            g2d.setFont(SCORE_FONT);
+            g2d.drawString(scoreText(frame.score), scoreX + 15, scoreY + 25);
             
             // Best score with different styling
-            g2d.setColor(new Color(255, 215, 0)); // Gold color for best score
-            g2d.setFont(new Font("Segoe UI", Font.BOLD, 16));
-            g2d.drawString("🏆 BEST: " + bestScore, scoreX + 15, scoreY + 50);
+            g2d.setColor(BEST_SCORE_COLOR); // Gold color for best score
+            g2d.setFont(BEST_SCORE_FONT);
+            g2d.drawString(bestScoreText(frame.bestScore), scoreX + 15, scoreY + 50);
             
             // Add small decorative elements
-            g2d.setColor(new Color(255, 255, 255, 40));
+            g2d.setColor(DECORATION_COLOR);
             g2d.fillOval(scoreX + scoreWidth - 25, scoreY + 10, 8, 8);
             g2d.fillOval(scoreX + scoreWidth - 15, scoreY + 20, 6, 6);
         }
     }
     
+    private int metricsPanelX() {
+        return boardWidth - METRICS_PANEL_WIDTH - SCORE_PANEL_X;
+    }
+
     /**
-     * Draws particle effects (legacy method)
+     * Draws the F3 debug overlay: mean and 99th percentile time of every
+     * tick and paint phase, frame pacing, particle count and snake length.
      */
-    private void drawParticles(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        for (Particle particle : particles) {
-            float alpha = (float) particle.life / PARTICLE_LIFETIME;
-            Color particleColor = new Color(
-                particle.color.getRed(),
-                particle.color.getGreen(),
-                particle.color.getBlue(),
-                (int) (255 * alpha)
-            );
-            g2d.setColor(particleColor);
-            g2d.fillOval(particle.x, particle.y, particle.size, particle.size);
+    private void drawMetricsOverlay(Graphics2D g2d, FrameCopy frame) {
+        int x = frame.width - METRICS_PANEL_WIDTH - SCORE_PANEL_X;
+        int y = SCORE_PANEL_Y;
+        g2d.setColor(METRICS_PANEL_COLOR);
+        g2d.fillRoundRect(x, y, METRICS_PANEL_WIDTH, METRICS_PANEL_HEIGHT, 10, 10);
+
+        g2d.setColor(METRICS_TEXT_COLOR);
+        g2d.setFont(METRICS_FONT);
+        int line = y + METRICS_LINE_HEIGHT;
+        g2d.drawString(String.format("%-17s %8s %8s", "phase (us)", "mean", "p99"), x + 10, line);
+        for (int phase = 0; phase < GameMetrics.getPhaseCount(); phase++) {
+            line += METRICS_LINE_HEIGHT;
+            g2d.drawString(String.format("%-17s %8.1f %8.1f", GameMetrics.getPhaseName(phase),
+                    metrics.getMeanMicros(phase), metrics.getP99Micros(phase)), x + 10, line);
         }
-        
-        g2d.dispose();
+        line += METRICS_LINE_HEIGHT;
+        g2d.drawString(String.format("frames %d  late %d  dropped %d", metrics.getFrameCount(),
+                metrics.getLateFrames(), metrics.getDroppedFrames()), x + 10, line);
+        line += METRICS_LINE_HEIGHT;
+        g2d.drawString(String.format("particles %d  snake %d", metrics.getParticleCount(),
+                metrics.getSnakeLength()), x + 10, line);
+    }
+
+    /**
+     * Returns the overlay's score label, rebuilding it only when the score
+     * has changed since the last frame.
+     */
+    private String scoreText(int score) {
+        if (scoreTextValue != score || scoreText == null) {
+            scoreTextValue = score;
+            scoreText = "🎯 SCORE: " + scoreTextValue;
+        }
+        return scoreText;
+    }
+
+    /**
+     * Returns the overlay's best score label, cached like scoreText().
+     */
+    private String bestScoreText(int best) {
+        if (bestScoreTextValue != best || bestScoreText == null) {
+            bestScoreTextValue = best;
+            bestScoreText = "🏆 BEST: " + bestScoreTextValue;
+        }
+        return bestScoreText;
     }
 
     /**
@@ -879,38 +1468,54 @@ public class GameCourt extends JPanel {
      * Updates the board size for responsive gameplay
      */
     public void updateBoardSize(int newWidth, int newHeight) {
-        boardWidth = newWidth;
-        boardHeight = newHeight;
+        synchronized (stateLock) {
+            boardWidth = newWidth;
+            boardHeight = newHeight;
         
-        // Update game objects with new boundaries
-        if (snake != null) {
-            snake.updateBoardSize(boardWidth, boardHeight);
-        }
-        if (apple != null) {
-            apple.updateBoardSize(boardWidth, boardHeight);
-        }
-        if (goldenApple != null) {
-            goldenApple.updateBoardSize(boardWidth, boardHeight);
-        }
-        if (poisonApple != null) {
-            poisonApple.updateBoardSize(boardWidth, boardHeight);
-        }
+            // Update game objects with new boundaries
+            engine.resizeBoard(boardWidth, boardHeight);
+            if (journal != null) {
+                try {
+                    journal.recordResize(engine.getTick(), boardWidth, boardHeight);
+                } catch (IOException e) {
+                    stopJournal(e);
+                }
+            }
         
-        repaint();
+            repaint();
+        }
     }
-    
+
     /**
-     * Inner class to hold game state data when loading/saving.
+     * A copy of everything drawFrame() draws, taken with the state lock held
+     * so that a frame can be drawn and shown without it. The copy keeps its
+     * own snake, food and particles and copies into them, so capturing a
+     * frame allocates nothing once they have grown to size.
      */
-    private static class GameState {
-        int snakePx = 0;
-        int snakePy = 0; 
-        int applePx = 0;
-        int applePy = 0;
-        int goldenPx = 0;
-        int goldenPy = 0;
-        int snakeVX = 0;
-        int snakeVY = 0;
-        int score = 0;
+    private static final class FrameCopy {
+        private final Snake snake = new Snake(Snake.SIZE, Snake.SIZE);
+        private final Apple apple = new Apple(0, 0, Apple.SIZE, Apple.SIZE, List.of());
+        private final GoldenApple goldenApple =
+                new GoldenApple(0, 0, GoldenApple.SIZE, GoldenApple.SIZE, List.of());
+        private final PoisonApple poisonApple =
+                new PoisonApple(0, 0, PoisonApple.SIZE, PoisonApple.SIZE, List.of());
+        private final ParticleSystem particles;
+
+        private int width;
+        private int height;
+        private int score;
+        private int bestScore;
+        private boolean playing;
+        private boolean instructions;
+        private boolean fading;
+        private boolean showMetrics;
+        private int shakeX;
+        private int shakeY;
+
+        FrameCopy(ParticleSystem like) {
+            particles = new ParticleSystem(like);
+            // The copy is only drawn, never moved, so it needs no occupancy
+            snake.getSegments().trackOccupancy(null);
+        }
     }
-}
\ No newline at end of file
+}
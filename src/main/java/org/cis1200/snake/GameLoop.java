@@ -0,0 +1,175 @@
+package org.cis1200.snake;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives a GameCourt from a dedicated thread instead of Swing timers.
+ *
+ * The loop advances the game in fixed steps of SnakeEngine.TICK_MILLIS and
+ * the effects in fixed steps of GameCourt.EFFECT_MILLIS, measured with
+ * System.nanoTime(), so neither drifts against the other or against the
+ * frame rate. Between steps it renders straight into the canvas's
+ * BufferStrategy, with the snake interpolated by how far the clock has
+ * moved toward the next tick, and then waits for the next frame slot.
+ *
+ * Stepping is guarded by the court's state lock, which the court's event
+ * handlers take as well. The loop holds it only to step and to copy what the
+ * frame shows; drawing and presenting the copy happen after it is released.
+ */
+public class GameLoop implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(GameLoop.class.getName());
+
+    /* Never simulate more than this much time in one go, e.g. after a stall */
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L;
+
+    /* Sleep until this close to a frame deadline, then spin the rest */
+    private static final long SPIN_NANOS = 1_000_000L;
+
+    private static final long TICK_NANOS = SnakeEngine.TICK_MILLIS * 1_000_000L;
+    private static final long EFFECT_NANOS = GameCourt.EFFECT_MILLIS * 1_000_000L;
+
+    private final GameCourt court;
+    private final Canvas canvas;
+    private final long frameNanos;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param court     the game to step and draw
+     * @param canvas    a displayable canvas to draw into
+     * @param targetFps frames per second to aim for
+     */
+    public GameLoop(GameCourt court, Canvas canvas, int targetFps) {
+        this.court = court;
+        this.canvas = canvas;
+        this.frameNanos = 1_000_000_000L / Math.max(1, targetFps);
+    }
+
+    /**
+     * Creates the canvas's buffers and starts the loop thread. The canvas
+     * must already be displayable.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        canvas.setIgnoreRepaint(true);
+        canvas.createBufferStrategy(2);
+        running = true;
+        thread = new Thread(this, "snake-game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop and waits for the thread to finish.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long nextFrame = previous;
+        long tickLag = 0;
+        long effectLag = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            court.getMetrics().recordFrameInterval(now - previous, frameNanos);
+            long elapsed = Math.min(now - previous, MAX_CATCH_UP_NANOS);
+            previous = now;
+            tickLag += elapsed;
+            effectLag += elapsed;
+
+            double alpha;
+            synchronized (court.getStateLock()) {
+                while (tickLag >= TICK_NANOS) {
+                    if (court.isTicking()) {
+                        court.begin();
+                    }
+                    tickLag -= TICK_NANOS;
+                }
+                while (effectLag >= EFFECT_NANOS) {
+                    court.updateAnimations();
+                    effectLag -= EFFECT_NANOS;
+                }
+                alpha = court.isTicking() ? (double) tickLag / TICK_NANOS : 1.0;
+                court.captureFrame();
+            }
+            // Drawing and presenting can take a while; input need not wait
+            render(alpha);
+
+            nextFrame += frameNanos;
+            if (!waitUntil(nextFrame)) {
+                // Fell behind; start counting frames again from now
+                nextFrame = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Draws one frame, redrawing it if the buffers lost their contents in
+     * the meantime.
+     */
+    private void render(double alpha) {
+        BufferStrategy strategy = canvas.getBufferStrategy();
+        if (strategy == null || canvas.getWidth() <= 0 || canvas.getHeight() <= 0) {
+            return;
+        }
+        try {
+            do {
+                do {
+                    Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        court.render(g2d, canvas.getWidth(), canvas.getHeight(), alpha);
+                    } finally {
+                        g2d.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+                Toolkit.getDefaultToolkit().sync();
+            } while (strategy.contentsLost());
+        } catch (IllegalStateException e) {
+            // The canvas was removed from its window; the next frame retries
+            LOGGER.log(Level.FINE, "Skipped a frame while the canvas was not displayable", e);
+        }
+    }
+
+    /**
+     * Parks until shortly before deadline, then spins until it passes.
+     *
+     * @return false if the deadline had already passed
+     */
+    private static boolean waitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        if (remaining > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+}
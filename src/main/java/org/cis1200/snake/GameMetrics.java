@@ -0,0 +1,262 @@
+package org.cis1200.snake;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Timing histograms for the phases of a tick and of a paint and for file
+ * writes, plus frame pacing counters and a few gauges.
+ *
+ * Each phase keeps a histogram with one bucket per power of two nanoseconds,
+ * so recording a sample is a handful of arithmetic operations and never
+ * allocates. Each phase is recorded by one thread at a time, the game's or
+ * the persistence writer's; readers such as JMX clients see a recent but not
+ * necessarily consistent snapshot.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+    private static final Logger LOGGER = Logger.getLogger(GameMetrics.class.getName());
+
+    public static final String OBJECT_NAME = "org.cis1200.snake:type=GameMetrics";
+
+    /* Phases, used as indices into the histograms */
+    public static final int TICK = 0;
+    public static final int TICK_ENGINE = 1;
+    public static final int TICK_EFFECTS = 2;
+    public static final int PAINT = 3;
+    public static final int PAINT_BACKGROUND = 4;
+    public static final int PAINT_OBJECTS = 5;
+    public static final int PAINT_PARTICLES = 6;
+    public static final int PAINT_OVERLAYS = 7;
+    public static final int PERSIST = 8;
+
+    private static final String[] PHASE_NAMES = {
+        "tick", "tick.engine", "tick.effects",
+        "paint", "paint.background", "paint.objects", "paint.particles", "paint.overlays",
+        "persist"
+    };
+
+    /* A frame is late once it arrives this much later than its budget */
+    private static final double LATE_FACTOR = 1.5;
+
+    private final Histogram[] phases = new Histogram[PHASE_NAMES.length];
+
+    private long frameCount;
+    private long lateFrames;
+    private long droppedFrames;
+    private int particleCount;
+    private int snakeLength;
+
+    public GameMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, replacing any
+     * earlier game's metrics.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register game metrics", e);
+        }
+    }
+
+    /**************************************************************************
+     * RECORDING
+     **************************************************************************/
+
+    /**
+     * Records how long a phase took, given the System.nanoTime() it started.
+     *
+     * @return the current nanoTime, for timing the next phase
+     */
+    public long record(int phase, long startNanos) {
+        long now = System.nanoTime();
+        phases[phase].record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * Records the time between the starts of two consecutive frames.
+     */
+    public void recordFrameInterval(long intervalNanos, long budgetNanos) {
+        frameCount++;
+        if (budgetNanos > 0 && intervalNanos > budgetNanos * LATE_FACTOR) {
+            lateFrames++;
+            droppedFrames += intervalNanos / budgetNanos - 1;
+        }
+    }
+
+    public void setParticleCount(int particleCount) {
+        this.particleCount = particleCount;
+    }
+
+    public void setSnakeLength(int snakeLength) {
+        this.snakeLength = snakeLength;
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public static int getPhaseCount() {
+        return PHASE_NAMES.length;
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    public double getMeanMicros(int phase) {
+        return phases[phase].meanNanos() / 1000.0;
+    }
+
+    public double getP99Micros(int phase) {
+        return phases[phase].percentileNanos(0.99) / 1000.0;
+    }
+
+    @Override
+    public long getTickCount() {
+        return phases[TICK].count;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    @Override
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    @Override
+    public int getSnakeLength() {
+        return snakeLength;
+    }
+
+    @Override
+    public Map<String, Long> getSampleCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            counts.put(PHASE_NAMES[i], phases[i].count);
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanMicros() {
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            means.put(PHASE_NAMES[i], getMeanMicros(i));
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        Map<String, Double> p99s = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            p99s.put(PHASE_NAMES[i], getP99Micros(i));
+        }
+        return p99s;
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        Map<String, Double> maxes = new LinkedHashMap<>();
+        for (int i = 0; i < phases.length; i++) {
+            maxes.put(PHASE_NAMES[i], phases[i].maxNanos / 1000.0);
+        }
+        return maxes;
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram phase : phases) {
+            phase.clear();
+        }
+        frameCount = 0;
+        lateFrames = 0;
+        droppedFrames = 0;
+    }
+
+    /**
+     * Counts samples in buckets of powers of two: bucket b holds durations
+     * in [2^(b-1), 2^b) nanoseconds.
+     */
+    private static class Histogram {
+        private final long[] buckets = new long[Long.SIZE];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            long clamped = Math.max(0, nanos);
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(clamped)]++;
+            count++;
+            totalNanos += clamped;
+            maxNanos = Math.max(maxNanos, clamped);
+        }
+
+        double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given fraction of
+         * samples, capped at the largest sample seen.
+         */
+        long percentileNanos(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= target) {
+                    if (b == 0) {
+                        return 0;
+                    }
+                    return b >= Long.SIZE - 1 ? maxNanos : Math.min(maxNanos, (1L << b) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        void clear() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.cis1200.snake;
+
+import java.util.Map;
+
+/**
+ * Management interface for GameMetrics, registered with the platform MBean
+ * server as org.cis1200.snake:type=GameMetrics so that JConsole or any other
+ * JMX client can watch a running game.
+ *
+ * Timing maps are keyed by phase name, e.g. "tick.engine" or "paint.objects".
+ */
+public interface GameMetricsMXBean {
+    long getTickCount();
+
+    long getFrameCount();
+
+    /* Frames that started later than their budget allowed */
+    long getLateFrames();
+
+    /* Whole frame slots skipped because a frame ran late */
+    long getDroppedFrames();
+
+    int getParticleCount();
+
+    int getSnakeLength();
+
+    Map<String, Long> getSampleCounts();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    /**
+     * Clears every counter and histogram.
+     */
+    void reset();
+}
@@ -2,7 +2,9 @@ package org.cis1200.snake;
 
 import java.awt.Graphics;
 import java.awt.Point;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * An object in the game.
@@ -37,10 +39,19 @@ public abstract class GameObj {
     private final int maxX;
     private final int maxY;
 
-    /* Stores a type of game object in a linked list of points that are their
-     * coordinates on the Snake game board
+    /* Stores a type of game object as the coordinates of each of its
+     * instances (or segments) on the Snake game board
      */
-    private LinkedList<Point> gameObjects;
+    private final SegmentBuffer segments = new SegmentBuffer();
+
+    /* List<Point> view over segments, kept for callers that work with Points */
+    private final List<Point> gameObjectsView = new PointView();
+
+    /* Optional broadphase over segments, used by objects with many instances */
+    private SpatialIndex spatialIndex;
+
+    /* Where new instances are placed; the engine shares its gameplay stream */
+    private SplittableRandom random = new SplittableRandom();
 
     /**
      * Constructor
@@ -61,14 +72,13 @@ public abstract class GameObj {
         this.maxX = courtWidth - width;
         this.maxY = courtHeight - height;
 
-        gameObjects = new LinkedList<>();
-        gameObjects.addFirst(new Point(px, py));
+        segments.addFirst(px, py);
 
     }
 
     public GameObj(
             int vx, int vy, int px, int py, int width, int height, int courtWidth,
-            int courtHeight, LinkedList<Point> objs
+            int courtHeight, List<Point> objs
     ) {
         this.vx = vx;
         this.vy = vy;
@@ -82,7 +92,7 @@ public abstract class GameObj {
         this.maxX = courtWidth - width;
         this.maxY = courtHeight - height;
 
-        gameObjects = objs;
+        setGameObjects(objs);
 
     }
 
@@ -113,8 +123,21 @@ public abstract class GameObj {
         return this.height;
     }
 
-    public LinkedList<Point> getGameObjects() {
-        return gameObjects;
+    /**
+     * Returns a live view of this object's coordinates. Each call to get()
+     * returns a fresh Point, so changes must be written back through set().
+     * Hot paths should use getSegments() instead.
+     */
+    public List<Point> getGameObjects() {
+        return gameObjectsView;
+    }
+
+    public SegmentBuffer getSegments() {
+        return segments;
+    }
+
+    public SplittableRandom getRandom() {
+        return random;
     }
 
     /**************************************************************************
@@ -138,8 +161,51 @@ public abstract class GameObj {
         this.vy = vy;
     }
 
-    public void setGameObjects(LinkedList<Point> objs) {
-        gameObjects = objs;
+    /**
+     * Sets the random stream used to place new instances of this object.
+     */
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+    }
+
+    public void setGameObjects(List<Point> objs) {
+        segments.clear();
+        for (Point p : objs) {
+            segments.addLast(p.x, p.y);
+        }
+        reindex();
+    }
+
+    /**
+     * Makes this object a copy of another: the same position, velocity and
+     * instances. Used to keep a copy for drawing while the original moves.
+     */
+    public void copyFrom(GameObj other) {
+        px = other.px;
+        py = other.py;
+        vx = other.vx;
+        vy = other.vy;
+        segments.copyFrom(other.segments);
+        reindex();
+    }
+
+    /**
+     * Files every instance of this object in a uniform grid so that
+     * intersects() only has to look at instances near the other object.
+     * Removal then uses swap-remove, so the order of instances is not kept.
+     */
+    protected void useSpatialIndex(int cellSize) {
+        spatialIndex = new SpatialIndex(maxX, maxY, cellSize);
+        reindex();
+    }
+
+    private void reindex() {
+        if (spatialIndex != null) {
+            spatialIndex.clear();
+            for (int i = 0; i < segments.size(); i++) {
+                spatialIndex.insert(i, segments.getX(i), segments.getY(i));
+            }
+        }
     }
 
     /**************************************************************************
@@ -178,12 +244,23 @@ public abstract class GameObj {
      * @return Whether this object intersects the other object.
      */
     public boolean intersects(GameObj that) {
-        for (int i = 0; i < getGameObjects().size(); i++) {
-            Point p = getGameObjects().get(i);
-            if (p.x + getWidth() >= that.getPx()
-                    && p.y + getHeight() >= that.getPy()
-                    && that.getPx() + that.getWidth() >= p.x
-                    && that.getPy() + that.getHeight() >= p.y) {
+        if (spatialIndex != null) {
+            int hit = spatialIndex.findFirst(segments,
+                    that.getPx() - getWidth(), that.getPy() - getHeight(),
+                    that.getPx() + that.getWidth(), that.getPy() + that.getHeight());
+            if (hit >= 0) {
+                remove(hit);
+                return true;
+            }
+            return false;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            int x = segments.getX(i);
+            int y = segments.getY(i);
+            if (x + getWidth() >= that.getPx()
+                    && y + getHeight() >= that.getPy()
+                    && that.getPx() + that.getWidth() >= x
+                    && that.getPy() + that.getHeight() >= y) {
                 remove(i);
                 return true;
             }
@@ -238,11 +315,64 @@ public abstract class GameObj {
     }
 
     public void add() {
-        gameObjects.add(new Point(((int)(Math.random() * maxX)), ((int)(Math.random() * maxY))));
+        addPoint(randomBetween(0, maxX), randomBetween(0, maxY));
+    }
+
+    /**
+     * Replaces every instance with a single one placed by add(), and moves
+     * this object's position to it.
+     */
+    protected void respawn() {
+        segments.clear();
+        reindex();
+        add();
+        this.px = segments.firstX();
+        this.py = segments.firstY();
+    }
+
+    /**
+     * Returns a random coordinate with min <= c < max, or max (but not less
+     * than 0) if the range is empty.
+     */
+    protected int randomBetween(int min, int max) {
+        if (max <= min) {
+            return Math.max(0, max);
+        }
+        return min + random.nextInt(max - min);
+    }
+
+    /**
+     * Adds a new instance of this object at the given coordinates.
+     */
+    public void addPoint(int x, int y) {
+        segments.addLast(x, y);
+        if (spatialIndex != null) {
+            spatialIndex.insert(segments.size() - 1, x, y);
+        }
+    }
+
+    /**
+     * Moves the instance at the given index to new coordinates.
+     */
+    public void setPoint(int index, int x, int y) {
+        segments.set(index, x, y);
+        if (spatialIndex != null) {
+            spatialIndex.remove(index);
+            spatialIndex.insert(index, x, y);
+        }
     }
 
     public void remove(int index) {
-        gameObjects.remove(index);
+        if (spatialIndex == null) {
+            segments.removeAt(index);
+            return;
+        }
+        int last = segments.size() - 1;
+        segments.swapRemove(index);
+        spatialIndex.remove(index);
+        if (index != last) {
+            spatialIndex.renumber(last, index);
+        }
     }
     
     /**
@@ -258,4 +388,48 @@ public abstract class GameObj {
     public int getMaxY() {
         return maxY;
     }
+
+    /**
+     * Adapts the segment buffer to the List interface. Appends go through
+     * addPoint() and removals through remove() so that subclasses see every
+     * change.
+     */
+    private class PointView extends AbstractList<Point> {
+        @Override
+        public Point get(int index) {
+            return new Point(segments.getX(index), segments.getY(index));
+        }
+
+        @Override
+        public Point set(int index, Point p) {
+            Point old = get(index);
+            setPoint(index, p.x, p.y);
+            return old;
+        }
+
+        @Override
+        public void add(int index, Point p) {
+            if (index == segments.size()) {
+                addPoint(p.x, p.y);
+            } else if (index == 0) {
+                segments.addFirst(p.x, p.y);
+                reindex();
+            } else {
+                throw new UnsupportedOperationException(
+                        "Can only insert at the front or back");
+            }
+        }
+
+        @Override
+        public Point remove(int index) {
+            Point old = get(index);
+            GameObj.this.remove(index);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return segments.size();
+        }
+    }
 }
@@ -0,0 +1,421 @@
+package org.cis1200.snake;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Everything needed to resume a game: the score, the snake's position and
+ * velocity, and the coordinates of the snake, the apples and the golden
+ * apples.
+ *
+ * Snapshots are saved as a single binary file:
+ *
+ *   int magic, int version,
+ *   int score, 8 ints of positions and velocity,
+ *   3 x (int count, count x (int x, int y)) for snake, apples, golden apples,
+ *   int CRC32 of everything before it.
+ *
+ * The file is written to a temporary sibling and then renamed over the old
+ * one, so a crash mid-save leaves either the old snapshot or the new one,
+ * never a mix. A snapshot can also be read from the four text files older
+ * versions saved.
+ *
+ * A snapshot reuses its arrays and write buffer between captures, so saving
+ * the same game repeatedly does not reallocate them.
+ */
+public class GameSnapshot {
+    /* "SNKS" */
+    public static final int MAGIC = 0x534E4B53;
+    public static final int VERSION = 1;
+
+    /* Magic, version, score, positions and velocity */
+    private static final int HEADER_BYTES = 11 * Integer.BYTES;
+    private static final int MAX_COUNT = 1 << 24;
+
+    private int score;
+    private int snakePx;
+    private int snakePy;
+    private int snakeVX;
+    private int snakeVY;
+    private int applePx;
+    private int applePy;
+    private int goldenPx;
+    private int goldenPy;
+
+    /* Interleaved x, y coordinates */
+    private int[] snake = new int[0];
+    private int[] apples = new int[0];
+    private int[] goldenApples = new int[0];
+    private int snakeCount;
+    private int appleCount;
+    private int goldenCount;
+
+    private ByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    /**************************************************************************
+     * CAPTURE AND RESTORE
+     **************************************************************************/
+
+    /**
+     * Copies the engine's current game into this snapshot.
+     */
+    public void capture(SnakeEngine engine) {
+        Snake s = engine.getSnake();
+        Apple apple = engine.getApple();
+        GoldenApple goldenApple = engine.getGoldenApple();
+
+        score = engine.getScore();
+        snakePx = s.getPx();
+        snakePy = s.getPy();
+        snakeVX = s.getSnakeVX();
+        snakeVY = s.getSnakeVY();
+        applePx = apple.getPx();
+        applePy = apple.getPy();
+        goldenPx = goldenApple.getPx();
+        goldenPy = goldenApple.getPy();
+
+        snake = copy(s.getSegments(), snake);
+        snakeCount = s.getSegments().size();
+        apples = copy(apple.getSegments(), apples);
+        appleCount = apple.getSegments().size();
+        goldenApples = copy(goldenApple.getSegments(), goldenApples);
+        goldenCount = goldenApple.getSegments().size();
+    }
+
+    private static int[] copy(SegmentBuffer segments, int[] into) {
+        int[] coords = into.length >= 2 * segments.size()
+                ? into : new int[2 * segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            coords[2 * i] = segments.getX(i);
+            coords[2 * i + 1] = segments.getY(i);
+        }
+        return coords;
+    }
+
+    /**
+     * Hands the saved game to the engine, with a fresh poison apple.
+     */
+    public void restore(SnakeEngine engine, int boardWidth, int boardHeight) {
+        Snake s = new Snake(snakePx, snakePy, boardWidth, boardHeight,
+                toPoints(snake, snakeCount), engine.takeOccupancy());
+        s.setSnakeVX(snakeVX);
+        s.setSnakeVY(snakeVY);
+        Apple apple = new Apple(applePx, applePy, boardWidth, boardHeight,
+                toPoints(apples, appleCount));
+        GoldenApple goldenApple = new GoldenApple(goldenPx, goldenPy, boardWidth, boardHeight,
+                toPoints(goldenApples, goldenCount));
+        PoisonApple poisonApple = new PoisonApple(boardWidth, boardHeight);
+        engine.load(s, apple, goldenApple, poisonApple, score);
+    }
+
+    private static List<Point> toPoints(int[] coords, int count) {
+        List<Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(new Point(coords[2 * i], coords[2 * i + 1]));
+        }
+        return points;
+    }
+
+    /**************************************************************************
+     * UPDATES
+     **************************************************************************/
+
+    /**
+     * Returns a copy of the snake's segments, head first, for Autosave to
+     * replay moves onto.
+     */
+    SegmentBuffer copySnake() {
+        SegmentBuffer segments = new SegmentBuffer(snakeCount);
+        for (int i = 0; i < snakeCount; i++) {
+            segments.addLast(snake[2 * i], snake[2 * i + 1]);
+        }
+        return segments;
+    }
+
+    /**
+     * Replaces the snake's segments.
+     */
+    void setSnake(SegmentBuffer segments) {
+        snake = copy(segments, snake);
+        snakeCount = segments.size();
+    }
+
+    /**
+     * Replaces the snake's position and speed.
+     */
+    void setPosition(int px, int py, int vx, int vy) {
+        snakePx = px;
+        snakePy = py;
+        snakeVX = vx;
+        snakeVY = vy;
+    }
+
+    /**
+     * Replaces the apples and golden apples with the given interleaved
+     * coordinates.
+     */
+    void setFood(int[] apples, int appleCount, int[] goldenApples, int goldenCount) {
+        this.apples = apples;
+        this.appleCount = appleCount;
+        this.goldenApples = goldenApples;
+        this.goldenCount = goldenCount;
+    }
+
+    void setScore(int score) {
+        this.score = score;
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public int getScore() {
+        return score;
+    }
+
+    public int getSnakeLength() {
+        return snakeCount;
+    }
+
+    public int getAppleCount() {
+        return appleCount;
+    }
+
+    public int getGoldenAppleCount() {
+        return goldenCount;
+    }
+
+    /**************************************************************************
+     * BINARY FORMAT
+     **************************************************************************/
+
+    /**
+     * Writes this snapshot to path, replacing any file already there in a
+     * single rename.
+     */
+    public void write(Path path) throws IOException {
+        PersistenceService.writeAtomically(path, encode());
+    }
+
+    /**
+     * Returns this snapshot as write() would store it, so it can be written
+     * later, e.g. by a PersistenceService.
+     */
+    public byte[] toBytes() {
+        ByteBuffer encoded = encode();
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    private ByteBuffer encode() {
+        int size = HEADER_BYTES + 3 * Integer.BYTES
+                + 2 * Integer.BYTES * (snakeCount + appleCount + goldenCount)
+                + Integer.BYTES;
+        if (buffer == null || buffer.capacity() < size) {
+            // Leave room for the snake to grow before the next save
+            buffer = ByteBuffer.allocateDirect(size + size / 2);
+        }
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(score)
+                .putInt(snakePx).putInt(snakePy).putInt(snakeVX).putInt(snakeVY)
+                .putInt(applePx).putInt(applePy).putInt(goldenPx).putInt(goldenPy);
+        putCoords(snake, snakeCount);
+        putCoords(apples, appleCount);
+        putCoords(goldenApples, goldenCount);
+
+        buffer.flip();
+        crc.reset();
+        crc.update(buffer.duplicate());
+        buffer.limit(size);
+        buffer.putInt(size - Integer.BYTES, (int) crc.getValue());
+        return buffer;
+    }
+
+    private void putCoords(int[] coords, int count) {
+        buffer.putInt(count);
+        buffer.asIntBuffer().put(coords, 0, 2 * count);
+        buffer.position(buffer.position() + 2 * Integer.BYTES * count);
+    }
+
+    /**
+     * Reads a snapshot saved by write().
+     *
+     * @return the snapshot, or null if there is no file at path
+     * @throws IOException if the file cannot be read, is from an unknown
+     *                     version or fails its checksum
+     */
+    public static GameSnapshot read(Path path) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES + 4 * Integer.BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Bad snapshot length " + length + " in " + path);
+            }
+            in = ByteBuffer.allocate((int) length);
+            while (in.hasRemaining()) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Snapshot " + path + " shrank while reading");
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        in.flip();
+
+        CRC32 check = new CRC32();
+        check.update(in.array(), 0, in.limit() - Integer.BYTES);
+        if ((int) check.getValue() != in.getInt(in.limit() - Integer.BYTES)) {
+            throw new IOException("Checksum mismatch in " + path);
+        }
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a snapshot: " + path);
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + path);
+        }
+
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.score = in.getInt();
+        snapshot.snakePx = in.getInt();
+        snapshot.snakePy = in.getInt();
+        snapshot.snakeVX = in.getInt();
+        snapshot.snakeVY = in.getInt();
+        snapshot.applePx = in.getInt();
+        snapshot.applePy = in.getInt();
+        snapshot.goldenPx = in.getInt();
+        snapshot.goldenPy = in.getInt();
+        snapshot.snakeCount = readCount(in, path);
+        snapshot.snake = readCoords(in, snapshot.snakeCount);
+        snapshot.appleCount = readCount(in, path);
+        snapshot.apples = readCoords(in, snapshot.appleCount);
+        snapshot.goldenCount = readCount(in, path);
+        snapshot.goldenApples = readCoords(in, snapshot.goldenCount);
+        if (in.remaining() != Integer.BYTES) {
+            throw new IOException("Trailing bytes in " + path);
+        }
+        return snapshot;
+    }
+
+    private static int readCount(ByteBuffer in, Path path) throws IOException {
+        int count = in.getInt();
+        if (count < 0 || count > MAX_COUNT
+                || (long) count * 2 * Integer.BYTES > in.remaining() - Integer.BYTES) {
+            throw new IOException("Bad object count " + count + " in " + path);
+        }
+        return count;
+    }
+
+    private static int[] readCoords(ByteBuffer in, int count) {
+        int[] coords = new int[2 * count];
+        in.asIntBuffer().get(coords);
+        in.position(in.position() + coords.length * Integer.BYTES);
+        return coords;
+    }
+
+    /**************************************************************************
+     * LEGACY TEXT FORMAT
+     **************************************************************************/
+
+    /**
+     * Reads a game saved as text by older versions: a state file with
+     * positions, velocity and score, and one "x,y" line per object in each
+     * of the other three files.
+     *
+     * @return the snapshot, or null if there is no saved state
+     * @throws IOException if the state file cannot be parsed
+     */
+    public static GameSnapshot readLegacy(String statePath, String snakePath,
+                                          String applePath, String goldenPath)
+            throws IOException {
+        GameSnapshot snapshot = new GameSnapshot();
+        try (BufferedReader stateReader = new BufferedReader(new FileReader(statePath))) {
+            // Read snake position
+            String snakePosLine = stateReader.readLine();
+            if (snakePosLine == null) {
+                return null;
+            }
+            String[] snakePosition = snakePosLine.trim().split(",");
+            snapshot.snakePx = Integer.parseInt(snakePosition[1]);
+            snapshot.snakePy = Integer.parseInt(snakePosition[2]);
+
+            // Read apple position
+            String applePosLine = stateReader.readLine();
+            if (applePosLine != null) {
+                String[] applePosition = applePosLine.trim().split(",");
+                snapshot.applePx = Integer.parseInt(applePosition[1]);
+                snapshot.applePy = Integer.parseInt(applePosition[2]);
+            }
+
+            // Read golden apple position
+            String goldenPosLine = stateReader.readLine();
+            if (goldenPosLine != null) {
+                String[] goldenPosition = goldenPosLine.trim().split(",");
+                snapshot.goldenPx = Integer.parseInt(goldenPosition[1]);
+                snapshot.goldenPy = Integer.parseInt(goldenPosition[2]);
+            }
+
+            // Read snake velocity
+            String velocityLine = stateReader.readLine();
+            if (velocityLine != null) {
+                String[] velocity = velocityLine.trim().split(",");
+                snapshot.snakeVX = Integer.parseInt(velocity[0]);
+                snapshot.snakeVY = Integer.parseInt(velocity[1]);
+            }
+
+            // Read score
+            String scoreLine = stateReader.readLine();
+            if (scoreLine != null) {
+                snapshot.score = Integer.parseInt(scoreLine.trim());
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed game state in " + statePath, e);
+        }
+
+        snapshot.snake = readLegacyObjects(snakePath);
+        snapshot.snakeCount = snapshot.snake.length / 2;
+        snapshot.apples = readLegacyObjects(applePath);
+        snapshot.appleCount = snapshot.apples.length / 2;
+        snapshot.goldenApples = readLegacyObjects(goldenPath);
+        snapshot.goldenCount = snapshot.goldenApples.length / 2;
+        return snapshot;
+    }
+
+    private static int[] readLegacyObjects(String path) throws IOException {
+        int[] coords = new int[16];
+        int length = 0;
+        try {
+            FileLineIterator iterator = new FileLineIterator(path);
+            while (iterator.hasNext()) {
+                String[] xy = iterator.next().split(",");
+                if (length + 2 > coords.length) {
+                    coords = Arrays.copyOf(coords, 2 * coords.length);
+                }
+                coords[length++] = Integer.parseInt(xy[0].trim());
+                coords[length++] = Integer.parseInt(xy[1].trim());
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed game objects in " + path, e);
+        } catch (IllegalArgumentException e) {
+            // A missing file means no objects, as in the text format's reader
+            return new int[0];
+        }
+        return Arrays.copyOf(coords, length);
+    }
+}
@@ -0,0 +1,828 @@
+package org.cis1200.snake;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One very large world full of computer-controlled snakes, split into
+ * rectangular regions that are stepped in parallel on a fork-join pool.
+ *
+ * The world is a grid of cells, each a snake segment wide, and every snake
+ * moves one cell per tick. A snake belongs to the region its head is in.
+ * Each cell holds a body flag and a count of food units. Eating a unit
+ * grows the snake by one and drops a new unit somewhere else, so the amount
+ * of food never changes. A snake that runs into a wall, a body or another
+ * head dies, its body is cleared and it later respawns on a free cell.
+ * Any snake can be handed to a player, who steers it instead of the AI;
+ * SnakeServer uses a small world this way as a multiplayer board.
+ *
+ * A tick runs in four phases, each over all regions in parallel, and a
+ * region only ever writes the cells inside it and the snakes it owns:
+ *
+ *   MOVE     each region picks a move for its snakes, reading the world as
+ *            it was at the end of the last tick, and posts a claim on the
+ *            target cell to the region containing it
+ *   RESOLVE  each region grants the claims on its cells: a cell claimed by
+ *            one snake and not covered by a body is taken and its food
+ *            eaten, any other claim dies
+ *   APPLY    each region moves its snakes as granted, posting freed tail
+ *            and body cells to their regions and handing snakes whose head
+ *            crossed a border to the new region
+ *   SETTLE   each region frees the cells, adds the food and adopts the
+ *            snakes posted to it
+ *
+ * Messages between regions go through per-pair outboxes, so the exchange
+ * needs no locks, and what each phase does with them does not depend on
+ * their order. Random choices are hashed from the seed, the tick and the
+ * snake or cell rather than drawn from a stream. The world therefore plays
+ * out the same for a given seed however it is split into regions and on
+ * any number of threads, which checksum() can confirm.
+ *
+ * Run it from the command line:
+ *
+ *   java -cp target/classes org.cis1200.snake.GiantWorld
+ *       [--width W] [--height H] [--regions R] [--snakes N] [--food F]
+ *       [--ticks T] [--threads K] [--seed S]
+ */
+public class GiantWorld {
+    public static final int DEFAULT_WIDTH = 2048;
+    public static final int DEFAULT_HEIGHT = 2048;
+    public static final int DEFAULT_REGIONS = 16;
+    public static final int DEFAULT_SNAKES = 20_000;
+    public static final int DEFAULT_FOOD = 100_000;
+    public static final int DEFAULT_TICKS = 1000;
+
+    /* How far a snake looks for food, in cells each way */
+    public static final int VIEW = 8;
+
+    /* Ticks a snake that saw no food waits before looking again */
+    private static final int RESCAN_TICKS = 4;
+
+    /* Cell contents: bit 0 is the body flag, the rest count food units */
+    private static final int BODY = 1;
+    private static final int FOOD_UNIT = 2;
+    private static final int MAX_FOOD = 0xFF / FOOD_UNIT;
+
+    /* What RESOLVE granted each snake */
+    private static final byte NONE = 0;
+    private static final byte MOVED = 1;
+    private static final byte ATE = 2;
+    private static final byte DIED = 3;
+    private static final byte SPAWNED = 4;
+
+    private static final int PHASE_MOVE = 0;
+    private static final int PHASE_RESOLVE = 1;
+    private static final int PHASE_APPLY = 2;
+    private static final int PHASE_SETTLE = 3;
+    private static final String[] PHASE_NAMES = {"move", "resolve", "apply", "settle"};
+
+    /* Per direction ordinal (UP, DOWN, LEFT, RIGHT) */
+    private static final int[] STEP_X = {0, 0, -1, 1};
+    private static final int[] STEP_Y = {-1, 1, 0, 0};
+    private static final int[] REVERSE = {1, 0, 3, 2};
+    private static final byte NO_STEERING = -1;
+
+    /* Salts that keep the hashed random choices independent */
+    private static final long SALT_FOOD = 0x46;
+    private static final long SALT_SPAWN = 0x53;
+    private static final long SALT_WANDER = 0x57;
+    private static final long SALT_DROP = 0x44;
+
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final int foodUnits;
+    private long tick;
+
+    private final byte[] cells;
+    private final byte[] claimCounts;
+
+    /* Per snake */
+    private final SegmentBuffer[] bodies;
+    private final boolean[] alive;
+    private final byte[] headings;
+    private final int[] targets;
+    private final long[] rescanAt;
+    private final int[] claims;
+    private final byte[] outcomes;
+    private final boolean[] players;
+    private final byte[] steering;
+
+    /* Regions in row-major order */
+    private final int regionWidth;
+    private final int regionHeight;
+    private final int regionColumns;
+    private final Region[] regions;
+
+    private final long[] phaseNanos = new long[PHASE_NAMES.length];
+
+    /**
+     * Creates a world and scatters the food and the snakes over it.
+     *
+     * @param width    width of the world in cells
+     * @param height   height of the world in cells
+     * @param regions  number of regions along each side
+     * @param snakes   number of snakes
+     * @param food     number of food units
+     * @param seed     seed every random choice is derived from
+     */
+    public GiantWorld(int width, int height, int regions, int snakes, int food, long seed) {
+        if (width <= 0 || height <= 0 || regions <= 0 || snakes < 0 || food < 0
+                || (long) width * height > Integer.MAX_VALUE
+                || snakes + (long) food > (long) width * height / 2) {
+            throw new IllegalArgumentException(
+                    "The world must be non-empty and at most half full");
+        }
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.foodUnits = food;
+        this.cells = new byte[width * height];
+        this.claimCounts = new byte[width * height];
+
+        this.bodies = new SegmentBuffer[snakes];
+        this.alive = new boolean[snakes];
+        this.headings = new byte[snakes];
+        this.targets = new int[snakes];
+        this.rescanAt = new long[snakes];
+        this.claims = new int[snakes];
+        this.outcomes = new byte[snakes];
+        this.players = new boolean[snakes];
+        this.steering = new byte[snakes];
+        Arrays.fill(steering, NO_STEERING);
+
+        this.regionWidth = ceilDiv(width, Math.min(regions, width));
+        this.regionHeight = ceilDiv(height, Math.min(regions, height));
+        this.regionColumns = ceilDiv(width, regionWidth);
+        int regionRows = ceilDiv(height, regionHeight);
+        this.regions = new Region[regionColumns * regionRows];
+        for (int i = 0; i < this.regions.length; i++) {
+            this.regions[i] = new Region(i, this.regions.length);
+        }
+
+        for (int i = 0; i < food; i++) {
+            cells[randomCell(SALT_FOOD, i, 0)] += FOOD_UNIT;
+        }
+        for (int id = 0; id < snakes; id++) {
+            int cell = randomCell(SALT_SPAWN, id, 0);
+            for (int attempt = 1; cells[cell] != 0; attempt++) {
+                cell = randomCell(SALT_SPAWN, id, -attempt);
+            }
+            cells[cell] = BODY;
+            bodies[id] = new SegmentBuffer(4);
+            bodies[id].addFirst(cell % width, cell / width);
+            alive[id] = true;
+            headings[id] = (byte) (hash(SALT_SPAWN, id, 0) & 3);
+            targets[id] = -1;
+            regionOf(cell).snakes.add(id);
+        }
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    public int getSnakeCount() {
+        return bodies.length;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * The segments of a snake in cell coordinates, head first; empty while
+     * the snake is dead.
+     */
+    public SegmentBuffer getBody(int id) {
+        return bodies[id];
+    }
+
+    public boolean isAlive(int id) {
+        return alive[id];
+    }
+
+    public int getFood(int x, int y) {
+        return (cells[y * width + x] & 0xFF) / FOOD_UNIT;
+    }
+
+    public int getAliveCount() {
+        int count = 0;
+        for (boolean a : alive) {
+            if (a) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Total number of food units on the board, which never changes.
+     */
+    public long getFoodCount() {
+        long count = 0;
+        for (byte cell : cells) {
+            count += (cell & 0xFF) / FOOD_UNIT;
+        }
+        return count;
+    }
+
+    public long getEaten() {
+        long total = 0;
+        for (Region region : regions) {
+            total += region.eaten;
+        }
+        return total;
+    }
+
+    public long getDeaths() {
+        long total = 0;
+        for (Region region : regions) {
+            total += region.deaths;
+        }
+        return total;
+    }
+
+    public int getLongest() {
+        int longest = 0;
+        for (SegmentBuffer body : bodies) {
+            longest = Math.max(longest, body.size());
+        }
+        return longest;
+    }
+
+    /**
+     * Wall-clock time spent in each phase so far: move, resolve, apply and
+     * settle.
+     */
+    public long[] getPhaseNanos() {
+        return phaseNanos.clone();
+    }
+
+    /**
+     * A hash of every snake and cell. Two worlds created with the same seed
+     * and stepped the same number of times have the same checksum, however
+     * they are split into regions.
+     */
+    public long checksum() {
+        long sum = tick;
+        for (int id = 0; id < bodies.length; id++) {
+            SegmentBuffer body = bodies[id];
+            sum = mix(sum ^ (alive[id] ? 1 : 0) ^ ((long) headings[id] << 1));
+            for (int i = 0; i < body.size(); i++) {
+                sum = mix(sum ^ ((long) body.getX(i) << 32 | body.getY(i)));
+            }
+        }
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (cells[cell] != 0) {
+                sum = mix(sum ^ ((long) cell << 8 | (cells[cell] & 0xFF)));
+            }
+        }
+        return sum;
+    }
+
+    /**************************************************************************
+     * SIMULATION
+     **************************************************************************/
+
+    /**
+     * Advances the whole world by one tick, running each phase on the pool.
+     */
+    public void step(ForkJoinPool pool) {
+        for (int phase = PHASE_MOVE; phase <= PHASE_SETTLE; phase++) {
+            long start = System.nanoTime();
+            pool.invoke(new PhaseTask(phase, 0, regions.length));
+            phaseNanos[phase] += System.nanoTime() - start;
+        }
+        tick++;
+    }
+
+    /**
+     * Runs one phase over a range of regions, splitting the range in half
+     * until it is a single region.
+     */
+    // ForkJoinTask is Serializable, but these tasks never leave the pool
+    @SuppressWarnings("serial")
+    private final class PhaseTask extends RecursiveAction {
+        private final int phase;
+        private final int from;
+        private final int to;
+
+        PhaseTask(int phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PhaseTask(phase, from, mid), new PhaseTask(phase, mid, to));
+                return;
+            }
+            Region region = regions[from];
+            switch (phase) {
+                case PHASE_MOVE:
+                    move(region);
+                    break;
+                case PHASE_RESOLVE:
+                    resolve(region);
+                    break;
+                case PHASE_APPLY:
+                    apply(region);
+                    break;
+                default:
+                    settle(region);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Picks a move for each snake the region owns and posts its claim; dead
+     * snakes claim a random cell to respawn on.
+     */
+    private void move(Region region) {
+        IntList snakes = region.snakes;
+        for (int i = 0; i < snakes.size(); i++) {
+            int id = snakes.get(i);
+            int claim;
+            if (alive[id]) {
+                SegmentBuffer body = bodies[id];
+                int d = players[id] ? steer(id) : decide(id, body.firstX(), body.firstY());
+                headings[id] = (byte) d;
+                int x = body.firstX() + STEP_X[d];
+                int y = body.firstY() + STEP_Y[d];
+                claim = x >= 0 && x < width && y >= 0 && y < height ? y * width + x : -1;
+                outcomes[id] = claim < 0 ? DIED : NONE;
+            } else {
+                claim = randomCell(SALT_SPAWN, id, tick);
+                outcomes[id] = NONE;
+            }
+            claims[id] = claim;
+            if (claim >= 0) {
+                region.post(region.claims, regionOf(claim).index).add(id);
+            }
+        }
+    }
+
+    /**
+     * Grants the claims posted on the region's cells.
+     */
+    private void resolve(Region region) {
+        // Count the claims on each cell first; contested cells go to nobody
+        for (Region from : regions) {
+            IntList posted = from.claims[region.index];
+            for (int i = 0; posted != null && i < posted.size(); i++) {
+                int cell = claims[posted.get(i)];
+                claimCounts[cell] = (byte) Math.min(2, claimCounts[cell] + 1);
+            }
+        }
+        for (Region from : regions) {
+            IntList posted = from.claims[region.index];
+            for (int i = 0; posted != null && i < posted.size(); i++) {
+                int id = posted.get(i);
+                int cell = claims[id];
+                boolean free = claimCounts[cell] == 1 && (cells[cell] & BODY) == 0;
+                if (!alive[id]) {
+                    // Only respawn on an empty cell
+                    if (free && cells[cell] == 0) {
+                        cells[cell] = BODY;
+                        outcomes[id] = SPAWNED;
+                    }
+                } else if (!free) {
+                    outcomes[id] = DIED;
+                } else if ((cells[cell] & 0xFF) >= FOOD_UNIT) {
+                    cells[cell] = (byte) (cells[cell] - FOOD_UNIT | BODY);
+                    outcomes[id] = ATE;
+                    region.eaten++;
+                    int drop = randomCell(SALT_DROP, cell, tick);
+                    region.post(region.foodDrops, regionOf(drop).index).add(drop);
+                } else {
+                    cells[cell] |= BODY;
+                    outcomes[id] = MOVED;
+                }
+            }
+        }
+        for (Region from : regions) {
+            IntList posted = from.claims[region.index];
+            for (int i = 0; posted != null && i < posted.size(); i++) {
+                claimCounts[claims[posted.get(i)]] = 0;
+            }
+            if (posted != null) {
+                posted.clear();
+            }
+        }
+    }
+
+    /**
+     * Moves the region's snakes as granted, posting the cells they leave
+     * and the snakes that crossed into another region.
+     */
+    private void apply(Region region) {
+        IntList snakes = region.snakes;
+        int i = 0;
+        while (i < snakes.size()) {
+            int id = snakes.get(i);
+            SegmentBuffer body = bodies[id];
+            int claim = claims[id];
+            switch (outcomes[id]) {
+                case MOVED:
+                    body.addFirst(claim % width, claim / width);
+                    freeCell(region, body.lastX(), body.lastY());
+                    body.removeLast();
+                    break;
+                case ATE:
+                    body.addFirst(claim % width, claim / width);
+                    break;
+                case DIED:
+                    for (int s = 0; s < body.size(); s++) {
+                        freeCell(region, body.getX(s), body.getY(s));
+                    }
+                    body.clear();
+                    alive[id] = false;
+                    targets[id] = -1;
+                    region.deaths++;
+                    break;
+                case SPAWNED:
+                    body.addFirst(claim % width, claim / width);
+                    alive[id] = true;
+                    break;
+                default:
+                    break;
+            }
+            Region owner = alive[id] ? regionOf(body.firstY() * width + body.firstX()) : region;
+            if (owner != region) {
+                region.post(region.migrations, owner.index).add(id);
+                snakes.swapRemove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Frees the cells, drops the food and adopts the snakes posted to the
+     * region during this tick.
+     */
+    private void settle(Region region) {
+        for (Region from : regions) {
+            IntList freed = from.freedCells[region.index];
+            for (int i = 0; freed != null && i < freed.size(); i++) {
+                cells[freed.get(i)] &= ~BODY;
+            }
+            IntList drops = from.foodDrops[region.index];
+            for (int i = 0; drops != null && i < drops.size(); i++) {
+                int cell = drops.get(i);
+                if ((cells[cell] & 0xFF) / FOOD_UNIT < MAX_FOOD) {
+                    cells[cell] += FOOD_UNIT;
+                }
+            }
+            IntList arrived = from.migrations[region.index];
+            for (int i = 0; arrived != null && i < arrived.size(); i++) {
+                region.snakes.add(arrived.get(i));
+            }
+            if (freed != null) {
+                freed.clear();
+            }
+            if (drops != null) {
+                drops.clear();
+            }
+            if (arrived != null) {
+                arrived.clear();
+            }
+        }
+    }
+
+    private void freeCell(Region region, int x, int y) {
+        int cell = y * width + x;
+        region.post(region.freedCells, regionOf(cell).index).add(cell);
+    }
+
+    /**************************************************************************
+     * PLAYERS
+     **************************************************************************/
+
+    /**
+     * Hands a snake over to a player, who steers it with steer(), or back
+     * to the built-in AI. Only call this between steps.
+     */
+    public void setPlayer(int id, boolean player) {
+        players[id] = player;
+        steering[id] = NO_STEERING;
+        targets[id] = -1;
+    }
+
+    public boolean isPlayer(int id) {
+        return players[id];
+    }
+
+    /**
+     * Turns a player's snake at its next move. Turning straight back is
+     * ignored, as in the single-player game. Only call this between steps.
+     */
+    public void steer(int id, Direction direction) {
+        steering[id] = (byte) direction.ordinal();
+    }
+
+    /**
+     * Takes the direction a player asked for, if any, and keeps going
+     * straight otherwise.
+     */
+    private int steer(int id) {
+        int heading = headings[id];
+        int d = steering[id];
+        steering[id] = NO_STEERING;
+        if (d == NO_STEERING || (d == REVERSE[heading] && bodies[id].size() > 1)) {
+            return heading;
+        }
+        return d;
+    }
+
+    /**************************************************************************
+     * SNAKE AI
+     **************************************************************************/
+
+    /**
+     * Picks a direction for a live snake: toward the nearest food in view
+     * if a move that way is free, otherwise straight or a turn that is free,
+     * turning at random now and then when there is no food to head for.
+     */
+    private int decide(int id, int headX, int headY) {
+        int heading = headings[id];
+        long random = hash(SALT_WANDER, id, tick);
+        int turn = heading < 2 ? Direction.LEFT.ordinal() : Direction.UP.ordinal();
+        int firstTurn = turn + (int) (random & 1);
+        int secondTurn = turn + 1 - (int) (random & 1);
+
+        int target = findTarget(id, headX, headY);
+        if (target >= 0) {
+            int dx = target % width - headX;
+            int dy = target / width - headY;
+            if (isCloser(heading, dx, dy) && isFree(headX, headY, heading)) {
+                return heading;
+            } else if (isCloser(firstTurn, dx, dy) && isFree(headX, headY, firstTurn)) {
+                return firstTurn;
+            } else if (isCloser(secondTurn, dx, dy) && isFree(headX, headY, secondTurn)) {
+                return secondTurn;
+            }
+        } else if ((random >>> 1 & 7) == 0) {
+            if (isFree(headX, headY, firstTurn)) {
+                return firstTurn;
+            }
+        }
+        if (isFree(headX, headY, heading)) {
+            return heading;
+        } else if (isFree(headX, headY, firstTurn)) {
+            return firstTurn;
+        } else if (isFree(headX, headY, secondTurn)) {
+            return secondTurn;
+        }
+        return heading;
+    }
+
+    /**
+     * Keeps the snake's target while it still has food, otherwise looks for
+     * the nearest food in view.
+     */
+    private int findTarget(int id, int headX, int headY) {
+        int target = targets[id];
+        if (target >= 0 && (cells[target] & 0xFF) >= FOOD_UNIT) {
+            return target;
+        }
+        target = -1;
+        if (tick >= rescanAt[id]) {
+            int nearest = Integer.MAX_VALUE;
+            int minY = Math.max(0, headY - VIEW);
+            int maxY = Math.min(height - 1, headY + VIEW);
+            int minX = Math.max(0, headX - VIEW);
+            int maxX = Math.min(width - 1, headX + VIEW);
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int distance = Math.abs(x - headX) + Math.abs(y - headY);
+                    if (distance < nearest && (cells[y * width + x] & 0xFF) >= FOOD_UNIT) {
+                        nearest = distance;
+                        target = y * width + x;
+                    }
+                }
+            }
+            if (target < 0) {
+                rescanAt[id] = tick + RESCAN_TICKS;
+            }
+        }
+        targets[id] = target;
+        return target;
+    }
+
+    private static boolean isCloser(int d, int dx, int dy) {
+        return STEP_X[d] * dx + STEP_Y[d] * dy > 0;
+    }
+
+    private boolean isFree(int x, int y, int d) {
+        x += STEP_X[d];
+        y += STEP_Y[d];
+        return x >= 0 && x < width && y >= 0 && y < height
+                && (cells[y * width + x] & BODY) == 0;
+    }
+
+    /**************************************************************************
+     * REGIONS
+     **************************************************************************/
+
+    private Region regionOf(int cell) {
+        int x = cell % width;
+        int y = cell / width;
+        return regions[(y / regionHeight) * regionColumns + x / regionWidth];
+    }
+
+    /**
+     * The snakes owned by one region, and its outboxes to every region,
+     * indexed by the receiving region and created on first use. Only the
+     * owning region writes an outbox and only the receiving region empties
+     * it, in different phases.
+     */
+    private static final class Region {
+        final int index;
+        final IntList snakes = new IntList();
+
+        final IntList[] claims;
+        final IntList[] foodDrops;
+        final IntList[] freedCells;
+        final IntList[] migrations;
+
+        long eaten;
+        long deaths;
+
+        Region(int index, int regionCount) {
+            this.index = index;
+            this.claims = new IntList[regionCount];
+            this.foodDrops = new IntList[regionCount];
+            this.freedCells = new IntList[regionCount];
+            this.migrations = new IntList[regionCount];
+        }
+
+        IntList post(IntList[] outbox, int to) {
+            if (outbox[to] == null) {
+                outbox[to] = new IntList();
+            }
+            return outbox[to];
+        }
+    }
+
+    /**
+     * A growable list of ints.
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void swapRemove(int index) {
+            values[index] = values[--size];
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**************************************************************************
+     * RANDOMNESS
+     **************************************************************************/
+
+    private int randomCell(long salt, long key, long when) {
+        return (int) Long.remainderUnsigned(hash(salt, key, when), cells.length);
+    }
+
+    private long hash(long salt, long key, long when) {
+        return mix(mix(mix(seed ^ salt) ^ key) ^ when);
+    }
+
+    /**
+     * The SplitMix64 finalizer: spreads the bits of x evenly.
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    private static int ceilDiv(int x, int y) {
+        return (x + y - 1) / y;
+    }
+
+    /**************************************************************************
+     * COMMAND LINE
+     **************************************************************************/
+
+    /**
+     * Builds a world as configured by the arguments, steps it and prints
+     * how fast it ran and where the time went.
+     */
+    public static void main(String[] args) {
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        int regions = DEFAULT_REGIONS;
+        int snakes = DEFAULT_SNAKES;
+        int food = DEFAULT_FOOD;
+        int ticks = DEFAULT_TICKS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = new SplittableRandom().nextLong();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "--regions":
+                        regions = Integer.parseInt(value);
+                        break;
+                    case "--snakes":
+                        snakes = Integer.parseInt(value);
+                        break;
+                    case "--food":
+                        food = Integer.parseInt(value);
+                        break;
+                    case "--ticks":
+                        ticks = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        usage();
+                        return;
+                }
+                i++;
+            }
+            System.out.printf("Seed %d%n", seed);
+            GiantWorld world = new GiantWorld(width, height, regions, snakes, food, seed);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < ticks; t++) {
+                world.step(pool);
+            }
+            long nanos = System.nanoTime() - start;
+            pool.shutdown();
+            world.print(System.out, threads, nanos);
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            usage();
+        }
+    }
+
+    private void print(PrintStream out, int threads, long nanos) {
+        out.printf("%dx%d cells in %d regions, %d snakes, %d food, %d threads%n",
+                width, height, regions.length, bodies.length, foodUnits, threads);
+        out.printf("%d ticks in %.2f s: %.0f ticks/s, %.0f snake moves/s%n",
+                tick, nanos / 1e9, tick * 1e9 / Math.max(1, nanos),
+                tick * bodies.length * 1e9 / Math.max(1, nanos));
+        out.printf("%d alive, %d eaten, %d deaths, longest %d, checksum %016x%n",
+                getAliveCount(), getEaten(), getDeaths(), getLongest(), checksum());
+        long total = Math.max(1, Arrays.stream(phaseNanos).sum());
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            out.printf("  %-8s %5.1f%%%n", PHASE_NAMES[phase], 100.0 * phaseNanos[phase] / total);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: GiantWorld [--width W] [--height H] [--regions R] "
+                + "[--snakes N] [--food F] [--ticks T] [--threads K] [--seed S]");
+    }
+}
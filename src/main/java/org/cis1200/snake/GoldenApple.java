@@ -1,11 +1,9 @@
 package org.cis1200.snake;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.SplittableRandom;
 /**
  * Represents a golden apple, a special type of food item in the Snake game.
  * Inherits characteristics from the GameObj class and implements the Food interface.
@@ -14,10 +12,13 @@ public class GoldenApple extends GameObj implements Food {
 
     // Constants
     public static final int SIZE = 35;
-    public static final int INIT_POS_X = (int) (Math.random() * 560);
-    public static final int INIT_POS_Y = (int) (Math.random() * 360);
     public static final int INIT_VEL_X = 0;
     public static final int INIT_VEL_Y = 0;
+    public static final String IMAGE_PATH = "files/GoldenApple.png";
+
+    // Fallback drawing colors
+    private static final Color FALLBACK_COLOR = new Color(241, 196, 15);
+    private static final Color SPARKLE_COLOR = new Color(255, 255, 255, 150);
 
     // Image representing the golden apple
     private BufferedImage goldenAppleImg;
@@ -25,24 +26,24 @@ public class GoldenApple extends GameObj implements Food {
     // Constructors
 
     public GoldenApple(int boardWidth, int boardHeight) {
-        super(INIT_VEL_X, INIT_VEL_Y, INIT_POS_X, INIT_POS_Y, SIZE, SIZE, boardWidth, boardHeight);
-        try {
-            goldenAppleImg = ImageIO.read(new File("files/GoldenApple.png"));
-        } catch (IOException e) {
-            System.out.println("Error loading golden apple image.");
-        }
+        this(boardWidth, boardHeight, new SplittableRandom());
+    }
+
+    public GoldenApple(int boardWidth, int boardHeight, SplittableRandom random) {
+        super(INIT_VEL_X, INIT_VEL_Y, 0, 0, SIZE, SIZE, boardWidth, boardHeight);
+        useSpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
+        setRandom(random);
+        respawn();
+        goldenAppleImg = SpriteCache.get(IMAGE_PATH, SIZE, SIZE);
     }
 
 
     public GoldenApple(int positionX, int positionY, int boardWidth,
-                       int boardHeight, LinkedList<Point> objs) {
+                       int boardHeight, List<Point> objs) {
         super(INIT_VEL_X, INIT_VEL_Y, positionX, positionY, SIZE,
                 SIZE, boardWidth, boardHeight, objs);
-        try {
-            goldenAppleImg = ImageIO.read(new File("files/GoldenApple.png"));
-        } catch (IOException e) {
-            System.out.println("Error loading golden apple image.");
-        }
+        useSpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
+        goldenAppleImg = SpriteCache.get(IMAGE_PATH, SIZE, SIZE);
     }
 
     /**
@@ -62,47 +63,34 @@ public class GoldenApple extends GameObj implements Food {
      */
     @Override
     public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
+        Graphics2D g2d = (Graphics2D) g;
+        Object oldAntialias = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        Stroke oldStroke = g2d.getStroke();
+        Color oldColor = g2d.getColor();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
-        for (Point p : getGameObjects()) {
+        SegmentBuffer items = getSegments();
+        for (int i = 0; i < items.size(); i++) {
+            int x = items.getX(i);
+            int y = items.getY(i);
             // Draw golden apple image directly
             if (goldenAppleImg != null) {
-                g2d.drawImage(goldenAppleImg, p.x, p.y, SIZE, SIZE, null);
+                g2d.drawImage(goldenAppleImg, x, y, null);
             } else {
                 // Fallback to colored circle with sparkle effect
-                g2d.setColor(new Color(241, 196, 15));
-                g2d.fillOval(p.x, p.y, SIZE, SIZE);
+                g2d.setColor(FALLBACK_COLOR);
+                g2d.fillOval(x, y, SIZE, SIZE);
                 
                 // Add sparkle highlights
-                g2d.setColor(new Color(255, 255, 255, 150));
-                g2d.fillOval(p.x + 8, p.y + 8, SIZE/4, SIZE/4);
-                g2d.fillOval(p.x + 20, p.y + 15, SIZE/6, SIZE/6);
+                g2d.setColor(SPARKLE_COLOR);
+                g2d.fillOval(x + 8, y + 8, SIZE/4, SIZE/4);
+                g2d.fillOval(x + 20, y + 15, SIZE/6, SIZE/6);
             }
         }
         
-        g2d.dispose();
-    }
-
-    /**
-     * Checks if the golden apple intersects with another game object.
-     *
-     * @param that The other game object.
-     * @return True if the golden apple intersects with the other object, false otherwise.
-     */
-    @Override
-    public boolean intersects(GameObj that) {
-        for (int i = 0; i < getGameObjects().size(); i++) {
-            Point p = getGameObjects().get(i);
-            if (p.x + getWidth() >= that.getPx()
-                    && p.y + getHeight() >= that.getPy()
-                    && that.getPx() + that.getWidth() >= p.x
-                    && that.getPy() + that.getHeight() >= p.y) {
-                remove(i);
-                return true;
-            }
-        }
-        return false;
+        g2d.setColor(oldColor);
+        g2d.setStroke(oldStroke);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, oldAntialias);
     }
     
     /**
@@ -122,9 +110,9 @@ public class GoldenApple extends GameObj implements Food {
         int minX = 200; // Leave space for scoreboard
         int minY = 100; // Leave space for top area
         
-        int x = minX + (int)(Math.random() * (getMaxX() - minX));
-        int y = minY + (int)(Math.random() * (getMaxY() - minY));
+        int x = randomBetween(minX, getMaxX());
+        int y = randomBetween(minY, getMaxY());
         
-        getGameObjects().add(new Point(x, y));
+        addPoint(x, y);
     }
 }
@@ -0,0 +1,103 @@
+package org.cis1200.snake;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a journal of one game's input, from which InputReplayer can play
+ * the game again exactly.
+ *
+ * A game is fully determined by its seed and by what the player did at
+ * which tick, so that is all the journal holds:
+ *
+ *   int magic, byte version, long seed, varint board width and height,
+ *   then one varint per event: (ticks since the previous event << 3) | kind,
+ *   where kind is a Direction ordinal, RESIZE (followed by varint width
+ *   and height) or END.
+ *
+ * A typical turn costs two bytes. The journal is only ever appended to, and
+ * the header and every event are flushed as soon as they are written, so
+ * a game that crashes leaves a journal that replays up to the crash.
+ */
+public class InputRecorder implements Closeable {
+    /* "SNKJ" */
+    static final int MAGIC = 0x534E4B4A;
+    static final int VERSION = 1;
+
+    /* Event kinds below 4 are Direction ordinals */
+    static final int KIND_BITS = 3;
+    static final int KIND_MASK = (1 << KIND_BITS) - 1;
+    static final int RESIZE = 4;
+    static final int END = 5;
+
+    private final OutputStream out;
+    private long lastTick;
+    private boolean finished;
+
+    /**
+     * Starts a journal for a game reset with the given seed on a board of
+     * the given size.
+     *
+     * @param out where to write the journal; buffered by the caller
+     */
+    public InputRecorder(OutputStream out, long seed, int boardWidth, int boardHeight)
+            throws IOException {
+        this.out = out;
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeLong(seed);
+        Varint.write(out, boardWidth);
+        Varint.write(out, boardHeight);
+        out.flush();
+    }
+
+    /**
+     * Records that the player steered before the given tick was stepped.
+     *
+     * @param tick the engine's tick count when the direction was applied
+     */
+    public void recordDirection(long tick, Direction direction) throws IOException {
+        writeEvent(tick, direction.ordinal());
+        out.flush();
+    }
+
+    /**
+     * Records that the board was resized before the given tick.
+     */
+    public void recordResize(long tick, int boardWidth, int boardHeight) throws IOException {
+        writeEvent(tick, RESIZE);
+        Varint.write(out, boardWidth);
+        Varint.write(out, boardHeight);
+        out.flush();
+    }
+
+    /**
+     * Marks the end of the game at the given tick and flushes the journal.
+     */
+    public void finish(long tick) throws IOException {
+        if (!finished) {
+            writeEvent(tick, END);
+            finished = true;
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeEvent(long tick, int kind) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Journal already finished");
+        }
+        if (tick < lastTick) {
+            throw new IllegalArgumentException("Tick " + tick + " is before " + lastTick);
+        }
+        Varint.write(out, ((tick - lastTick) << KIND_BITS) | kind);
+        lastTick = tick;
+    }
+}
@@ -0,0 +1,163 @@
+package org.cis1200.snake;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Plays a game recorded by InputRecorder again on a headless engine, as
+ * fast as the CPU allows.
+ *
+ * The engine is reset with the recorded seed, so food spawns exactly as it
+ * did, and each recorded turn or resize is applied before the tick it was
+ * recorded at. Replay stops at the journal's end marker, or when the game
+ * ends if the journal was cut short.
+ *
+ * Run it from the command line to time journals:
+ *
+ *   java -cp target/classes org.cis1200.snake.InputReplayer game.journal ...
+ */
+public class InputReplayer {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final InputStream in;
+    private final long seed;
+    private final SnakeEngine engine;
+
+    /* The next event not yet applied; kind -1 once the journal runs out */
+    private long nextTick;
+    private int nextKind;
+    private boolean ended;
+
+    /**
+     * Reads the journal's header and resets a fresh engine to the start of
+     * the recorded game.
+     */
+    public InputReplayer(InputStream in) throws IOException {
+        this.in = in;
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != InputRecorder.MAGIC) {
+            throw new IOException("Not an input journal");
+        }
+        int version = header.readUnsignedByte();
+        if (version != InputRecorder.VERSION) {
+            throw new IOException("Unsupported journal version " + version);
+        }
+        seed = header.readLong();
+        int boardWidth = (int) Varint.read(in);
+        int boardHeight = (int) Varint.read(in);
+
+        engine = new SnakeEngine(boardWidth, boardHeight, seed);
+        engine.reset(seed);
+        readEvent();
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public SnakeEngine getEngine() {
+        return engine;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return true once the end marker was reached or the game ended
+     */
+    public boolean isFinished() {
+        return ended || !engine.isPlaying();
+    }
+
+    /**************************************************************************
+     * REPLAY
+     **************************************************************************/
+
+    /**
+     * Applies the events recorded for the current tick and steps it.
+     *
+     * @return the events step() reported, or 0 if replay has finished
+     */
+    public int step() throws IOException {
+        Direction direction = null;
+        while (nextKind >= 0 && nextTick == engine.getTick()) {
+            if (nextKind == InputRecorder.END) {
+                ended = true;
+                return 0;
+            }
+            if (nextKind == InputRecorder.RESIZE) {
+                int boardWidth = (int) Varint.read(in);
+                int boardHeight = (int) Varint.read(in);
+                engine.resizeBoard(boardWidth, boardHeight);
+            } else {
+                direction = DIRECTIONS[nextKind];
+            }
+            readEvent();
+        }
+        if (nextKind >= 0 && nextTick < engine.getTick()) {
+            throw new IOException("Journal event for tick " + nextTick
+                    + " after tick " + engine.getTick());
+        }
+        return engine.step(direction);
+    }
+
+    /**
+     * Replays the rest of the game.
+     *
+     * @return the number of ticks stepped
+     */
+    public long run() throws IOException {
+        long start = engine.getTick();
+        while (!isFinished()) {
+            step();
+        }
+        return engine.getTick() - start;
+    }
+
+    private void readEvent() throws IOException {
+        long event;
+        try {
+            event = Varint.read(in);
+        } catch (EOFException e) {
+            // Cut short, e.g. by a crash; play on until the game ends
+            nextKind = -1;
+            return;
+        }
+        int kind = (int) (event & InputRecorder.KIND_MASK);
+        if (kind >= DIRECTIONS.length && kind != InputRecorder.RESIZE
+                && kind != InputRecorder.END) {
+            throw new IOException("Unknown journal event kind " + kind);
+        }
+        nextTick += event >>> InputRecorder.KIND_BITS;
+        nextKind = kind;
+    }
+
+    /**
+     * Replays each journal named on the command line and prints its final
+     * score and replay speed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: InputReplayer <journal>...");
+            return;
+        }
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                InputReplayer replayer = new InputReplayer(in);
+                long start = System.nanoTime();
+                long ticks = replayer.run();
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%s: seed %d, %d ticks, score %d, %.1f ms (%.0f ticks/s)%n",
+                        path, replayer.getSeed(), ticks, replayer.getEngine().getScore(),
+                        nanos / 1e6, ticks * 1e9 / Math.max(1, nanos));
+            }
+        }
+    }
+}
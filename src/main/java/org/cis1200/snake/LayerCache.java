@@ -0,0 +1,89 @@
+package org.cis1200.snake;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * An offscreen image of content that rarely changes, such as a background
+ * or a button face.
+ *
+ * The layer is drawn by its Painter the first time it is needed and then
+ * reused until its size or state changes, so painting it is a single image
+ * copy instead of a series of strokes, fills and gradients.
+ */
+public class LayerCache {
+    /**
+     * Draws the contents of a layer into a fresh image.
+     */
+    public interface Painter {
+        void paint(Graphics2D g2d, int width, int height, int state);
+    }
+
+    private final Painter painter;
+    private final int transparency;
+
+    private BufferedImage image;
+    private int state;
+
+    /**
+     * @param painter      draws the layer's contents
+     * @param transparency Transparency.OPAQUE if the painter covers every
+     *                     pixel, Transparency.TRANSLUCENT otherwise
+     */
+    public LayerCache(Painter painter, int transparency) {
+        this.painter = painter;
+        this.transparency = transparency;
+    }
+
+    /**
+     * Returns the layer at the given size and state, repainting it only if
+     * either differs from the last call.
+     *
+     * @param state anything besides the size that changes how the layer
+     *              looks, e.g. a button's hover state
+     * @return the layer, or null if the size is empty
+     */
+    public BufferedImage get(int width, int height, int state) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (image == null || image.getWidth() != width || image.getHeight() != height
+                || this.state != state) {
+            image = render(width, height, state);
+            this.state = state;
+        }
+        return image;
+    }
+
+    /**
+     * Draws the layer with its upper-left corner at (x, y).
+     */
+    public void draw(Graphics g, int x, int y, int width, int height, int state) {
+        BufferedImage layer = get(width, height, state);
+        if (layer != null) {
+            g.drawImage(layer, x, y, null);
+        }
+    }
+
+    /**
+     * Forgets the current image so the next call repaints it.
+     */
+    public void invalidate() {
+        image = null;
+    }
+
+    private BufferedImage render(int width, int height, int state) {
+        BufferedImage layer = SpriteCache.createCompatibleImage(width, height, transparency);
+        Graphics2D g2d = layer.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING,
+                    RenderingHints.VALUE_RENDER_QUALITY);
+            painter.paint(g2d, width, height, state);
+        } finally {
+            g2d.dispose();
+        }
+        return layer;
+    }
+}
@@ -0,0 +1,362 @@
+package org.cis1200.snake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The top scores of every player profile, kept in one memory-mapped file
+ * that several game instances on the same machine can share.
+ *
+ * The file has a fixed layout, so recording a score only rewrites the
+ * entries of one profile in place:
+ *
+ *   header:  int magic, int version, int profile slots, int entries per slot
+ *   slots:   byte[32] UTF-8 profile name (zero-padded, empty if unused),
+ *            int entry count,
+ *            entries x (int score, long start time millis, long seed),
+ *            best score first
+ *
+ * Every read and write holds a lock on the file, shared for reads and
+ * exclusive for writes, so other processes never see a half-written slot.
+ */
+public final class Leaderboard implements AutoCloseable {
+    /* "SNKL" */
+    public static final int MAGIC = 0x534E4B4C;
+    public static final int VERSION = 1;
+
+    public static final int DEFAULT_PROFILES = 256;
+    public static final int DEFAULT_ENTRIES = 10;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int NAME_BYTES = 32;
+    private static final int ENTRY_BYTES = Integer.BYTES + 2 * Long.BYTES;
+
+    /* FileLocks belong to the whole JVM, so instances in one process also
+       take this before locking the file */
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int profiles;
+    private final int entries;
+    private final int slotBytes;
+
+    /**
+     * A single recorded game.
+     */
+    public static final class Entry {
+        private final int score;
+        private final long timestamp;
+        private final long seed;
+
+        public Entry(int score, long timestamp, long seed) {
+            this.score = score;
+            this.timestamp = timestamp;
+            this.seed = seed;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        /* When the game started, in milliseconds since the epoch */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /* The seed the game was played with, to replay it */
+        public long getSeed() {
+            return seed;
+        }
+    }
+
+    private Leaderboard(FileChannel channel, MappedByteBuffer map, int profiles, int entries) {
+        this.channel = channel;
+        this.map = map;
+        this.profiles = profiles;
+        this.entries = entries;
+        this.slotBytes = slotBytes(entries);
+    }
+
+    private static int slotBytes(int entries) {
+        return NAME_BYTES + Integer.BYTES + entries * ENTRY_BYTES;
+    }
+
+    /**
+     * Opens the leaderboard at path, creating it with the default layout if
+     * it does not exist yet.
+     */
+    public static Leaderboard open(Path path) throws IOException {
+        return open(path, DEFAULT_PROFILES, DEFAULT_ENTRIES);
+    }
+
+    /**
+     * Opens the leaderboard at path, creating it with room for the given
+     * number of profiles and entries per profile if it does not exist yet.
+     * An existing file keeps its own layout.
+     */
+    public static Leaderboard open(Path path, int profiles, int entries) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            synchronized (PROCESS_LOCK) {
+                FileLock lock = channel.lock();
+                try {
+                    if (channel.size() == 0) {
+                        // New file; whoever gets here first lays it out
+                        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                        header.putInt(MAGIC).putInt(VERSION).putInt(profiles).putInt(entries);
+                        header.flip();
+                        channel.write(header, 0);
+                        long size = HEADER_BYTES + (long) profiles * slotBytes(entries);
+                        channel.write(ByteBuffer.allocate(1), size - 1);
+                    }
+
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                    channel.read(header, 0);
+                    header.flip();
+                    if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                        throw new IOException("Not a leaderboard: " + path);
+                    }
+                    int version = header.getInt();
+                    if (version != VERSION) {
+                        throw new IOException("Unsupported leaderboard version " + version
+                                + " in " + path);
+                    }
+                    int fileProfiles = header.getInt();
+                    int fileEntries = header.getInt();
+                    long size = HEADER_BYTES + (long) fileProfiles * slotBytes(fileEntries);
+                    if (fileProfiles <= 0 || fileEntries <= 0 || size > Integer.MAX_VALUE
+                            || channel.size() < size) {
+                        throw new IOException("Bad leaderboard layout in " + path);
+                    }
+                    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    return new Leaderboard(channel, map, fileProfiles, fileEntries);
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public int getProfileCapacity() {
+        return profiles;
+    }
+
+    public int getEntriesPerProfile() {
+        return entries;
+    }
+
+    /**
+     * Returns the best score recorded for profile, or 0 if it has none.
+     */
+    public int getBestScore(String profile) throws IOException {
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                int slot = findSlot(encodeName(profile));
+                if (slot < 0 || map.getInt(countOffset(slot)) == 0) {
+                    return 0;
+                }
+                return map.getInt(entryOffset(slot, 0));
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the games recorded for profile, best first.
+     */
+    public List<Entry> getEntries(String profile) throws IOException {
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                int slot = findSlot(encodeName(profile));
+                if (slot < 0) {
+                    return Collections.emptyList();
+                }
+                int count = map.getInt(countOffset(slot));
+                List<Entry> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int offset = entryOffset(slot, i);
+                    list.add(new Entry(map.getInt(offset),
+                            map.getLong(offset + Integer.BYTES),
+                            map.getLong(offset + Integer.BYTES + Long.BYTES)));
+                }
+                return list;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**************************************************************************
+     * UPDATES
+     **************************************************************************/
+
+    /**
+     * Records a game for profile, claiming a free slot for the profile if it
+     * has none yet. A game is known by its start time and seed: recording it
+     * again replaces its entry if the score is higher, so a game can be
+     * recorded each time it sets a best score and once more when it ends.
+     *
+     * @return the game's rank among the profile's entries, 0 being the best,
+     *         or -1 if it did not make the list or no slot was free
+     */
+    public int record(String profile, int score, long timestamp, long seed) throws IOException {
+        byte[] name = encodeName(profile);
+        synchronized (PROCESS_LOCK) {
+            FileLock lock = channel.lock();
+            try {
+                int slot = findSlot(name);
+                if (slot < 0) {
+                    slot = claimSlot(name);
+                    if (slot < 0) {
+                        return -1;
+                    }
+                }
+
+                int count = map.getInt(countOffset(slot));
+                for (int i = 0; i < count; i++) {
+                    int offset = entryOffset(slot, i);
+                    if (map.getLong(offset + Integer.BYTES) == timestamp
+                            && map.getLong(offset + Integer.BYTES + Long.BYTES) == seed) {
+                        if (map.getInt(offset) >= score) {
+                            return i;
+                        }
+                        // Take the game's old entry out; it is put back below
+                        for (int j = i; j < count - 1; j++) {
+                            copyEntry(slot, j + 1, j);
+                        }
+                        count--;
+                        map.putInt(countOffset(slot), count);
+                        break;
+                    }
+                }
+
+                // Find the first entry this game beats; ties keep the older game first
+                int rank = 0;
+                while (rank < count && map.getInt(entryOffset(slot, rank)) >= score) {
+                    rank++;
+                }
+                if (rank == entries) {
+                    return -1;
+                }
+
+                // Shift the worse entries down one place, dropping the last if full
+                int moved = Math.min(count, entries - 1) - rank;
+                for (int i = rank + moved - 1; i >= rank; i--) {
+                    copyEntry(slot, i, i + 1);
+                }
+                int offset = entryOffset(slot, rank);
+                map.putInt(offset, score);
+                map.putLong(offset + Integer.BYTES, timestamp);
+                map.putLong(offset + Integer.BYTES + Long.BYTES, seed);
+                map.putInt(countOffset(slot), Math.min(count + 1, entries));
+                return rank;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Flushes the mapped entries to disk and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    /**************************************************************************
+     * LAYOUT
+     **************************************************************************/
+    private int slotOffset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private int countOffset(int slot) {
+        return slotOffset(slot) + NAME_BYTES;
+    }
+
+    private int entryOffset(int slot, int index) {
+        return countOffset(slot) + Integer.BYTES + index * ENTRY_BYTES;
+    }
+
+    private void copyEntry(int slot, int from, int to) {
+        int src = entryOffset(slot, from);
+        int dst = entryOffset(slot, to);
+        map.putInt(dst, map.getInt(src));
+        map.putLong(dst + Integer.BYTES, map.getLong(src + Integer.BYTES));
+        map.putLong(dst + Integer.BYTES + Long.BYTES,
+                map.getLong(src + Integer.BYTES + Long.BYTES));
+    }
+
+    /**
+     * Returns the profile name as at most NAME_BYTES of UTF-8, cut at a
+     * character boundary.
+     */
+    private static byte[] encodeName(String profile) {
+        if (profile.isEmpty()) {
+            throw new IllegalArgumentException("Profile name must not be empty");
+        }
+        String name = profile;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > NAME_BYTES) {
+            name = name.substring(0, name.offsetByCodePoints(name.length(), -1));
+            bytes = name.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private int findSlot(byte[] name) {
+        for (int slot = 0; slot < profiles; slot++) {
+            if (nameEquals(slot, name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int slot, byte[] name) {
+        int offset = slotOffset(slot);
+        for (int i = 0; i < NAME_BYTES; i++) {
+            byte expected = i < name.length ? name[i] : 0;
+            if (map.get(offset + i) != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int claimSlot(byte[] name) {
+        for (int slot = 0; slot < profiles; slot++) {
+            int offset = slotOffset(slot);
+            if (map.get(offset) == 0) {
+                for (int i = 0; i < NAME_BYTES; i++) {
+                    map.put(offset + i, i < name.length ? name[i] : 0);
+                }
+                map.putInt(countOffset(slot), 0);
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,95 @@
+package org.cis1200.snake;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary messages exchanged by SnakeServer and SnakeClient.
+ *
+ * Every message is a frame: a big-endian int giving the number of bytes
+ * that follow, a type byte, then the payload. Clients send:
+ *
+ *   INPUT    direction ordinal (byte)
+ *   ACK      tick of the newest state the client has applied (long)
+ *
+ * and the server sends:
+ *
+ *   WELCOME  version (byte), slot, width, height, snakes, tick millis
+ *            (unsigned shorts), once after accepting a connection
+ *   FULL     nothing, before closing a connection it has no slot for
+ *   STATE    the board after a tick as a DeltaCodec delta: a track per
+ *            snake and one for the food. Sent to every client after every
+ *            tick, against the newest state the client acknowledged if the
+ *            server still has it, otherwise as a keyframe.
+ *
+ * Both sides keep the last HISTORY states, so a client whose acks fall
+ * further behind than that gets a keyframe.
+ */
+public final class NetProtocol {
+    public static final int VERSION = 2;
+    public static final int DEFAULT_PORT = 5200;
+
+    /* States kept by each side to delta against */
+    public static final int HISTORY = 64;
+
+    /* Bytes of the length prefix and the type */
+    public static final int HEADER_BYTES = 5;
+
+    /* Largest frame either side accepts, counting the type but not the length */
+    public static final int MAX_CLIENT_FRAME = 16;
+    public static final int MAX_SERVER_FRAME = 64 << 20;
+
+    /* Client to server */
+    public static final byte INPUT = 1;
+    public static final byte ACK = 2;
+
+    /* Server to client */
+    public static final byte WELCOME = 1;
+    public static final byte FULL = 2;
+    public static final byte STATE = 3;
+
+    private NetProtocol() {
+    }
+
+    /**************************************************************************
+     * CLIENT MESSAGES
+     **************************************************************************/
+
+    public static ByteBuffer input(Direction direction) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 1);
+        frame.putInt(2).put(INPUT).put((byte) direction.ordinal());
+        return frame.flip();
+    }
+
+    public static ByteBuffer ack(long tick) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 8);
+        frame.putInt(9).put(ACK).putLong(tick);
+        return frame.flip();
+    }
+
+    /**************************************************************************
+     * SERVER MESSAGES
+     **************************************************************************/
+
+    public static ByteBuffer welcome(int slot, GiantWorld world, int tickMillis) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 11);
+        frame.putInt(12).put(WELCOME).put((byte) VERSION)
+                .putShort((short) slot)
+                .putShort((short) world.getWidth())
+                .putShort((short) world.getHeight())
+                .putShort((short) world.getSnakeCount())
+                .putShort((short) tickMillis);
+        return frame.flip();
+    }
+
+    public static ByteBuffer full() {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES);
+        frame.putInt(1).put(FULL);
+        return frame.flip();
+    }
+
+    public static ByteBuffer state(byte[] delta) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + delta.length);
+        frame.putInt(1 + delta.length).put(STATE).put(delta);
+        return frame.flip();
+    }
+}
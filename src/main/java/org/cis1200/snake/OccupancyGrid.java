@@ -0,0 +1,77 @@
+package org.cis1200.snake;
+
+import java.util.Arrays;
+
+/**
+ * Counts how many segments sit on each board coordinate.
+ *
+ * The grid covers 0 <= x < width and 0 <= y < height, one cell per pixel, so
+ * a lookup answers "is any segment exactly here?" in constant time. Points
+ * outside the grid are only counted in aggregate; callers fall back to a
+ * scan in the rare case that such points exist.
+ *
+ * A grid for a full board is a few megabytes, so SnakeEngine keeps one and
+ * hands it from each snake to the next rather than allocating another.
+ */
+public class OccupancyGrid {
+    private final int width;
+    private final int height;
+    private final int[] counts;
+    private int outside;
+
+    public OccupancyGrid(int width, int height) {
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.counts = new int[this.width * this.height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Forgets every point, so the grid can be given to a new buffer.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        outside = 0;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * Returns the number of points at (x, y), or 0 if (x, y) is off the grid.
+     */
+    public int count(int x, int y) {
+        return contains(x, y) ? counts[y * width + x] : 0;
+    }
+
+    /**
+     * Returns the number of points currently stored off the grid.
+     */
+    public int outsideCount() {
+        return outside;
+    }
+
+    public void increment(int x, int y) {
+        if (contains(x, y)) {
+            counts[y * width + x]++;
+        } else {
+            outside++;
+        }
+    }
+
+    public void decrement(int x, int y) {
+        if (contains(x, y)) {
+            counts[y * width + x]--;
+        } else {
+            outside--;
+        }
+    }
+}
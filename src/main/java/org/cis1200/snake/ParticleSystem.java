@@ -0,0 +1,225 @@
+package org.cis1200.snake;
+
+import java.awt.*;
+
+/**
+ * A fixed-capacity pool of short-lived particles stored as parallel arrays.
+ *
+ * Each particle is one slot in the arrays for position, velocity, remaining
+ * life, size and color. Live particles always occupy slots 0 to size() - 1;
+ * a particle that dies is replaced by the last live one, so updating and
+ * drawing are tight loops over primitive arrays and nothing is allocated
+ * after construction. Colors are precomputed for every step of a particle's
+ * life, so drawing one is two setColor calls and two fills.
+ */
+public class ParticleSystem {
+    /* Alpha of a particle's core and of its glow when freshly spawned */
+    private static final int CORE_ALPHA = 255;
+    private static final int GLOW_ALPHA = 100;
+
+    private final int capacity;
+    private final int lifetime;
+
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] vxs;
+    private final int[] vys;
+    private final int[] lives;
+    private final int[] sizes;
+    private final byte[] colors;
+    private int size;
+
+    /* Colors for every remaining life, indexed by [color][life] */
+    private final Color[][] coreRamps;
+    private final Color[][] glowRamps;
+
+    /**
+     * @param capacity most particles alive at once; further spawns are ignored
+     * @param lifetime number of updates a particle lives for
+     * @param palette  particle colors, referred to by index when spawning
+     */
+    public ParticleSystem(int capacity, int lifetime, Color... palette) {
+        if (palette.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many colors: " + palette.length);
+        }
+        this.capacity = capacity;
+        this.lifetime = lifetime;
+        xs = new int[capacity];
+        ys = new int[capacity];
+        vxs = new int[capacity];
+        vys = new int[capacity];
+        lives = new int[capacity];
+        sizes = new int[capacity];
+        colors = new byte[capacity];
+
+        coreRamps = new Color[palette.length][];
+        glowRamps = new Color[palette.length][];
+        for (int i = 0; i < palette.length; i++) {
+            coreRamps[i] = alphaRamp(palette[i], CORE_ALPHA);
+            glowRamps[i] = alphaRamp(palette[i], GLOW_ALPHA);
+        }
+    }
+
+    /**
+     * Creates an empty pool with the same capacity, lifetime and colors as
+     * another, to copy that pool into.
+     */
+    public ParticleSystem(ParticleSystem like) {
+        this.capacity = like.capacity;
+        this.lifetime = like.lifetime;
+        xs = new int[capacity];
+        ys = new int[capacity];
+        vxs = new int[capacity];
+        vys = new int[capacity];
+        lives = new int[capacity];
+        sizes = new int[capacity];
+        colors = new byte[capacity];
+        coreRamps = like.coreRamps;
+        glowRamps = like.glowRamps;
+    }
+
+    /**
+     * Precomputes a color at every alpha a particle fades through, from
+     * transparent at index 0 to maxAlpha at the full lifetime.
+     */
+    private Color[] alphaRamp(Color color, int maxAlpha) {
+        Color[] ramp = new Color[lifetime + 1];
+        for (int life = 0; life <= lifetime; life++) {
+            float alpha = (float) life / lifetime;
+            ramp[life] = new Color(color.getRed(), color.getGreen(), color.getBlue(),
+                    (int) (maxAlpha * alpha));
+        }
+        return ramp;
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int getX(int index) {
+        return xs[index];
+    }
+
+    public int getY(int index) {
+        return ys[index];
+    }
+
+    public int getLife(int index) {
+        return lives[index];
+    }
+
+    public int getSize(int index) {
+        return sizes[index];
+    }
+
+    public int getColor(int index) {
+        return colors[index];
+    }
+
+    /**************************************************************************
+     * UPDATES
+     **************************************************************************/
+
+    /**
+     * Adds a particle with a full lifetime.
+     *
+     * @param color index into the palette
+     * @return false if the pool was full and the particle was dropped
+     */
+    public boolean spawn(int x, int y, int vx, int vy, int particleSize, int color) {
+        if (size == capacity) {
+            return false;
+        }
+        xs[size] = x;
+        ys[size] = y;
+        vxs[size] = vx;
+        vys[size] = vy;
+        lives[size] = lifetime;
+        sizes[size] = particleSize;
+        colors[size] = (byte) color;
+        size++;
+        return true;
+    }
+
+    /**
+     * Advances every particle by one step: moves it, shrinks it and ages it,
+     * removing those whose life runs out.
+     */
+    public void update() {
+        int i = 0;
+        while (i < size) {
+            if (--lives[i] <= 0) {
+                size--;
+                moveSlot(size, i);
+                // The particle moved into slot i has not been updated yet
+                continue;
+            }
+            xs[i] += vxs[i];
+            ys[i] += vys[i];
+            sizes[i] = Math.max(1, sizes[i] - 1);
+            i++;
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Replaces every particle with those of another pool made like this one.
+     */
+    public void copyFrom(ParticleSystem other) {
+        if (other.capacity != capacity || other.coreRamps != coreRamps) {
+            throw new IllegalArgumentException("Pools differ in capacity or colors");
+        }
+        int n = other.size;
+        System.arraycopy(other.xs, 0, xs, 0, n);
+        System.arraycopy(other.ys, 0, ys, 0, n);
+        System.arraycopy(other.vxs, 0, vxs, 0, n);
+        System.arraycopy(other.vys, 0, vys, 0, n);
+        System.arraycopy(other.lives, 0, lives, 0, n);
+        System.arraycopy(other.sizes, 0, sizes, 0, n);
+        System.arraycopy(other.colors, 0, colors, 0, n);
+        size = n;
+    }
+
+    private void moveSlot(int from, int to) {
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        vxs[to] = vxs[from];
+        vys[to] = vys[from];
+        lives[to] = lives[from];
+        sizes[to] = sizes[from];
+        colors[to] = colors[from];
+    }
+
+    /**************************************************************************
+     * DRAWING
+     **************************************************************************/
+
+    /**
+     * Draws every particle as a colored dot inside a fainter glow.
+     */
+    public void draw(Graphics2D g2d) {
+        for (int i = 0; i < size; i++) {
+            int x = xs[i];
+            int y = ys[i];
+            int particleSize = sizes[i];
+            int life = lives[i];
+            int color = colors[i];
+
+            g2d.setColor(glowRamps[color][life]);
+            g2d.fillOval(x - 2, y - 2, particleSize + 4, particleSize + 4);
+
+            g2d.setColor(coreRamps[color][life]);
+            g2d.fillOval(x, y, particleSize, particleSize);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.cis1200.snake;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes small files on a background thread so that the game never waits
+ * for the disk.
+ *
+ * Writes are coalesced per key, usually the file being written: if a key is
+ * submitted again before its previous write ran, only the newest one runs.
+ * The writer thread writes whatever is pending at most once per flush
+ * interval, and straight away if it has been idle for longer than that. All
+ * pending writes are also flushed by flush(), by close() and when the JVM
+ * shuts down.
+ *
+ * Files submitted as contents are replaced atomically. The time each write
+ * takes is recorded in the game's metrics.
+ */
+public class PersistenceService implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(PersistenceService.class.getName());
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    /* Writes slower than this are logged */
+    private static final long SLOW_WRITE_NANOS = 100_000_000L;
+
+    private final GameMetrics metrics;
+    private final long flushIntervalNanos;
+
+    /* Newest write for each key not yet run, guarded by this */
+    private final Map<Object, Write> pending = new LinkedHashMap<>();
+    private boolean writing;
+    private boolean closed;
+    private long lastFlushNanos;
+    private Thread thread;
+    private Thread shutdownHook;
+
+    /**
+     * Some I/O to run on the persistence thread.
+     */
+    public interface Write {
+        void run() throws IOException;
+    }
+
+    public PersistenceService(GameMetrics metrics) {
+        this(metrics, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param metrics              where to record write times, or null
+     * @param flushIntervalMillis  least time between two rounds of writes
+     */
+    public PersistenceService(GameMetrics metrics, long flushIntervalMillis) {
+        this.metrics = metrics;
+        this.flushIntervalNanos = flushIntervalMillis * 1_000_000L;
+        this.lastFlushNanos = System.nanoTime() - flushIntervalNanos;
+    }
+
+    /**
+     * Queues contents to be written to path, replacing anything still
+     * queued for the same path.
+     */
+    public void submit(Path path, byte[] contents) {
+        submit(path, () -> writeAtomically(path, ByteBuffer.wrap(contents)));
+    }
+
+    /**
+     * Queues a write, replacing anything still queued under the same key.
+     * Never blocks on I/O, unless the service has already been closed, in
+     * which case the write runs right away.
+     */
+    public void submit(Object key, Write write) {
+        synchronized (this) {
+            if (!closed) {
+                pending.put(key, write);
+                if (thread == null) {
+                    start();
+                }
+                notifyAll();
+                return;
+            }
+        }
+        run(key, write);
+    }
+
+    /**
+     * Writes everything queued so far and waits until it is on disk.
+     */
+    public void flush() {
+        Map<Object, Write> batch;
+        synchronized (this) {
+            while (writing) {
+                awaitQuietly();
+            }
+            batch = takePending();
+            writing = true;
+        }
+        writeAll(batch);
+    }
+
+    /**
+     * Flushes pending writes and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        Thread writer;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writer = thread;
+            notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        synchronized (this) {
+            if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException e) {
+                    // Already shutting down; the hook is this call's caller
+                }
+            }
+        }
+    }
+
+    private void start() {
+        thread = new Thread(this::run, "snake-persistence");
+        thread.setDaemon(true);
+        thread.start();
+        shutdownHook = new Thread(this::close, "snake-persistence-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private void run() {
+        while (true) {
+            Map<Object, Write> batch;
+            synchronized (this) {
+                while (!closed && (pending.isEmpty() || writing)) {
+                    awaitQuietly();
+                }
+                if (closed) {
+                    // close() writes whatever is left
+                    return;
+                }
+                long wait = lastFlushNanos + flushIntervalNanos - System.nanoTime();
+                if (wait > 0) {
+                    // Let more writes coalesce until the interval is up
+                    try {
+                        wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = takePending();
+                writing = true;
+            }
+            writeAll(batch);
+        }
+    }
+
+    private Map<Object, Write> takePending() {
+        Map<Object, Write> batch = new LinkedHashMap<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void writeAll(Map<Object, Write> batch) {
+        try {
+            for (Map.Entry<Object, Write> entry : batch.entrySet()) {
+                run(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            synchronized (this) {
+                writing = false;
+                lastFlushNanos = System.nanoTime();
+                notifyAll();
+            }
+        }
+    }
+
+    private void run(Object key, Write write) {
+        long start = System.nanoTime();
+        try {
+            write.run();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write " + key, e);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.record(GameMetrics.PERSIST, start);
+        }
+        if (elapsed > SLOW_WRITE_NANOS) {
+            LOGGER.log(Level.INFO, "Writing {0} took {1} ms",
+                    new Object[] {key, elapsed / 1_000_000L});
+        }
+    }
+
+    private void awaitQuietly() {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for writes", e);
+        }
+    }
+
+    /**
+     * Writes contents to a sibling temporary file and renames it over path,
+     * so readers see either the old file or the new one, never a mix. The
+     * temporary file is forced to disk before the rename, so a crash cannot
+     * leave the rename in place without the data behind it.
+     */
+    public static void writeAtomically(Path path, ByteBuffer contents) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
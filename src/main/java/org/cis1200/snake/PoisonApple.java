@@ -1,11 +1,9 @@
 package org.cis1200.snake;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * Represents a poison apple, which shortens the snake when eaten.
@@ -14,10 +12,14 @@ public class PoisonApple extends GameObj implements Food {
     
     // Constants
     public static final int SIZE = 25;
-    public static final int INIT_POS_X = (int) (Math.random() * 560);
-    public static final int INIT_POS_Y = (int) (Math.random() * 360);
     public static final int INIT_VEL_X = 0;
     public static final int INIT_VEL_Y = 0;
+    public static final String IMAGE_PATH = "files/poisonApple.png";
+
+    // Fallback drawing colors and stroke
+    private static final Color FALLBACK_COLOR = new Color(155, 89, 182);
+    private static final Color WARNING_COLOR = new Color(255, 255, 255, 200);
+    private static final Stroke WARNING_STROKE = new BasicStroke(2);
 
     // Image representing the poison apple
     private BufferedImage poisonAppleImg;
@@ -26,7 +28,17 @@ public class PoisonApple extends GameObj implements Food {
      * Constructor with random position
      */
     public PoisonApple(int boardWidth, int boardHeight) {
-        super(INIT_VEL_X, INIT_VEL_Y, INIT_POS_X, INIT_POS_Y, SIZE, SIZE, boardWidth, boardHeight);
+        this(boardWidth, boardHeight, new SplittableRandom());
+    }
+
+    /**
+     * Constructor with a position drawn from the given random stream
+     */
+    public PoisonApple(int boardWidth, int boardHeight, SplittableRandom random) {
+        super(INIT_VEL_X, INIT_VEL_Y, 0, 0, SIZE, SIZE, boardWidth, boardHeight);
+        useSpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
+        setRandom(random);
+        respawn();
         loadImage();
     }
 
@@ -34,21 +46,18 @@ public class PoisonApple extends GameObj implements Food {
      * Constructor with specified position
      */
     public PoisonApple(int positionX, int positionY, int boardWidth,
-                    int boardHeight, LinkedList<Point> objs) {
+                    int boardHeight, List<Point> objs) {
         super(INIT_VEL_X, INIT_VEL_Y, positionX, positionY, SIZE,
                 SIZE, boardWidth, boardHeight, objs);
+        useSpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
         loadImage();
     }
     
     /**
-     * Loads the poison apple image
+     * Fetches the poison apple image, decoded and scaled once per run
      */
     private void loadImage() {
-        try {
-            poisonAppleImg = ImageIO.read(new File("files/poisonApple.png"));
-        } catch (IOException e) {
-            System.out.println("Error loading poison apple image.");
-        }
+        poisonAppleImg = SpriteCache.get(IMAGE_PATH, SIZE, SIZE);
     }
 
     /**
@@ -65,45 +74,35 @@ public class PoisonApple extends GameObj implements Food {
      */
     @Override
     public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
+        Graphics2D g2d = (Graphics2D) g;
+        Object oldAntialias = g2d.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        Stroke oldStroke = g2d.getStroke();
+        Color oldColor = g2d.getColor();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
-        for (Point p : getGameObjects()) {
+        SegmentBuffer items = getSegments();
+        for (int i = 0; i < items.size(); i++) {
+            int x = items.getX(i);
+            int y = items.getY(i);
             // Draw poison apple image directly
             if (poisonAppleImg != null) {
-                g2d.drawImage(poisonAppleImg, p.x, p.y, SIZE, SIZE, null);
+                g2d.drawImage(poisonAppleImg, x, y, null);
             } else {
                 // Fallback to colored circle with toxic effect
-                g2d.setColor(new Color(155, 89, 182));
-                g2d.fillOval(p.x, p.y, SIZE, SIZE);
+                g2d.setColor(FALLBACK_COLOR);
+                g2d.fillOval(x, y, SIZE, SIZE);
                 
                 // Add toxic warning pattern
-                g2d.setColor(new Color(255, 255, 255, 200));
-                g2d.setStroke(new BasicStroke(2));
-                g2d.drawLine(p.x + 5, p.y + 5, p.x + SIZE - 5, p.y + SIZE - 5);
-                g2d.drawLine(p.x + SIZE - 5, p.y + 5, p.x + 5, p.y + SIZE - 5);
+                g2d.setColor(WARNING_COLOR);
+                g2d.setStroke(WARNING_STROKE);
+                g2d.drawLine(x + 5, y + 5, x + SIZE - 5, y + SIZE - 5);
+                g2d.drawLine(x + SIZE - 5, y + 5, x + 5, y + SIZE - 5);
             }
         }
         
-        g2d.dispose();
-    }
-
-    /**
-     * Checks if the poison apple intersects with another game object.
-     */
-    @Override
-    public boolean intersects(GameObj that) {
-        for (int i = 0; i < getGameObjects().size(); i++) {
-            Point p = getGameObjects().get(i);
-            if (p.x + getWidth() >= that.getPx()
-                    && p.y + getHeight() >= that.getPy()
-                    && that.getPx() + that.getWidth() >= p.x
-                    && that.getPy() + that.getHeight() >= p.y) {
-                remove(i);
-                return true;
-            }
-        }
-        return false;
+        g2d.setColor(oldColor);
+        g2d.setStroke(oldStroke);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, oldAntialias);
     }
     
     /**
@@ -123,9 +122,9 @@ public class PoisonApple extends GameObj implements Food {
         int minX = 200; // Leave space for scoreboard
         int minY = 100; // Leave space for top area
         
-        int x = minX + (int)(Math.random() * (getMaxX() - minX));
-        int y = minY + (int)(Math.random() * (getMaxY() - minY));
+        int x = randomBetween(minX, getMaxX());
+        int y = randomBetween(minY, getMaxY());
         
-        getGameObjects().add(new Point(x, y));
+        addPoint(x, y);
     }
 }
\ No newline at end of file
@@ -0,0 +1,398 @@
+package org.cis1200.snake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A recorded game that can be opened at any tick without playing it from
+ * the start.
+ *
+ * The file holds the game's state after every tick, as DeltaCodec states
+ * of the snake, apples, golden apples and poison apples (see
+ * DeltaCodec.State.of(SnakeEngine)). Every so often a state is stored whole
+ * as a keyframe; the states in between are stored as deltas from the state
+ * before, which for a moving snake is a few bytes. A trailing index lists
+ * where each keyframe is:
+ *
+ *   int magic, byte version, int keyframe interval,
+ *   records of int length, byte kind (KEYFRAME or DELTA), DeltaCodec bytes,
+ *   then the index: int count, for each keyframe its tick and offset
+ *   (longs), and last the index's offset (long) and the magic again.
+ *
+ * Reading maps the file into memory, so seeking looks the tick up in the
+ * index, decodes the keyframe before it and at most an interval's worth of
+ * deltas. Seeking forward from the last state returned carries on from it
+ * instead, so playing a replay tick by tick decodes each record once. A
+ * file whose recording was cut short has no index; opening it scans the
+ * records to rebuild one, up to the first incomplete record.
+ *
+ * Run it from the command line to turn an input journal into a replay, or
+ * to print a replay's state at a tick:
+ *
+ *   java -cp target/classes org.cis1200.snake.ReplayFile game.journal game.replay
+ *   java -cp target/classes org.cis1200.snake.ReplayFile game.replay TICK
+ */
+public class ReplayFile {
+    /* "SNKR" */
+    static final int MAGIC = 0x534E4B52;
+    static final int VERSION = 1;
+
+    /* Ticks between keyframes by default: about ten seconds of play */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 10_000 / SnakeEngine.TICK_MILLIS;
+
+    private static final int HEADER_BYTES = 9;
+    private static final int FOOTER_BYTES = 12;
+
+    private static final byte KEYFRAME = 1;
+    private static final byte DELTA = 2;
+
+    private final MappedByteBuffer data;
+    private final int keyframeInterval;
+    private final int recordsEnd;
+
+    /* Tick and file offset of each keyframe, in order */
+    private final long[] keyframeTicks;
+    private final int[] keyframeOffsets;
+
+    /* The last state seek() returned, and the offset of the record after it */
+    private DeltaCodec.State current;
+    private int nextOffset;
+
+    private ReplayFile(MappedByteBuffer data, int keyframeInterval, int recordsEnd,
+                       long[] keyframeTicks, int[] keyframeOffsets) {
+        this.data = data;
+        this.keyframeInterval = keyframeInterval;
+        this.recordsEnd = recordsEnd;
+        this.keyframeTicks = keyframeTicks;
+        this.keyframeOffsets = keyframeOffsets;
+    }
+
+    /**************************************************************************
+     * READING
+     **************************************************************************/
+
+    /**
+     * Maps a replay file and reads its index, or rebuilds the index if the
+     * recording was cut short.
+     *
+     * @throws IOException if the file cannot be read or is not a replay
+     */
+    public static ReplayFile open(Path path) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large for a replay");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (data.limit() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a replay");
+            }
+            int version = data.get(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay version " + version + " in " + path);
+            }
+            int interval = data.getInt(5);
+            ReplayFile replay = readIndex(data, interval);
+            return replay != null ? replay : scan(data, interval);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed replay " + path, e);
+        }
+    }
+
+    /**
+     * Reads the trailing index.
+     *
+     * @return the replay, or null if the file has no intact index
+     */
+    private static ReplayFile readIndex(MappedByteBuffer data, int interval) {
+        int end = data.limit();
+        if (end < HEADER_BYTES + FOOTER_BYTES || data.getInt(end - 4) != MAGIC) {
+            return null;
+        }
+        long indexOffset = data.getLong(end - FOOTER_BYTES);
+        if (indexOffset < HEADER_BYTES || indexOffset > end - FOOTER_BYTES - 4) {
+            return null;
+        }
+        int count = data.getInt((int) indexOffset);
+        if (count < 0 || (long) count * 16 != end - FOOTER_BYTES - indexOffset - 4) {
+            return null;
+        }
+        long[] ticks = new long[count];
+        int[] offsets = new int[count];
+        ByteBuffer index = data.duplicate().position((int) indexOffset + 4);
+        for (int i = 0; i < count; i++) {
+            ticks[i] = index.getLong();
+            long offset = index.getLong();
+            if (offset < HEADER_BYTES || offset >= indexOffset) {
+                return null;
+            }
+            offsets[i] = (int) offset;
+        }
+        return new ReplayFile(data, interval, (int) indexOffset, ticks, offsets);
+    }
+
+    /**
+     * Rebuilds the index by walking the records from the start, stopping at
+     * the first one that is incomplete.
+     */
+    private static ReplayFile scan(MappedByteBuffer data, int interval) {
+        long[] ticks = new long[16];
+        int[] offsets = new int[16];
+        int count = 0;
+        int offset = HEADER_BYTES;
+        while (offset + 5 <= data.limit()) {
+            int length = data.getInt(offset);
+            if (length < 1 || length > data.limit() - offset - 4) {
+                break;
+            }
+            byte kind = data.get(offset + 4);
+            if (kind == KEYFRAME) {
+                if (count == ticks.length) {
+                    ticks = Arrays.copyOf(ticks, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                try {
+                    ticks[count] = DeltaCodec.peekTick(data.duplicate().position(offset + 5));
+                } catch (IOException | BufferUnderflowException e) {
+                    break;
+                }
+                offsets[count++] = offset;
+            } else if (kind != DELTA) {
+                break;
+            }
+            offset += 4 + length;
+        }
+        return new ReplayFile(data, interval, offset,
+                Arrays.copyOf(ticks, count), Arrays.copyOf(offsets, count));
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeTicks.length;
+    }
+
+    /**
+     * Tick of the first recorded state, or -1 if there is none.
+     */
+    public long getFirstTick() {
+        return keyframeTicks.length == 0 ? -1 : keyframeTicks[0];
+    }
+
+    /**
+     * Returns the recorded state at the given tick: the newest one recorded
+     * at or before it, or null if the tick is before the first state.
+     *
+     * @throws IOException if a record is malformed
+     */
+    public DeltaCodec.State seek(long tick) throws IOException {
+        int keyframe = Arrays.binarySearch(keyframeTicks, tick);
+        if (keyframe < 0) {
+            keyframe = -keyframe - 2;
+        }
+        if (keyframe < 0) {
+            return null;
+        }
+        // Carry on from the last state if it is at or after the keyframe
+        if (current == null || current.getTick() > tick
+                || current.getTick() < keyframeTicks[keyframe]) {
+            current = null;
+            nextOffset = keyframeOffsets[keyframe];
+        }
+        while (nextOffset < recordsEnd) {
+            int length = data.getInt(nextOffset);
+            if (length < 1 || length > recordsEnd - nextOffset - 4) {
+                throw new IOException("Record at " + nextOffset + " runs past the records");
+            }
+            ByteBuffer record = data.duplicate()
+                    .position(nextOffset + 5)
+                    .limit(nextOffset + 4 + length);
+            if (current != null && DeltaCodec.peekTick(record) > tick) {
+                break;
+            }
+            DeltaCodec.State previous = current;
+            current = DeltaCodec.decode(record, t -> previous);
+            nextOffset += 4 + length;
+        }
+        return current;
+    }
+
+    /**
+     * The newest recorded state.
+     */
+    public DeltaCodec.State last() throws IOException {
+        return seek(Long.MAX_VALUE);
+    }
+
+    /**************************************************************************
+     * WRITING
+     **************************************************************************/
+
+    /**
+     * Records a game one state at a time. The file is only complete, and
+     * only has its index, once the writer is closed.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int keyframeInterval;
+        private long offset;
+
+        private DeltaCodec.State previous;
+        private long lastKeyframeTick;
+        private long[] keyframeTicks = new long[16];
+        private long[] keyframeOffsets = new long[16];
+        private int keyframes;
+
+        public Writer(Path path, int keyframeInterval) throws IOException {
+            if (keyframeInterval <= 0) {
+                throw new IllegalArgumentException("keyframeInterval must be positive");
+            }
+            this.keyframeInterval = keyframeInterval;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(keyframeInterval);
+            offset = HEADER_BYTES;
+        }
+
+        /**
+         * Appends the state after a tick.
+         *
+         * @throws IllegalArgumentException if the state is not later than
+         *                                  the one appended before
+         */
+        public void append(DeltaCodec.State state) throws IOException {
+            if (previous != null && state.getTick() <= previous.getTick()) {
+                throw new IllegalArgumentException("Tick " + state.getTick()
+                        + " does not follow tick " + previous.getTick());
+            }
+            boolean keyframe = previous == null
+                    || state.getTick() - lastKeyframeTick >= keyframeInterval;
+            byte[] bytes = DeltaCodec.encode(keyframe ? null : previous, state);
+            if (keyframe) {
+                if (keyframes == keyframeTicks.length) {
+                    keyframeTicks = Arrays.copyOf(keyframeTicks, keyframes * 2);
+                    keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+                }
+                keyframeTicks[keyframes] = state.getTick();
+                keyframeOffsets[keyframes++] = offset;
+                lastKeyframeTick = state.getTick();
+            }
+            out.writeInt(1 + bytes.length);
+            out.writeByte(keyframe ? KEYFRAME : DELTA);
+            out.write(bytes);
+            offset += 5 + bytes.length;
+            previous = state;
+        }
+
+        /**
+         * Writes the index and closes the file.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.writeInt(keyframes);
+                for (int i = 0; i < keyframes; i++) {
+                    out.writeLong(keyframeTicks[i]);
+                    out.writeLong(keyframeOffsets[i]);
+                }
+                out.writeLong(offset);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Plays an input journal back headlessly and records every tick of it
+     * as a replay. The replay is written next to the target and moved into
+     * place once complete.
+     *
+     * @return the number of ticks recorded
+     */
+    public static long convert(Path journal, Path replay, int keyframeInterval)
+            throws IOException {
+        Path temp = replay.resolveSibling(replay.getFileName() + ".tmp");
+        long ticks = 0;
+        try {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(journal));
+                 Writer writer = new Writer(temp, keyframeInterval)) {
+                InputReplayer replayer = new InputReplayer(in);
+                writer.append(DeltaCodec.State.of(replayer.getEngine()));
+                SnakeEngine engine = replayer.getEngine();
+                while (!replayer.isFinished()) {
+                    long tick = engine.getTick();
+                    replayer.step();
+                    if (engine.getTick() > tick) {
+                        writer.append(DeltaCodec.State.of(engine));
+                        ticks++;
+                    }
+                }
+            }
+            Files.move(temp, replay, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            // Closing the writer still ends the temp file with an index, so
+            // it looks complete; do not leave it behind
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw e;
+        }
+        return ticks;
+    }
+
+    /**************************************************************************
+     * COMMAND LINE
+     **************************************************************************/
+
+    /**
+     * Converts a journal into a replay, or prints a replay's state at a
+     * tick and how long finding it took.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].endsWith(".journal")) {
+            long ticks = convert(Paths.get(args[0]), Paths.get(args[1]),
+                    DEFAULT_KEYFRAME_INTERVAL);
+            System.out.printf("Recorded %d ticks in %s (%d bytes)%n",
+                    ticks, args[1], Files.size(Paths.get(args[1])));
+        } else if (args.length == 2) {
+            ReplayFile replay = open(Paths.get(args[0]));
+            long tick = Long.parseLong(args[1]);
+            long start = System.nanoTime();
+            DeltaCodec.State state = replay.seek(tick);
+            long nanos = System.nanoTime() - start;
+            if (state == null) {
+                System.out.printf("Nothing recorded by tick %d%n", tick);
+                return;
+            }
+            System.out.printf("Tick %d found in %.2f ms: score %d, snake length %d, "
+                            + "%d apples, %d golden, %d poison%n",
+                    state.getTick(), nanos / 1e6, state.getValue(0),
+                    state.getTrack(0).size(), state.getTrack(1).size(),
+                    state.getTrack(2).size(), state.getTrack(3).size());
+        } else {
+            System.out.println("Usage: ReplayFile <journal> <replay> | ReplayFile <replay> <tick>");
+        }
+    }
+}
@@ -2,31 +2,19 @@ package org.cis1200.snake;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
 
 public class RunSnake implements Runnable {
-    private int bestScore;
+    // Colors of the frame's background gradient
+    private static final Color GRADIENT_START_COLOR = new Color(41, 128, 185);
+    private static final Color GRADIENT_END_COLOR = new Color(52, 73, 94);
+    private static final Color BUTTON_HIGHLIGHT_COLOR = new Color(255, 255, 255, 50);
 
-    public void run() {
+    // Button faces differ only by size and this state
+    private static final int BUTTON_NORMAL = 0;
+    private static final int BUTTON_ROLLOVER = 1;
+    private static final int BUTTON_PRESSED = 2;
 
-        //try to read best score file
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new FileReader("files/bestScore.txt"));
-        } catch (FileNotFoundException e) {
-            System.out.println("error");
-        }
-        try {
-            if (reader != null) {
-                //set bestScore = best score written on file
-                bestScore = Integer.parseInt(reader.readLine().trim());
-            }
-        } catch (IOException e) {
-            System.out.println("error");
-        }
+    public void run() {
 
         // Top-level frame in which game components live
         final JFrame frame = new JFrame("🎮 Ultimate Snake Adventure");
@@ -34,22 +22,15 @@ public class RunSnake implements Runnable {
         
         // Modern styling will be applied through custom colors and fonts
 
-        // Create main container with gradient background
+        // Create main container with gradient background, rendered once per size
         JPanel mainContainer = new JPanel() {
+            private final LayerCache gradientLayer =
+                    new LayerCache(RunSnake::paintGradient, Transparency.OPAQUE);
+
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g.create();
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                
-                // Create beautiful gradient background
-                GradientPaint gradient = new GradientPaint(
-                    0, 0, new Color(41, 128, 185),
-                    getWidth(), getHeight(), new Color(52, 73, 94)
-                );
-                g2d.setPaint(gradient);
-                g2d.fillRect(0, 0, getWidth(), getHeight());
-                g2d.dispose();
+                gradientLayer.draw(g, 0, 0, getWidth(), getHeight(), 0);
             }
         };
         mainContainer.setLayout(new BorderLayout(0, 0));
@@ -59,7 +40,8 @@ public class RunSnake implements Runnable {
         final JPanel status_panel = createEnhancedStatusPanel();
         mainContainer.add(status_panel, BorderLayout.SOUTH);
         
-        final JLabel status = createEnhancedStatusLabel(bestScore);
+        // The court fills in the best score from the leaderboard on reset
+        final JLabel status = createEnhancedStatusLabel();
         status_panel.add(status);
 
         // Main playing area
@@ -84,14 +66,39 @@ public class RunSnake implements Runnable {
         
         // Add window decorations and styling
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Finish the journal and write out saves and scores before exiting
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                court.close();
+            }
+        });
         frame.pack();
         frame.setLocationRelativeTo(null); // Center on screen
         frame.setVisible(true);
 
+        // Optionally step and draw on a dedicated thread instead of Swing timers:
+        // -Dsnake.activeRendering=true -Dsnake.targetFps=120
+        if (Boolean.getBoolean("snake.activeRendering")) {
+            court.startActiveRendering(Integer.getInteger("snake.targetFps", 60));
+        }
+
         // Start game
         court.reset();
     }
     
+    /**
+     * Paints the frame's diagonal background gradient.
+     */
+    private static void paintGradient(Graphics2D g2d, int width, int height, int state) {
+        // Create beautiful gradient background
+        GradientPaint gradient = new GradientPaint(
+            0, 0, GRADIENT_START_COLOR,
+            width, height, GRADIENT_END_COLOR
+        );
+        g2d.setPaint(gradient);
+        g2d.fillRect(0, 0, width, height);
+    }
+
     /**
      * Creates an enhanced status panel with modern styling
      */
@@ -116,8 +123,8 @@ public class RunSnake implements Runnable {
     /**
      * Creates an enhanced status label with better typography
      */
-    private JLabel createEnhancedStatusLabel(int bestScore) {
-        JLabel status = new JLabel("SCORE: 0 / BEST: " + bestScore);
+    private JLabel createEnhancedStatusLabel() {
+        JLabel status = new JLabel("SCORE: 0 / BEST: 0");
         status.setFont(new Font("Segoe UI", Font.BOLD, 18));
         status.setForeground(Color.WHITE);
         status.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 20));
@@ -154,43 +161,66 @@ public class RunSnake implements Runnable {
         final JButton reload = createEnhancedButton("📂 RELOAD", new Color(241, 196, 15));
         reload.addActionListener(e -> court.reload());
 
+        // Only offered when the last run left a game unfinished
+        final JButton resume = createEnhancedButton("⏯ RESUME", new Color(230, 126, 34));
+        resume.addActionListener(e -> {
+            court.resume();
+            resume.setVisible(false);
+        });
+        resume.setVisible(court.hasRecoveredGame());
+
         buttonPanel.add(instructions);
         buttonPanel.add(reset);
         buttonPanel.add(save);
         buttonPanel.add(reload);
+        buttonPanel.add(resume);
         
         return buttonPanel;
     }
     
+    /**
+     * Paints a button's rounded face in the color for its state.
+     */
+    private static void paintButtonFace(Graphics2D g2d, int width, int height, int state,
+                                        Color baseColor) {
+        if (state == BUTTON_PRESSED) {
+            // Pressed state - darker
+            g2d.setColor(baseColor.darker());
+        } else if (state == BUTTON_ROLLOVER) {
+            // Hover state - lighter
+            g2d.setColor(baseColor.brighter());
+        } else {
+            // Normal state
+            g2d.setColor(baseColor);
+        }
+        
+        // Draw rounded rectangle with shadow
+        g2d.fillRoundRect(2, 2, width - 4, height - 4, 12, 12);
+        
+        // Add inner highlight
+        g2d.setColor(BUTTON_HIGHLIGHT_COLOR);
+        g2d.fillRoundRect(3, 3, width - 6, (height - 6) / 2, 10, 10);
+    }
+
     /**
      * Creates an enhanced button with modern styling and effects
      */
     private JButton createEnhancedButton(String text, Color baseColor) {
         JButton button = new JButton(text) {
+            // The face for the current size and state, redrawn only when either changes
+            private final LayerCache faceLayer = new LayerCache(
+                    (g2d, width, height, state) -> paintButtonFace(g2d, width, height, state, baseColor),
+                    Transparency.TRANSLUCENT);
+
             @Override
             protected void paintComponent(Graphics g) {
-                Graphics2D g2d = (Graphics2D) g.create();
-                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                
+                int state = BUTTON_NORMAL;
                 if (getModel().isPressed()) {
-                    // Pressed state - darker
-                    g2d.setColor(baseColor.darker());
+                    state = BUTTON_PRESSED;
                 } else if (getModel().isRollover()) {
-                    // Hover state - lighter
-                    g2d.setColor(baseColor.brighter());
-                } else {
-                    // Normal state
-                    g2d.setColor(baseColor);
+                    state = BUTTON_ROLLOVER;
                 }
-                
-                // Draw rounded rectangle with shadow
-                g2d.fillRoundRect(2, 2, getWidth() - 4, getHeight() - 4, 12, 12);
-                
-                // Add inner highlight
-                g2d.setColor(new Color(255, 255, 255, 50));
-                g2d.fillRoundRect(3, 3, getWidth() - 6, (getHeight() - 6) / 2, 10, 10);
-                
-                g2d.dispose();
+                faceLayer.draw(g, 0, 0, getWidth(), getHeight(), state);
                 super.paintComponent(g);
             }
         };
@@ -0,0 +1,272 @@
+package org.cis1200.snake;
+
+import java.util.Arrays;
+
+/**
+ * A growable circular buffer of integer coordinates.
+ *
+ * Index 0 is the front of the buffer (the snake's head) and index size() - 1
+ * is the back (the tail). Pushing or popping at either end only moves the
+ * head index, so advancing the snake by one step is O(1) no matter how long
+ * it is, and no objects are allocated once the backing arrays are large
+ * enough.
+ *
+ * A buffer can optionally keep an OccupancyGrid in sync with its contents so
+ * that "is there a segment at (x, y)?" does not require a scan.
+ */
+public class SegmentBuffer {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] xs;
+    private int[] ys;
+
+    /* Physical slot of logical index 0. */
+    private int head;
+    private int size;
+
+    /* Optional per-coordinate counts, updated by every mutation */
+    private OccupancyGrid occupancy;
+
+    public SegmentBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SegmentBuffer(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1;
+        xs = new int[cap];
+        ys = new int[cap];
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getX(int index) {
+        checkIndex(index);
+        return xs[slot(index)];
+    }
+
+    public int getY(int index) {
+        checkIndex(index);
+        return ys[slot(index)];
+    }
+
+    public int firstX() {
+        return getX(0);
+    }
+
+    public int firstY() {
+        return getY(0);
+    }
+
+    public int lastX() {
+        return getX(size - 1);
+    }
+
+    public int lastY() {
+        return getY(size - 1);
+    }
+
+    public OccupancyGrid getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Starts keeping the given grid in sync with this buffer. The current
+     * contents are counted into the grid immediately.
+     */
+    public void trackOccupancy(OccupancyGrid grid) {
+        occupancy = grid;
+        if (grid != null) {
+            for (int i = 0; i < size; i++) {
+                int s = slot(i);
+                grid.increment(xs[s], ys[s]);
+            }
+        }
+    }
+
+    /**************************************************************************
+     * UPDATES
+     **************************************************************************/
+
+    /**
+     * Overwrites the coordinates stored at the given index.
+     */
+    public void set(int index, int x, int y) {
+        checkIndex(index);
+        int s = slot(index);
+        if (occupancy != null) {
+            occupancy.decrement(xs[s], ys[s]);
+            occupancy.increment(x, y);
+        }
+        xs[s] = x;
+        ys[s] = y;
+    }
+
+    /**
+     * Inserts a new element in front of index 0.
+     */
+    public void addFirst(int x, int y) {
+        ensureCapacity(size + 1);
+        head = (head - 1) & (xs.length - 1);
+        xs[head] = x;
+        ys[head] = y;
+        size++;
+        if (occupancy != null) {
+            occupancy.increment(x, y);
+        }
+    }
+
+    /**
+     * Appends a new element after the current last element.
+     */
+    public void addLast(int x, int y) {
+        ensureCapacity(size + 1);
+        int s = slot(size);
+        xs[s] = x;
+        ys[s] = y;
+        size++;
+        if (occupancy != null) {
+            occupancy.increment(x, y);
+        }
+    }
+
+    public void removeFirst() {
+        checkIndex(0);
+        forget(head);
+        head = (head + 1) & (xs.length - 1);
+        size--;
+    }
+
+    public void removeLast() {
+        checkIndex(0);
+        forget(slot(size - 1));
+        size--;
+    }
+
+    /**
+     * Drops elements from the back until at most newSize remain.
+     */
+    public void truncate(int newSize) {
+        int target = Math.max(0, newSize);
+        while (size > target) {
+            forget(slot(size - 1));
+            size--;
+        }
+    }
+
+    /**
+     * Removes the element at the given index, shifting the later elements
+     * forward by one so that the relative order is preserved.
+     */
+    public void removeAt(int index) {
+        checkIndex(index);
+        forget(slot(index));
+        for (int i = index; i < size - 1; i++) {
+            int to = slot(i);
+            int from = slot(i + 1);
+            xs[to] = xs[from];
+            ys[to] = ys[from];
+        }
+        size--;
+    }
+
+    /**
+     * Removes the element at the given index by moving the last element into
+     * its place. O(1), but does not preserve order.
+     */
+    public void swapRemove(int index) {
+        checkIndex(index);
+        forget(slot(index));
+        int last = size - 1;
+        if (index != last) {
+            int to = slot(index);
+            int from = slot(last);
+            xs[to] = xs[from];
+            ys[to] = ys[from];
+        }
+        size--;
+    }
+
+    public void clear() {
+        while (size > 0) {
+            forget(slot(size - 1));
+            size--;
+        }
+        head = 0;
+    }
+
+    /**
+     * Replaces the contents with those of another buffer, in the same order.
+     */
+    public void copyFrom(SegmentBuffer other) {
+        clear();
+        ensureCapacity(other.size);
+        for (int i = 0; i < other.size; i++) {
+            addLast(other.getX(i), other.getY(i));
+        }
+    }
+
+    /**************************************************************************
+     * HELPERS
+     **************************************************************************/
+    private int slot(int index) {
+        return (head + index) & (xs.length - 1);
+    }
+
+    /**
+     * Removes the point in the given physical slot from the occupancy grid.
+     */
+    private void forget(int slot) {
+        if (occupancy != null) {
+            occupancy.decrement(xs[slot], ys[slot]);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Doubles the backing arrays until they can hold minCapacity elements,
+     * unrolling the ring so that logical index 0 lands in slot 0.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= xs.length) {
+            return;
+        }
+        int newCapacity = xs.length;
+        while (newCapacity < minCapacity) {
+            newCapacity <<= 1;
+        }
+        int[] newXs = new int[newCapacity];
+        int[] newYs = new int[newCapacity];
+        for (int i = 0; i < size; i++) {
+            int s = slot(i);
+            newXs[i] = xs[s];
+            newYs[i] = ys[s];
+        }
+        xs = newXs;
+        ys = newYs;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        int[] pairs = new int[size * 2];
+        for (int i = 0; i < size; i++) {
+            pairs[2 * i] = getX(i);
+            pairs[2 * i + 1] = getY(i);
+        }
+        return "SegmentBuffer" + Arrays.toString(pairs);
+    }
+}
@@ -1,8 +1,7 @@
 package org.cis1200.snake;
 
 import java.awt.*;
-import java.awt.geom.RoundRectangle2D;
-import java.util.LinkedList;
+import java.util.List;
 
 public class Snake extends GameObj {
     public static final int SIZE = 20;
@@ -17,14 +16,75 @@ public class Snake extends GameObj {
     private int px = getPx();
     private int py = getPy();
 
+    /* Counts heads pushed by move(), so each segment keeps its pattern as it travels */
+    private int headSerial;
+
+    /* Where the last move() started and what it dropped, for interpolated drawing */
+    private int prevHeadX;
+    private int prevHeadY;
+    private int droppedTailX;
+    private int droppedTailY;
+    private boolean tailDropped;
+
     public Snake(int boardWidth, int boardHeight) {
+        this(boardWidth, boardHeight, null);
+    }
+
+    /**
+     * @param grid  an occupancy grid to clear and reuse, or null for a new one
+     */
+    public Snake(int boardWidth, int boardHeight, OccupancyGrid grid) {
         super(INIT_VEL_X, INIT_VEL_Y, INIT_POS_X, INIT_POS_Y, SIZE, SIZE, boardWidth, boardHeight);
+        trackOccupancy(grid);
+        settle();
     }
 
     public Snake(int positionX, int positionY, int boardWidth,
-                 int boardHeight, LinkedList<Point> objs) {
+                 int boardHeight, List<Point> objs) {
+        this(positionX, positionY, boardWidth, boardHeight, objs, null);
+    }
+
+    /**
+     * @param grid  an occupancy grid to clear and reuse, or null for a new one
+     */
+    public Snake(int positionX, int positionY, int boardWidth,
+                 int boardHeight, List<Point> objs, OccupancyGrid grid) {
         super(INIT_VEL_X, INIT_VEL_Y, positionX, positionY,
                 SIZE, SIZE, boardWidth, boardHeight, objs);
+        trackOccupancy(grid);
+        settle();
+    }
+
+    /**
+     * Attaches an occupancy grid covering every position the head can be
+     * clipped to, so that hasHitItself() is a single lookup. The given grid
+     * is reused if it is large enough.
+     */
+    private void trackOccupancy(OccupancyGrid grid) {
+        if (grid == null || grid.getWidth() < getMaxX() + 1 || grid.getHeight() < getMaxY() + 1) {
+            grid = new OccupancyGrid(getMaxX() + 1, getMaxY() + 1);
+        } else {
+            grid.clear();
+        }
+        getSegments().trackOccupancy(grid);
+    }
+
+    /**
+     * Copies another snake, including where its last move started, so the
+     * copy draws exactly like it at any alpha.
+     */
+    public void copyFrom(Snake other) {
+        super.copyFrom(other);
+        snakeVX = other.snakeVX;
+        snakeVY = other.snakeVY;
+        px = other.px;
+        py = other.py;
+        headSerial = other.headSerial;
+        prevHeadX = other.prevHeadX;
+        prevHeadY = other.prevHeadY;
+        droppedTailX = other.droppedTailX;
+        droppedTailY = other.droppedTailY;
+        tailDropped = other.tailDropped;
     }
 
     public int getSnakeVX() {
@@ -42,198 +102,132 @@ public class Snake extends GameObj {
         snakeVY = velocity;
     }
 
-    @Override
-    public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g.create();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        // Draw body segments first (so they appear behind the head)
-        for (int i = getGameObjects().size() - 1; i > 0; i--) {
-            Point p = getGameObjects().get(i);
-            drawSnakeBody(g2d, p, i);
-        }
-        
-        // Draw head last (so it's always on top and visible)
-        if (getGameObjects().size() > 0) {
-            Point headPoint = getGameObjects().get(0);
-            drawSnakeHead(g2d, headPoint);
+    /**
+     * Records the current head as the start of the next move, so that
+     * interpolated drawing has nothing to blend until the snake moves.
+     */
+    private void settle() {
+        SegmentBuffer body = getSegments();
+        if (!body.isEmpty()) {
+            prevHeadX = body.firstX();
+            prevHeadY = body.firstY();
         }
-        
-        g2d.dispose();
+        tailDropped = false;
     }
-    
+
     /**
-     * Draws the snake head with special effects
+     * Draws every segment as a single blit from the shared sprite atlas,
+     * tail first so that the head ends up on top. A segment's pattern is
+     * fixed when it becomes the head, so a move only changes how the board
+     * looks at the old head, the new head and the old tail.
      */
-    private void drawSnakeHead(Graphics2D g2d, Point p) {
-        // Add enhanced glow effect behind head for better visibility
-        g2d.setColor(new Color(46, 204, 113, 100));
-        g2d.fillOval(p.x - 4, p.y - 4, 28, 28);
-        
-        // Add outer glow ring for extra prominence
-        g2d.setColor(new Color(46, 204, 113, 60));
-        g2d.fillOval(p.x - 6, p.y - 6, 32, 32);
-        
-        // Main head color with gradient effect
-        g2d.setColor(new Color(46, 204, 113));
-        g2d.fillRoundRect(p.x, p.y, 20, 20, 10, 10);
-        
-        // Add inner highlight for 3D effect
-        g2d.setColor(new Color(255, 255, 255, 80));
-        g2d.fillRoundRect(p.x + 2, p.y + 2, 16, 8, 8, 8);
-        
-        // Add eyes with better positioning and enhanced visibility
-        g2d.setColor(Color.WHITE);
-        g2d.fillOval(p.x + 5, p.y + 5, 4, 4);
-        g2d.fillOval(p.x + 11, p.y + 5, 4, 4);
-        
-        // Eye pupils with depth and better contrast
-        g2d.setColor(new Color(44, 62, 80));
-        g2d.fillOval(p.x + 6, p.y + 6, 2, 2);
-        g2d.fillOval(p.x + 12, p.y + 6, 2, 2);
-        
-        // Add shine effect
-        g2d.setColor(new Color(255, 255, 255, 200));
-        g2d.fillOval(p.x + 7, p.y + 7, 3, 3);
-        
-        // Enhanced border with stronger glow for better visibility
-        g2d.setColor(new Color(41, 128, 185));
-        g2d.setStroke(new BasicStroke(3));
-        g2d.drawRoundRect(p.x, p.y, 20, 20, 10, 10);
-        
-        // Add outer border for extra definition
-        g2d.setColor(new Color(255, 255, 255, 100));
-        g2d.setStroke(new BasicStroke(1));
-        g2d.drawRoundRect(p.x - 1, p.y - 1, 22, 22, 11, 11);
-        
-        // Add tongue if moving
-        if (getVx() != 0 || getVy() != 0) {
-            g2d.setColor(new Color(231, 76, 60));
-            g2d.fillOval(p.x + 8, p.y + 18, 4, 6);
-        }
+    @Override
+    public void draw(Graphics g) {
+        draw(g, 1.0);
     }
-    
+
     /**
-     * Draws snake body segments with enhanced patterns
+     * Draws the snake part of the way through its last move: at alpha 0 the
+     * head is still where the move started and the dropped tail is still
+     * drawn, at alpha 1 this is the same as draw(g). Only the head and tail
+     * slide; every other segment already sits where it will stay.
      */
-    private void drawSnakeBody(Graphics2D g2d, Point p, int segmentIndex) {
-        // Create a pattern based on segment position
-        Color baseColor = new Color(52, 152, 219);
-        Color patternColor = new Color(41, 128, 185);
-        Color highlightColor = new Color(255, 255, 255, 40);
-        Color accentColor = new Color(26, 188, 156, 80);
-        
-        // Add enhanced glow effect with color variation
-        if (segmentIndex % 3 == 0) {
-            g2d.setColor(new Color(baseColor.getRed(), baseColor.getGreen(), baseColor.getBlue(), 80));
-        } else {
-            g2d.setColor(new Color(accentColor.getRed(), accentColor.getGreen(), accentColor.getBlue(), 60));
+    public void draw(Graphics g, double alpha) {
+        Graphics2D g2d = (Graphics2D) g;
+        SnakeAtlas atlas = SnakeAtlas.forGraphics(g2d);
+        SegmentBuffer body = getSegments();
+        if (body.isEmpty()) {
+            return;
+        }
+
+        int last = body.size() - 1;
+        if (tailDropped && alpha < 1) {
+            atlas.drawBody(g2d, lerp(droppedTailX, body.lastX(), alpha),
+                    lerp(droppedTailY, body.lastY(), alpha), headSerial - body.size());
         }
-        g2d.fillOval(p.x - 3, p.y - 3, 26, 26);
-        
-        // Main body segment with gradient-like effect
-        g2d.setColor(baseColor);
-        g2d.fillRoundRect(p.x, p.y, 20, 20, 10, 10);
-        
-        // Add inner highlight for 3D effect
-        g2d.setColor(highlightColor);
-        g2d.fillRoundRect(p.x + 2, p.y + 2, 16, 10, 8, 8);
-        
-        // Enhanced pattern system with 6 different patterns
-        switch (segmentIndex % 6) {
-            case 0:
-                // Dots pattern with glow
-                g2d.setColor(patternColor);
-                g2d.fillOval(p.x + 6, p.y + 6, 4, 4);
-                g2d.fillOval(p.x + 10, p.y + 12, 4, 4);
-                // Add glow effect
-                g2d.setColor(new Color(255, 255, 255, 60));
-                g2d.fillOval(p.x + 7, p.y + 7, 2, 2);
-                g2d.fillOval(p.x + 11, p.y + 13, 2, 2);
-                break;
-            case 1:
-                // Horizontal stripes pattern
-                g2d.setColor(patternColor);
-                g2d.setStroke(new BasicStroke(2.5f));
-                g2d.drawLine(p.x + 4, p.y + 8, p.x + 16, p.y + 8);
-                g2d.drawLine(p.x + 4, p.y + 12, p.x + 16, p.y + 12);
-                break;
-            case 2:
-                // Diamond pattern with fill
-                g2d.setColor(patternColor);
-                int[] xPoints = {p.x + 10, p.x + 6, p.x + 10, p.x + 14};
-                int[] yPoints = {p.y + 6, p.y + 10, p.y + 14, p.y + 10};
-                g2d.fillPolygon(xPoints, yPoints, 4);
-                break;
-            case 3:
-                // Cross pattern
-                g2d.setColor(patternColor);
-                g2d.setStroke(new BasicStroke(2));
-                g2d.drawLine(p.x + 10, p.y + 5, p.x + 10, p.y + 15);
-                g2d.drawLine(p.x + 5, p.y + 10, p.x + 15, p.y + 10);
-                break;
-            case 4:
-                // Triangle pattern
-                g2d.setColor(patternColor);
-                int[] triX = {p.x + 10, p.x + 7, p.x + 13};
-                int[] triY = {p.y + 6, p.y + 14, p.y + 14};
-                g2d.fillPolygon(triX, triY, 3);
-                break;
-            case 5:
-                // Spiral-like pattern
-                g2d.setColor(patternColor);
-                g2d.setStroke(new BasicStroke(1.5f));
-                g2d.drawArc(p.x + 5, p.y + 5, 10, 10, 0, 180);
-                g2d.drawArc(p.x + 8, p.y + 8, 4, 4, 180, 180);
-                break;
+        for (int i = last; i > 0; i--) {
+            atlas.drawBody(g2d, body.getX(i), body.getY(i), headSerial - i);
         }
-        
-        // Enhanced border with varying thickness
-        g2d.setColor(new Color(41, 128, 185));
-        g2d.setStroke(new BasicStroke(segmentIndex % 2 == 0 ? 2.0f : 1.5f));
-        g2d.drawRoundRect(p.x, p.y, 20, 20, 10, 10);
-        
-        // Add subtle inner shadow for depth
-        g2d.setColor(new Color(0, 0, 0, 30));
-        g2d.drawRoundRect(p.x + 1, p.y + 1, 18, 18, 9, 9);
+        atlas.drawHead(g2d, lerp(prevHeadX, body.firstX(), alpha),
+                lerp(prevHeadY, body.firstY(), alpha), getVx() != 0 || getVy() != 0);
     }
 
+    private static int lerp(int from, int to, double alpha) {
+        return alpha >= 1 ? to : from + (int) Math.round((to - from) * alpha);
+    }
+
+    /**
+     * Moves the snake one step. Rather than shifting every segment, the new
+     * head is pushed onto the front of the body and the old tail is dropped,
+     * which leaves every other segment where the one ahead of it used to be.
+     */
     @Override
     public void move() {
-        for (int i = getGameObjects().size() - 1; i >= 1; i--) {
-            getGameObjects().get(i).setLocation(getGameObjects().get(i - 1));
-        }
         setPx(px + getVx());
         setPy(py + getVy());
         px = getPx();
         py = getPy();
-        getGameObjects().set(0, new Point(px, py));
+
+        SegmentBuffer body = getSegments();
+        if (!body.isEmpty()) {
+            prevHeadX = body.firstX();
+            prevHeadY = body.firstY();
+        }
+        body.addFirst(px, py);
+        headSerial++;
+        if (body.size() > 1) {
+            droppedTailX = body.lastX();
+            droppedTailY = body.lastY();
+            body.removeLast();
+            tailDropped = true;
+        }
 
         clip();
     }
 
     public void grow(int length) {
+        SegmentBuffer body = getSegments();
         for (int i = 0; i < length; i++) {
-            LinkedList<Point> newGameObjects;
-            newGameObjects = getGameObjects();
-            newGameObjects.add(new Point(getGameObjects().getLast()));
-            setGameObjects(newGameObjects);
+            body.addLast(body.lastX(), body.lastY());
         }
     }
 
     public void shrink(int length) {
-        for (int i = 0; i < length && getGameObjects().size() > 1; i++) {
-            getGameObjects().removeLast();
-        }
+        SegmentBuffer body = getSegments();
+        body.truncate(Math.max(1, body.size() - Math.max(0, length)));
+        tailDropped = false;
     }
 
+    /**
+     * Checks whether the head's next position lands on a body segment. The
+     * occupancy grid counts every segment including the head, so the head is
+     * subtracted out when the snake is standing still.
+     */
     public boolean hasHitItself() {
-        if (getGameObjects().size() > 1) {
-            for (int i = 1; i < getGameObjects().size(); i++) {
-                if ((getGameObjects().getFirst().x + getVx() == getGameObjects().get(i).x)
-                        && (getGameObjects().getFirst().y + getVy() == getGameObjects().get(i).y)) {
-                    return true;
-                }
+        SegmentBuffer body = getSegments();
+        if (body.size() <= 1) {
+            return false;
+        }
+        int headX = body.firstX();
+        int headY = body.firstY();
+        int nextX = headX + getVx();
+        int nextY = headY + getVy();
+
+        OccupancyGrid grid = body.getOccupancy();
+        if (grid.contains(nextX, nextY)) {
+            int hits = grid.count(nextX, nextY);
+            if (nextX == headX && nextY == headY) {
+                hits--;
+            }
+            return hits > 0;
+        }
+        // Only points that were placed off the board can match here
+        if (grid.outsideCount() == 0) {
+            return false;
+        }
+        for (int i = 1; i < body.size(); i++) {
+            if (nextX == body.getX(i) && nextY == body.getY(i)) {
+                return true;
             }
         }
         return false;
@@ -0,0 +1,287 @@
+package org.cis1200.snake;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered sprites for the snake.
+ *
+ * A body segment's look depends only on its index modulo 6 (the glow color
+ * repeats every 3 segments, the border width every 2 and the pattern every
+ * 6), and the head only on whether the snake is moving. All eight variants
+ * are drawn once with the original vector shapes into a single image, and
+ * each segment is then painted with one drawImage call instead of a dozen
+ * antialiased shape fills.
+ *
+ * The atlas is rendered at the device scale of the screen it is drawn on,
+ * so it stays sharp on HiDPI displays, and is rebuilt when that scale
+ * changes.
+ */
+public final class SnakeAtlas {
+    /* Number of distinct body sprites; see drawBody() */
+    public static final int BODY_PATTERNS = 6;
+
+    /* A segment drawn at (x, y) touches at most the square (x - PAD, y - PAD, CELL, CELL) */
+    static final int PAD = 6;
+    static final int CELL = Snake.SIZE + 2 * PAD;
+
+    private static final int HEAD_CELL = BODY_PATTERNS;
+    private static final int HEAD_WITH_TONGUE_CELL = BODY_PATTERNS + 1;
+    private static final int CELL_COUNT = BODY_PATTERNS + 2;
+
+    // Drawing constants
+    private static final Color HEAD_COLOR = new Color(46, 204, 113);
+    private static final Color HEAD_GLOW_COLOR = new Color(46, 204, 113, 100);
+    private static final Color HEAD_OUTER_GLOW_COLOR = new Color(46, 204, 113, 60);
+    private static final Color HEAD_HIGHLIGHT_COLOR = new Color(255, 255, 255, 80);
+    private static final Color HEAD_OUTER_BORDER_COLOR = new Color(255, 255, 255, 100);
+    private static final Color PUPIL_COLOR = new Color(44, 62, 80);
+    private static final Color SHINE_COLOR = new Color(255, 255, 255, 200);
+    private static final Color TONGUE_COLOR = new Color(231, 76, 60);
+    private static final Color BODY_COLOR = new Color(52, 152, 219);
+    private static final Color BODY_GLOW_COLOR = new Color(52, 152, 219, 80);
+    private static final Color ACCENT_GLOW_COLOR = new Color(26, 188, 156, 60);
+    private static final Color BODY_HIGHLIGHT_COLOR = new Color(255, 255, 255, 40);
+    private static final Color PATTERN_COLOR = new Color(41, 128, 185);
+    private static final Color DOT_GLOW_COLOR = new Color(255, 255, 255, 60);
+    private static final Color BORDER_COLOR = new Color(41, 128, 185);
+    private static final Color INNER_SHADOW_COLOR = new Color(0, 0, 0, 30);
+
+    private static final Stroke STROKE_1 = new BasicStroke(1);
+    private static final Stroke STROKE_1_5 = new BasicStroke(1.5f);
+    private static final Stroke STROKE_2 = new BasicStroke(2);
+    private static final Stroke STROKE_2_5 = new BasicStroke(2.5f);
+    private static final Stroke STROKE_3 = new BasicStroke(3);
+
+    // Pattern polygons
+    private static final Polygon DIAMOND = new Polygon(
+            new int[] {10, 6, 10, 14}, new int[] {6, 10, 14, 10}, 4);
+    private static final Polygon TRIANGLE = new Polygon(
+            new int[] {10, 7, 13}, new int[] {6, 14, 14}, 3);
+
+    /* The atlas for the device the snake was last drawn on */
+    private static SnakeAtlas current;
+    private static GraphicsConfiguration currentConfig;
+
+    private final double scaleX;
+    private final double scaleY;
+    private final int cellWidth;
+    private final int cellHeight;
+    private final BufferedImage image;
+
+    private SnakeAtlas(double scaleX, double scaleY) {
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.cellWidth = (int) Math.ceil(CELL * scaleX);
+        this.cellHeight = (int) Math.ceil(CELL * scaleY);
+        this.image = render();
+    }
+
+    /**
+     * Returns an atlas matching the device the given graphics draws to.
+     * A new one is only rendered when the device's scale has changed.
+     */
+    public static SnakeAtlas forGraphics(Graphics2D g2d) {
+        GraphicsConfiguration config = g2d.getDeviceConfiguration();
+        if (current != null && config == currentConfig) {
+            return current;
+        }
+        double scaleX = 1;
+        double scaleY = 1;
+        if (config != null) {
+            AffineTransform transform = config.getDefaultTransform();
+            scaleX = transform.getScaleX();
+            scaleY = transform.getScaleY();
+        }
+        if (current == null || current.scaleX != scaleX || current.scaleY != scaleY) {
+            current = new SnakeAtlas(scaleX, scaleY);
+        }
+        currentConfig = config;
+        return current;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Draws the body segment with the given pattern number, which may be any
+     * integer, with its upper-left corner at (x, y).
+     */
+    public void drawBody(Graphics2D g2d, int x, int y, int pattern) {
+        drawCell(g2d, x, y, Math.floorMod(pattern, BODY_PATTERNS));
+    }
+
+    /**
+     * Draws the head with its upper-left corner at (x, y).
+     */
+    public void drawHead(Graphics2D g2d, int x, int y, boolean moving) {
+        drawCell(g2d, x, y, moving ? HEAD_WITH_TONGUE_CELL : HEAD_CELL);
+    }
+
+    private void drawCell(Graphics2D g2d, int x, int y, int cell) {
+        int sx = cell * cellWidth;
+        g2d.drawImage(image, x - PAD, y - PAD, x - PAD + CELL, y - PAD + CELL,
+                sx, 0, sx + cellWidth, cellHeight, null);
+    }
+
+    /**************************************************************************
+     * RENDERING
+     **************************************************************************/
+
+    /**
+     * Draws every sprite into a fresh image at this atlas's scale.
+     */
+    private BufferedImage render() {
+        BufferedImage atlas = SpriteCache.createCompatibleImage(
+                cellWidth * CELL_COUNT, cellHeight);
+        Graphics2D g2d = atlas.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            for (int cell = 0; cell < CELL_COUNT; cell++) {
+                Graphics2D g = (Graphics2D) g2d.create();
+                try {
+                    g.clipRect(cell * cellWidth, 0, cellWidth, cellHeight);
+                    g.translate(cell * cellWidth, 0);
+                    g.scale(scaleX, scaleY);
+                    g.translate(PAD, PAD);
+                    if (cell < BODY_PATTERNS) {
+                        renderBody(g, cell);
+                    } else {
+                        renderHead(g, cell == HEAD_WITH_TONGUE_CELL);
+                    }
+                } finally {
+                    g.dispose();
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return atlas;
+    }
+
+    /**
+     * Draws the snake head with special effects at (0, 0)
+     */
+    private static void renderHead(Graphics2D g2d, boolean tongue) {
+        // Add enhanced glow effect behind head for better visibility
+        g2d.setColor(HEAD_GLOW_COLOR);
+        g2d.fillOval(-4, -4, 28, 28);
+
+        // Add outer glow ring for extra prominence
+        g2d.setColor(HEAD_OUTER_GLOW_COLOR);
+        g2d.fillOval(-6, -6, 32, 32);
+
+        // Main head color with gradient effect
+        g2d.setColor(HEAD_COLOR);
+        g2d.fillRoundRect(0, 0, 20, 20, 10, 10);
+
+        // Add inner highlight for 3D effect
+        g2d.setColor(HEAD_HIGHLIGHT_COLOR);
+        g2d.fillRoundRect(2, 2, 16, 8, 8, 8);
+
+        // Add eyes with better positioning and enhanced visibility
+        g2d.setColor(Color.WHITE);
+        g2d.fillOval(5, 5, 4, 4);
+        g2d.fillOval(11, 5, 4, 4);
+
+        // Eye pupils with depth and better contrast
+        g2d.setColor(PUPIL_COLOR);
+        g2d.fillOval(6, 6, 2, 2);
+        g2d.fillOval(12, 6, 2, 2);
+
+        // Add shine effect
+        g2d.setColor(SHINE_COLOR);
+        g2d.fillOval(7, 7, 3, 3);
+
+        // Enhanced border with stronger glow for better visibility
+        g2d.setColor(BORDER_COLOR);
+        g2d.setStroke(STROKE_3);
+        g2d.drawRoundRect(0, 0, 20, 20, 10, 10);
+
+        // Add outer border for extra definition
+        g2d.setColor(HEAD_OUTER_BORDER_COLOR);
+        g2d.setStroke(STROKE_1);
+        g2d.drawRoundRect(-1, -1, 22, 22, 11, 11);
+
+        // Add tongue if moving
+        if (tongue) {
+            g2d.setColor(TONGUE_COLOR);
+            g2d.fillOval(8, 18, 4, 6);
+        }
+    }
+
+    /**
+     * Draws a snake body segment with the given pattern at (0, 0)
+     */
+    private static void renderBody(Graphics2D g2d, int pattern) {
+        // Add enhanced glow effect with color variation
+        if (pattern % 3 == 0) {
+            g2d.setColor(BODY_GLOW_COLOR);
+        } else {
+            g2d.setColor(ACCENT_GLOW_COLOR);
+        }
+        g2d.fillOval(-3, -3, 26, 26);
+
+        // Main body segment with gradient-like effect
+        g2d.setColor(BODY_COLOR);
+        g2d.fillRoundRect(0, 0, 20, 20, 10, 10);
+
+        // Add inner highlight for 3D effect
+        g2d.setColor(BODY_HIGHLIGHT_COLOR);
+        g2d.fillRoundRect(2, 2, 16, 10, 8, 8);
+
+        // Enhanced pattern system with 6 different patterns
+        g2d.setColor(PATTERN_COLOR);
+        switch (pattern) {
+            case 0:
+                // Dots pattern with glow
+                g2d.fillOval(6, 6, 4, 4);
+                g2d.fillOval(10, 12, 4, 4);
+                // Add glow effect
+                g2d.setColor(DOT_GLOW_COLOR);
+                g2d.fillOval(7, 7, 2, 2);
+                g2d.fillOval(11, 13, 2, 2);
+                break;
+            case 1:
+                // Horizontal stripes pattern
+                g2d.setStroke(STROKE_2_5);
+                g2d.drawLine(4, 8, 16, 8);
+                g2d.drawLine(4, 12, 16, 12);
+                break;
+            case 2:
+                // Diamond pattern with fill
+                g2d.fillPolygon(DIAMOND);
+                break;
+            case 3:
+                // Cross pattern
+                g2d.setStroke(STROKE_2);
+                g2d.drawLine(10, 5, 10, 15);
+                g2d.drawLine(5, 10, 15, 10);
+                break;
+            case 4:
+                // Triangle pattern
+                g2d.fillPolygon(TRIANGLE);
+                break;
+            case 5:
+                // Spiral-like pattern
+                g2d.setStroke(STROKE_1_5);
+                g2d.drawArc(5, 5, 10, 10, 0, 180);
+                g2d.drawArc(8, 8, 4, 4, 180, 180);
+                break;
+            default:
+                break;
+        }
+
+        // Enhanced border with varying thickness
+        g2d.setColor(BORDER_COLOR);
+        g2d.setStroke(pattern % 2 == 0 ? STROKE_2 : STROKE_1_5);
+        g2d.drawRoundRect(0, 0, 20, 20, 10, 10);
+
+        // Add subtle inner shadow for depth
+        g2d.setColor(INNER_SHADOW_COLOR);
+        g2d.drawRoundRect(1, 1, 18, 18, 9, 9);
+    }
+}
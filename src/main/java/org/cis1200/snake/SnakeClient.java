@@ -0,0 +1,418 @@
+package org.cis1200.snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A headless client for SnakeServer.
+ *
+ * A client connects, learns which snake it steers from the WELCOME message
+ * and then keeps the latest board from the STATE messages the server sends
+ * every tick, acknowledging each so that the next can be a delta from it.
+ * It never blocks after connecting: read() takes whatever has
+ * arrived, so many clients can share one Selector. await() is a convenience
+ * for a single client that waits on a selector of its own.
+ *
+ * Run from the command line it is a load generator: it opens many clients
+ * on one thread, steers each at random and reports the traffic received.
+ *
+ *   java -cp target/classes org.cis1200.snake.SnakeClient
+ *       [--host H] [--port P] [--clients N] [--seconds S] [--seed S]
+ */
+public class SnakeClient implements AutoCloseable {
+    public static final int DEFAULT_CLIENTS = 48;
+    public static final int DEFAULT_SECONDS = 10;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final SocketChannel channel;
+    private ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer out;
+    private SelectionKey key;
+    private Selector ownSelector;
+
+    /* From the WELCOME message; slot is -1 until it arrives */
+    private int slot = -1;
+    private int width;
+    private int height;
+    private int tickMillis;
+    private boolean rejected;
+
+    /* The latest board, and the states before it to decode deltas against */
+    private int snakes;
+    private DeltaCodec.State state;
+    private final DeltaCodec.State[] history = new DeltaCodec.State[NetProtocol.HISTORY];
+    private long tick = -1;
+
+    private long statesReceived;
+    private long bytesReceived;
+    private long ticksMissed;
+
+    /**
+     * Connects to a server, waiting until the connection is made.
+     */
+    public SnakeClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+
+    /**
+     * The snake this client steers, or -1 before the server said.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Whether the server turned this client away because the board is full.
+     */
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    /**
+     * Tick of the latest state, or -1 if none has arrived.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    public int getSnakeCount() {
+        return snakes;
+    }
+
+    /**
+     * The segments of a snake in the latest state, head first. The buffer
+     * must not be changed.
+     */
+    public SegmentBuffer getBody(int id) {
+        return state == null ? new SegmentBuffer() : state.getTrack(id);
+    }
+
+    /**
+     * The food in the latest state, one entry per unit. The buffer must not
+     * be changed.
+     */
+    public SegmentBuffer getFood() {
+        return state == null ? new SegmentBuffer() : state.getTrack(snakes);
+    }
+
+    public long getStatesReceived() {
+        return statesReceived;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Ticks the server skipped for this client because it fell behind.
+     */
+    public long getTicksMissed() {
+        return ticksMissed;
+    }
+
+    /**************************************************************************
+     * I/O
+     **************************************************************************/
+
+    /**
+     * Registers the client for reads with a selector shared with others.
+     */
+    public SelectionKey register(Selector selector) throws IOException {
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+        return key;
+    }
+
+    /**
+     * Asks the server to turn this client's snake.
+     */
+    public void steer(Direction direction) throws IOException {
+        send(NetProtocol.input(direction));
+    }
+
+    private void send(ByteBuffer message) throws IOException {
+        if (out != null && out.hasRemaining()) {
+            // Still sending an earlier message; queue this one behind it
+            message = ByteBuffer.allocate(out.remaining() + message.remaining())
+                    .put(out).put(message).flip();
+        }
+        out = message;
+        flush();
+    }
+
+    /**
+     * Writes what the socket takes of the pending input.
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            channel.write(out);
+            if (!out.hasRemaining()) {
+                out = null;
+            }
+        }
+        if (key != null && key.isValid()) {
+            key.interestOps(out == null
+                    ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Reads whatever has arrived and applies every complete message.
+     *
+     * @return the number of STATE messages applied
+     * @throws IOException if the server closed the connection or sent a
+     *                     malformed message
+     */
+    public int read() throws IOException {
+        int read = channel.read(in);
+        if (read < 0) {
+            throw new IOException("Server closed the connection");
+        }
+        bytesReceived += read;
+        in.flip();
+        int states = 0;
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > NetProtocol.MAX_SERVER_FRAME) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                if (in.capacity() < 4 + length) {
+                    // Make room for a state bigger than any so far
+                    in = ByteBuffer.allocate(Integer.highestOneBit(4 + length) * 2)
+                            .put(in).flip();
+                }
+                break;
+            }
+            in.getInt();
+            int end = in.position() + length;
+            int limit = in.limit();
+            in.limit(end);
+            try {
+                byte type = in.get();
+                if (type == NetProtocol.STATE) {
+                    readState();
+                    states++;
+                } else if (type == NetProtocol.WELCOME) {
+                    readWelcome();
+                } else if (type == NetProtocol.FULL) {
+                    rejected = true;
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Message of type " + in.get(end - length) + " is cut short", e);
+            }
+            in.limit(limit).position(end);
+        }
+        in.compact();
+        return states;
+    }
+
+    /**
+     * Waits until at least one state has arrived, the server turned the
+     * client away or the time is up.
+     *
+     * @return whether a state arrived
+     */
+    public boolean await(long timeoutMillis) throws IOException {
+        if (ownSelector == null) {
+            ownSelector = Selector.open();
+            register(ownSelector);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long left;
+        while ((left = deadline - System.nanoTime()) > 0) {
+            if (ownSelector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(left))) > 0) {
+                ownSelector.selectedKeys().clear();
+                if (key.isWritable()) {
+                    flush();
+                }
+                if (read() > 0) {
+                    return true;
+                } else if (rejected) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (ownSelector != null) {
+            ownSelector.close();
+        }
+    }
+
+    private void readWelcome() throws IOException {
+        int version = in.get();
+        if (version != NetProtocol.VERSION) {
+            throw new IOException("Server speaks version " + version);
+        }
+        slot = Short.toUnsignedInt(in.getShort());
+        width = Short.toUnsignedInt(in.getShort());
+        height = Short.toUnsignedInt(in.getShort());
+        int snakes = Short.toUnsignedInt(in.getShort());
+        tickMillis = Short.toUnsignedInt(in.getShort());
+        this.snakes = snakes;
+    }
+
+    /**
+     * Applies a STATE message and acknowledges it.
+     */
+    private void readState() throws IOException {
+        DeltaCodec.State decoded = DeltaCodec.decode(in, t -> history[(int) (t % NetProtocol.HISTORY)]);
+        if (decoded.getTrackCount() != snakes + 1) {
+            throw new IOException("State has " + decoded.getTrackCount() + " tracks");
+        }
+        long previous = tick;
+        state = decoded;
+        tick = decoded.getTick();
+        history[(int) (tick % NetProtocol.HISTORY)] = decoded;
+        if (previous >= 0 && tick > previous + 1) {
+            ticksMissed += tick - previous - 1;
+        }
+        statesReceived++;
+        send(NetProtocol.ack(tick));
+    }
+
+    /**************************************************************************
+     * LOAD GENERATOR
+     **************************************************************************/
+
+    /**
+     * Connects as many clients as configured, steers each at random for a
+     * while and prints what they received.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = "localhost";
+        int port = NetProtocol.DEFAULT_PORT;
+        int clients = DEFAULT_CLIENTS;
+        int seconds = DEFAULT_SECONDS;
+        long seed = new SplittableRandom().nextLong();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--host":
+                        host = value;
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--clients":
+                        clients = Integer.parseInt(value);
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        usage();
+                        return;
+                }
+                i++;
+            }
+            if (host == null) {
+                usage();
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            usage();
+            return;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        SnakeClient[] all = new SnakeClient[clients];
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < clients; i++) {
+                all[i] = new SnakeClient(address);
+                all[i].register(selector);
+            }
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            int disconnected = 0;
+            while (System.nanoTime() < end) {
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())));
+                for (SelectionKey key : selector.selectedKeys()) {
+                    SnakeClient client = (SnakeClient) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            client.flush();
+                        }
+                        if (key.isReadable() && client.read() > 0 && random.nextInt(4) == 0) {
+                            client.steer(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        disconnected++;
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            print(all, disconnected, elapsed);
+        } finally {
+            for (SnakeClient client : all) {
+                if (client != null) {
+                    client.close();
+                }
+            }
+        }
+    }
+
+    private static void print(SnakeClient[] all, int disconnected, double seconds) {
+        long states = 0;
+        long bytes = 0;
+        long missed = 0;
+        int rejected = 0;
+        for (SnakeClient client : all) {
+            states += client.getStatesReceived();
+            bytes += client.getBytesReceived();
+            missed += client.getTicksMissed();
+            if (client.isRejected()) {
+                rejected++;
+            }
+        }
+        System.out.printf("%d clients for %.1f s: %d rejected, %d disconnected%n",
+                all.length, seconds, rejected, disconnected - rejected);
+        System.out.printf("%.0f states/s in all, %.1f states/s and %.1f kB/s per client, "
+                        + "%d ticks missed%n", states / seconds, states / seconds / all.length,
+                bytes / seconds / all.length / 1024, missed);
+    }
+
+    private static void usage() {
+        System.out.println("Usage: SnakeClient [--host H] [--port P] [--clients N] "
+                + "[--seconds S] [--seed S]");
+    }
+}
@@ -0,0 +1,423 @@
+package org.cis1200.snake;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * The game rules without any user interface.
+ *
+ * SnakeEngine owns the snake, the food, the score and the random number
+ * generators, and advances them one tick at a time through step(). It never
+ * touches Swing or the event dispatch thread and keeps time by counting
+ * ticks, so it can be driven as fast as the CPU allows by bots, tests and
+ * regression runs. GameCourt is a view over one engine.
+ *
+ * All randomness comes from a SplittableRandom seeded per game. The gameplay
+ * stream places food and decides spawns; the cosmetic stream is split off
+ * for effects such as particles so that drawing more or fewer of them never
+ * changes the game. Two engines reset with the same seed and fed the same
+ * directions play identical games.
+ */
+public class SnakeEngine {
+    /* Length of one tick on the virtual clock, in milliseconds */
+    public static final int TICK_MILLIS = 30;
+
+    /* Starting speed of the snake, in pixels per tick */
+    public static final int INIT_SPEED = 3;
+
+    public static final double GOLDEN_APPLE_SPAWN_CHANCE = 0.2;
+    public static final int MAX_APPLES = 4;
+    public static final int MAX_GOLDEN_APPLES = 2;
+
+    /* Flags returned by step() describing what happened during the tick */
+    public static final int ATE_APPLE = 1;
+    public static final int ATE_GOLDEN_APPLE = 1 << 1;
+    public static final int ATE_POISON_APPLE = 1 << 2;
+    public static final int GAME_OVER = 1 << 3;
+
+    /* Start every engine with allocation checking on: -Dsnake.checkAllocations=true */
+    private static final boolean CHECK_ALLOCATIONS_BY_DEFAULT =
+            Boolean.getBoolean("snake.checkAllocations");
+
+    private int boardWidth;
+    private int boardHeight;
+
+    // Game components
+    private Snake snake;
+    private Apple apple;
+    private GoldenApple goldenApple;
+    private PoisonApple poisonApple;
+
+    // Game state variables
+    private int score = 0;
+    private boolean playing = false;
+    private long tick = 0;
+
+    /* Picks the seed of each new game when none is given */
+    private final SplittableRandom seeds;
+
+    /* Seed of the current game, and the streams derived from it */
+    private long seed;
+    private SplittableRandom gameplayRandom;
+    private SplittableRandom cosmeticRandom;
+
+    /* When set, a tick with no events that allocates throws an exception */
+    private boolean checkAllocations =
+            CHECK_ALLOCATIONS_BY_DEFAULT && AllocationCounter.isSupported();
+
+    public SnakeEngine(int boardWidth, int boardHeight) {
+        this(boardWidth, boardHeight, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Creates an engine whose sequence of games is fully determined by seed.
+     */
+    public SnakeEngine(int boardWidth, int boardHeight, long seed) {
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        this.seeds = new SplittableRandom(seed);
+        seedStreams(seed);
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+    public Snake getSnake() {
+        return snake;
+    }
+
+    public Apple getApple() {
+        return apple;
+    }
+
+    public GoldenApple getGoldenApple() {
+        return goldenApple;
+    }
+
+    public PoisonApple getPoisonApple() {
+        return poisonApple;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    public int getBoardWidth() {
+        return boardWidth;
+    }
+
+    public int getBoardHeight() {
+        return boardHeight;
+    }
+
+    /**
+     * Number of ticks stepped since the last reset or load.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Time elapsed on the virtual clock since the last reset or load.
+     */
+    public long getElapsedMillis() {
+        return tick * TICK_MILLIS;
+    }
+
+    /**
+     * Seed of the current game; reset(getSeed()) replays the same spawns.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Random stream for gameplay decisions: food placement and spawns.
+     */
+    public SplittableRandom getGameplayRandom() {
+        return gameplayRandom;
+    }
+
+    /**
+     * Random stream for visual effects only. Drawing from it never changes
+     * how the game plays out.
+     */
+    public SplittableRandom getCosmeticRandom() {
+        return cosmeticRandom;
+    }
+
+    /**************************************************************************
+     * SETTERS
+     **************************************************************************/
+    public void setPlaying(boolean playing) {
+        this.playing = playing;
+    }
+
+    /**
+     * Turns the allocation check on or off. While it is on, any tick that
+     * returns no events (nothing eaten, game not over) must not allocate;
+     * if it does, step() throws an IllegalStateException. Ticks with events
+     * are exempt because eating legitimately grows the buffers.
+     *
+     * @throws UnsupportedOperationException if this JVM cannot measure
+     *                                       per-thread allocation
+     */
+    public void setCheckAllocations(boolean checkAllocations) {
+        if (checkAllocations && !AllocationCounter.isSupported()) {
+            throw new UnsupportedOperationException(
+                    "This JVM does not report per-thread allocation");
+        }
+        this.checkAllocations = checkAllocations;
+    }
+
+    /**
+     * Sets the board size used the next time objects are created.
+     */
+    public void setBoardSize(int boardWidth, int boardHeight) {
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+    }
+
+    /**
+     * Changes the board size in the middle of a game, pulling every object
+     * inside the new bounds.
+     */
+    public void resizeBoard(int boardWidth, int boardHeight) {
+        setBoardSize(boardWidth, boardHeight);
+        if (snake != null) {
+            snake.updateBoardSize(boardWidth, boardHeight);
+        }
+        if (apple != null) {
+            apple.updateBoardSize(boardWidth, boardHeight);
+        }
+        if (goldenApple != null) {
+            goldenApple.updateBoardSize(boardWidth, boardHeight);
+        }
+        if (poisonApple != null) {
+            poisonApple.updateBoardSize(boardWidth, boardHeight);
+        }
+    }
+
+    /**************************************************************************
+     * GAME LOGIC
+     **************************************************************************/
+
+    /**
+     * (Re-)sets the game to its initial state with the next seed in this
+     * engine's sequence.
+     */
+    public void reset() {
+        reset(seeds.nextLong());
+    }
+
+    /**
+     * (Re-)sets the game to its initial state with the given seed.
+     */
+    public void reset(long seed) {
+        seedStreams(seed);
+        snake = new Snake(boardWidth, boardHeight, takeOccupancy());
+        apple = new Apple(boardWidth, boardHeight, gameplayRandom);
+        goldenApple = new GoldenApple(boardWidth, boardHeight, gameplayRandom);
+        poisonApple = new PoisonApple(boardWidth, boardHeight, gameplayRandom);
+
+        snake.setSnakeVX(INIT_SPEED);
+        snake.setSnakeVY(INIT_SPEED);
+        score = 0;
+        tick = 0;
+        playing = true;
+    }
+
+    /**
+     * Replaces the game state with previously saved objects. The food is
+     * switched over to this engine's gameplay stream.
+     */
+    public void load(Snake snake, Apple apple, GoldenApple goldenApple,
+                     PoisonApple poisonApple, int score) {
+        apple.setRandom(gameplayRandom);
+        goldenApple.setRandom(gameplayRandom);
+        poisonApple.setRandom(gameplayRandom);
+        this.snake = snake;
+        this.apple = apple;
+        this.goldenApple = goldenApple;
+        this.poisonApple = poisonApple;
+        this.score = score;
+        this.tick = 0;
+        this.playing = true;
+    }
+
+    /**
+     * Detaches the current snake's occupancy grid so that the snake about to
+     * replace it can reuse it. The current snake must not move after this.
+     *
+     * @return the grid, or null if there is no snake
+     */
+    public OccupancyGrid takeOccupancy() {
+        if (snake == null) {
+            return null;
+        }
+        SegmentBuffer body = snake.getSegments();
+        OccupancyGrid grid = body.getOccupancy();
+        body.trackOccupancy(null);
+        return grid;
+    }
+
+    /**
+     * Points the snake in the given direction at its current speed.
+     */
+    public void steer(Direction direction) {
+        switch (direction) {
+            case LEFT:
+                snake.setVy(0);
+                snake.setVx(-snake.getSnakeVX());
+                break;
+            case RIGHT:
+                snake.setVy(0);
+                snake.setVx(snake.getSnakeVX());
+                break;
+            case DOWN:
+                snake.setVx(0);
+                snake.setVy(snake.getSnakeVY());
+                break;
+            case UP:
+                snake.setVx(0);
+                snake.setVy(-snake.getSnakeVY());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Advances the game by one tick.
+     *
+     * @param direction the direction to steer before moving, or null to keep
+     *                  going the same way
+     * @return a combination of the ATE_* and GAME_OVER flags, 0 if nothing
+     *         happened or the game is not being played
+     */
+    public int step(Direction direction) {
+        if (!playing) {
+            return 0;
+        }
+        if (!checkAllocations) {
+            return advance(direction);
+        }
+        long before = AllocationCounter.allocatedBytes();
+        int events = advance(direction);
+        long allocated = AllocationCounter.allocatedBytes() - before;
+        if (events == 0 && allocated > 0) {
+            throw new IllegalStateException(
+                    "Tick " + tick + " allocated " + allocated + " bytes");
+        }
+        return events;
+    }
+
+    /**
+     * Does the work of step() once the game is known to be in play.
+     */
+    private int advance(Direction direction) {
+        if (direction != null) {
+            steer(direction);
+        }
+
+        snake.move();
+        tick++;
+
+        // Check collisions with food
+        int events = handleFoodCollisions();
+
+        // Check for game over conditions
+        if (snake.hasHitItself() || snake.hasHitWall()) {
+            playing = false;
+            events |= GAME_OVER;
+        }
+        return events;
+    }
+
+    /**
+     * Handles collisions between the snake and food items.
+     */
+    private int handleFoodCollisions() {
+        int events = 0;
+
+        // If snake hits an apple, increase length of snake and score by 1
+        if (apple.intersects(snake)) {
+            apple.updateSnake(snake);
+            score += 1;
+            generateApples();
+            events |= ATE_APPLE;
+        }
+
+        // If snake hits a golden apple, increase velocity of snake and score by 5
+        if (goldenApple.intersects(snake)) {
+            goldenApple.updateSnake(snake);
+            score += 5;
+            generateApples();
+            events |= ATE_GOLDEN_APPLE;
+        }
+
+        // Poison apple: shrink to half, -5 points
+        if (poisonApple.intersects(snake)) {
+            int length = snake.getSegments().size();
+            snake.shrink(length - Math.max(1, length / 2));
+            score = Math.max(0, score - 5);
+            generateApples();
+            events |= ATE_POISON_APPLE;
+        }
+        return events;
+    }
+
+    /**
+     * Generates apples, with golden apples appearing less frequently.
+     */
+    public void generateApples() {
+        if (apple.getSegments().size() < MAX_APPLES) {
+            apple.add();
+        }
+
+        if (gameplayRandom.nextDouble() <= GOLDEN_APPLE_SPAWN_CHANCE
+                && goldenApple.getSegments().size() < MAX_GOLDEN_APPLES) {
+            goldenApple.add();
+        }
+    }
+
+    private void seedStreams(long seed) {
+        this.seed = seed;
+        gameplayRandom = new SplittableRandom(seed);
+        cosmeticRandom = gameplayRandom.split();
+    }
+
+    /**
+     * Reads the number of bytes the current thread has allocated so far.
+     * Kept in its own class so the management bean is only looked up when
+     * allocation checking is used.
+     */
+    private static class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        private static com.sun.management.ThreadMXBean threads() {
+            if (ManagementFactory.getThreadMXBean()
+                    instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean =
+                        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                if (bean.isThreadAllocatedMemorySupported()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                    return bean;
+                }
+            }
+            return null;
+        }
+
+        static boolean isSupported() {
+            return THREADS != null;
+        }
+
+        static long allocatedBytes() {
+            return THREADS.getCurrentThreadAllocatedBytes();
+        }
+    }
+}
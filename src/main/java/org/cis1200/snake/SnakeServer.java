@@ -0,0 +1,503 @@
+package org.cis1200.snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts one shared board for many remote players.
+ *
+ * The board is a GiantWorld with a fixed number of snakes. Each client that
+ * connects is given a free snake to steer; snakes without a player are
+ * played by the world's built-in AI, so the board is never empty. When the
+ * board has no free snake the client is sent FULL and disconnected.
+ *
+ * Everything runs on one thread around a non-blocking Selector: accepting,
+ * reading INPUT messages, stepping the world once per tick and sending the
+ * resulting STATE to every client (see NetProtocol). Each STATE is a delta
+ * from the newest state that client acknowledged, so what a client receives
+ * per tick depends on how much changed, not on how long the snakes have
+ * grown. Clients that acknowledged the same tick share one encoding. A
+ * client that has not taken the previous state off the socket yet skips
+ * this one instead of having it queued, so a slow client never holds up
+ * the others or grows memory.
+ *
+ * Run it from the command line:
+ *
+ *   java -cp target/classes org.cis1200.snake.SnakeServer
+ *       [--port P] [--width W] [--height H] [--snakes N] [--food F]
+ *       [--tick-millis T] [--seed S]
+ */
+public class SnakeServer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(SnakeServer.class.getName());
+
+    public static final int DEFAULT_WIDTH = 80;
+    public static final int DEFAULT_HEIGHT = 60;
+    public static final int DEFAULT_SNAKES = 64;
+    public static final int DEFAULT_FOOD = 120;
+    public static final int DEFAULT_TICK_MILLIS = 100;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final GiantWorld world;
+    private final int tickMillis;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+
+    /* Connection steering each snake, or null if the AI has it */
+    private final Connection[] players;
+    private final List<Connection> connections = new ArrayList<>();
+
+    /* The states last sent, by tick modulo NetProtocol.HISTORY */
+    private final DeltaCodec.State[] history = new DeltaCodec.State[NetProtocol.HISTORY];
+
+    private volatile boolean closed;
+    private volatile int connectionCount;
+    private volatile long inputsReceived;
+    private volatile long statesSent;
+    private volatile long statesSkipped;
+    private volatile long bytesSent;
+    private Thread thread;
+
+    /**
+     * A client and what is still to be written to it.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final int slot;
+        final ByteBuffer in = ByteBuffer.allocate(4 * NetProtocol.MAX_CLIENT_FRAME);
+        ByteBuffer out;
+        SelectionKey key;
+
+        /* Newest state the client has, or -1 for none */
+        long acked = -1;
+
+        Connection(SocketChannel channel, int slot) {
+            this.channel = channel;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Opens the server socket. Nothing is accepted until start().
+     *
+     * @param address     address to listen on; port 0 picks a free port
+     * @param world       the board, which the server steps from now on
+     * @param tickMillis  time between ticks
+     */
+    public SnakeServer(InetSocketAddress address, GiantWorld world, int tickMillis)
+            throws IOException {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.world = world;
+        this.tickMillis = tickMillis;
+        this.players = new Connection[world.getSnakeCount()];
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**************************************************************************
+     * GETTERS
+     **************************************************************************/
+
+    /**
+     * The port the server is listening on.
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public long getInputsReceived() {
+        return inputsReceived;
+    }
+
+    /**
+     * Number of STATE messages handed to clients.
+     */
+    public long getStatesSent() {
+        return statesSent;
+    }
+
+    /**
+     * Bytes of STATE messages handed to clients.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Number of STATE messages dropped because a client was behind.
+     */
+    public long getStatesSkipped() {
+        return statesSkipped;
+    }
+
+    /**************************************************************************
+     * LIFECYCLE
+     **************************************************************************/
+
+    /**
+     * Starts serving on a thread of its own.
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this::serve, "snake-server");
+            thread.start();
+        }
+    }
+
+    /**
+     * Disconnects every client and stops the server.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        Thread serving;
+        synchronized (this) {
+            serving = thread;
+        }
+        if (serving != null && serving != Thread.currentThread()) {
+            try {
+                serving.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Connection connection : connections) {
+            connection.channel.close();
+        }
+        connections.clear();
+        server.close();
+        selector.close();
+    }
+
+    /**
+     * The selector loop: handles whatever is ready until the next tick is
+     * due, then ticks.
+     */
+    private void serve() {
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        long nextTick = System.nanoTime() + tickNanos;
+        try {
+            while (!closed) {
+                long wait = TimeUnit.NANOSECONDS.toMillis(nextTick - System.nanoTime());
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.selectNow();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle(key);
+                }
+                selector.selectedKeys().clear();
+
+                long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    tick();
+                    // After a stall, carry on from now rather than catching up
+                    nextTick = Math.max(nextTick + tickNanos, now);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Snake server stopped", e);
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(connection);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Dropping client on snake " + connection.slot, e);
+            disconnect(connection);
+        }
+    }
+
+    /**************************************************************************
+     * CONNECTIONS
+     **************************************************************************/
+
+    /**
+     * Accepts one pending client. A client that fails to join is dropped on
+     * its own; the selector loop and everyone else carry on.
+     */
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = server.accept();
+        } catch (IOException e) {
+            // Out of file descriptors, say; the client can be accepted later
+            LOGGER.log(Level.WARNING, "Could not accept a client", e);
+            return;
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            join(channel);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Dropping client before it joined", e);
+            try {
+                channel.close();
+            } catch (IOException closeFailure) {
+                LOGGER.log(Level.FINE, "Could not close client socket", closeFailure);
+            }
+        }
+    }
+
+    /**
+     * Gives a newly accepted client a free snake, or tells it the board is
+     * full and closes it.
+     */
+    private void join(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        int slot = 0;
+        while (slot < players.length && players[slot] != null) {
+            slot++;
+        }
+        if (slot == players.length) {
+            // Best effort: the frame is tiny and the socket buffer empty
+            channel.write(NetProtocol.full());
+            channel.close();
+            return;
+        }
+
+        Connection connection = new Connection(channel, slot);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        players[slot] = connection;
+        connections.add(connection);
+        connectionCount = connections.size();
+        world.setPlayer(slot, true);
+        connection.out = NetProtocol.welcome(slot, world, tickMillis);
+        try {
+            flush(connection);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not close client socket", e);
+        }
+        if (players[connection.slot] == connection) {
+            players[connection.slot] = null;
+            world.setPlayer(connection.slot, false);
+        }
+        connections.remove(connection);
+        connectionCount = connections.size();
+    }
+
+    /**
+     * Reads what the client sent and applies every complete INPUT message.
+     */
+    private void read(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (connection.channel.read(in) < 0) {
+            throw new IOException("Client closed the connection");
+        }
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > NetProtocol.MAX_CLIENT_FRAME) {
+                throw new IOException("Bad frame length " + length);
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            in.getInt();
+            int end = in.position() + length;
+            byte type = in.get();
+            if (type == NetProtocol.INPUT && length == 2) {
+                int d = in.get();
+                if (d >= 0 && d < DIRECTIONS.length) {
+                    world.steer(connection.slot, DIRECTIONS[d]);
+                    inputsReceived++;
+                }
+            } else if (type == NetProtocol.ACK && length == 9) {
+                long tick = in.getLong();
+                if (tick > connection.acked && tick <= world.getTick()) {
+                    connection.acked = tick;
+                }
+            }
+            // Skip anything this version does not understand
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    /**
+     * Writes as much of the pending message as the socket takes, and asks
+     * to be told when it can take more.
+     */
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        if (out != null) {
+            connection.channel.write(out);
+            if (!out.hasRemaining()) {
+                connection.out = null;
+            }
+        }
+        connection.key.interestOps(connection.out == null
+                ? SelectionKey.OP_READ
+                : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**************************************************************************
+     * TICKS
+     **************************************************************************/
+
+    /**
+     * Steps the world and sends the new state to every client that is
+     * ready for it.
+     */
+    private void tick() {
+        world.step(ForkJoinPool.commonPool());
+        if (connections.isEmpty()) {
+            return;
+        }
+        DeltaCodec.State state = DeltaCodec.State.of(world);
+        history[(int) (state.getTick() % NetProtocol.HISTORY)] = state;
+
+        // Clients that acked the same tick get the same frame
+        Map<Long, ByteBuffer> frames = new HashMap<>();
+        // Iterate over a copy since a failed write disconnects
+        for (Connection connection : connections.toArray(new Connection[0])) {
+            if (connection.out != null) {
+                statesSkipped++;
+                continue;
+            }
+            DeltaCodec.State baseline = baseline(connection.acked);
+            long key = baseline == null ? -1 : baseline.getTick();
+            ByteBuffer frame = frames.computeIfAbsent(key,
+                    k -> NetProtocol.state(DeltaCodec.encode(baseline, state)));
+            connection.out = frame.duplicate();
+            statesSent++;
+            bytesSent += frame.remaining();
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Dropping client on snake " + connection.slot, e);
+                disconnect(connection);
+            }
+        }
+    }
+
+    /**
+     * The state a client acknowledged, if it is still kept.
+     */
+    private DeltaCodec.State baseline(long acked) {
+        if (acked < 0) {
+            return null;
+        }
+        DeltaCodec.State state = history[(int) (acked % NetProtocol.HISTORY)];
+        return state != null && state.getTick() == acked ? state : null;
+    }
+
+    /**************************************************************************
+     * COMMAND LINE
+     **************************************************************************/
+
+    /**
+     * Serves a board as configured by the arguments until the process is
+     * stopped.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = NetProtocol.DEFAULT_PORT;
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        int snakes = DEFAULT_SNAKES;
+        int food = DEFAULT_FOOD;
+        int tickMillis = DEFAULT_TICK_MILLIS;
+        long seed = new SplittableRandom().nextLong();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--width":
+                        width = Integer.parseInt(value);
+                        break;
+                    case "--height":
+                        height = Integer.parseInt(value);
+                        break;
+                    case "--snakes":
+                        snakes = Integer.parseInt(value);
+                        break;
+                    case "--food":
+                        food = Integer.parseInt(value);
+                        break;
+                    case "--tick-millis":
+                        tickMillis = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        usage();
+                        return;
+                }
+                i++;
+            }
+            GiantWorld world = new GiantWorld(width, height, 1, snakes, food, seed);
+            SnakeServer server = new SnakeServer(new InetSocketAddress(port), world, tickMillis);
+            System.out.printf("Serving a %dx%d board for %d snakes on port %d (seed %d)%n",
+                    width, height, snakes, server.getPort(), seed);
+            server.start();
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            usage();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: SnakeServer [--port P] [--width W] [--height H] "
+                + "[--snakes N] [--food F] [--tick-millis T] [--seed S]");
+    }
+}
@@ -0,0 +1,155 @@
+package org.cis1200.snake;
+
+import java.util.Arrays;
+
+/**
+ * A uniform-grid spatial hash over the points of a SegmentBuffer.
+ *
+ * The board is divided into square cells and every item index is filed in
+ * the bucket of the cell containing its upper-left corner. A rectangle query
+ * only has to look at the buckets the rectangle overlaps, so finding what the
+ * snake's head touches does not depend on how much food is on the board.
+ *
+ * Items are identified by their index in the buffer. The buffer is expected
+ * to remove items with swapRemove(), which the index mirrors with remove()
+ * followed by renumber().
+ */
+public class SpatialIndex {
+    public static final int DEFAULT_CELL_SIZE = 64;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final int cellSize;
+    private final int cols;
+    private final int rows;
+
+    /* Item indices in each bucket, and how many of each row are in use */
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+
+    /* For each item index: which bucket it is in and where in that bucket */
+    private int[] itemCell = new int[16];
+    private int[] itemSlot = new int[16];
+
+    /**
+     * Creates an index covering 0 <= x <= maxX and 0 <= y <= maxY. Points
+     * outside that area are filed in the nearest edge cell.
+     */
+    public SpatialIndex(int maxX, int maxY, int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        this.cols = Math.max(1, maxX / this.cellSize + 1);
+        this.rows = Math.max(1, maxY / this.cellSize + 1);
+        this.buckets = new int[cols * rows][];
+        this.bucketSizes = new int[cols * rows];
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Files the item with the given index at (x, y).
+     */
+    public void insert(int index, int x, int y) {
+        ensureItemCapacity(index + 1);
+        int cell = cellOf(x, y);
+        int[] bucket = buckets[cell];
+        if (bucket == null) {
+            bucket = new int[INITIAL_BUCKET_CAPACITY];
+            buckets[cell] = bucket;
+        } else if (bucketSizes[cell] == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            buckets[cell] = bucket;
+        }
+        int slot = bucketSizes[cell]++;
+        bucket[slot] = index;
+        itemCell[index] = cell;
+        itemSlot[index] = slot;
+    }
+
+    /**
+     * Removes the item with the given index from its bucket.
+     */
+    public void remove(int index) {
+        int cell = itemCell[index];
+        int slot = itemSlot[index];
+        int[] bucket = buckets[cell];
+        int last = --bucketSizes[cell];
+        if (slot != last) {
+            int moved = bucket[last];
+            bucket[slot] = moved;
+            itemSlot[moved] = slot;
+        }
+    }
+
+    /**
+     * Records that the item filed as oldIndex is now known as newIndex.
+     */
+    public void renumber(int oldIndex, int newIndex) {
+        ensureItemCapacity(newIndex + 1);
+        int cell = itemCell[oldIndex];
+        int slot = itemSlot[oldIndex];
+        buckets[cell][slot] = newIndex;
+        itemCell[newIndex] = cell;
+        itemSlot[newIndex] = slot;
+    }
+
+    public void clear() {
+        Arrays.fill(bucketSizes, 0);
+    }
+
+    /**
+     * Finds the lowest-indexed item whose point lies inside the rectangle
+     * minX <= x <= maxX, minY <= y <= maxY.
+     *
+     * @return the item index, or -1 if no item is inside
+     */
+    public int findFirst(SegmentBuffer points, int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX || minY > maxY) {
+            return -1;
+        }
+        int firstCol = colOf(minX);
+        int lastCol = colOf(maxX);
+        int firstRow = rowOf(minY);
+        int lastRow = rowOf(maxY);
+
+        int found = -1;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int cell = row * cols + col;
+                int[] bucket = buckets[cell];
+                for (int i = 0; i < bucketSizes[cell]; i++) {
+                    int index = bucket[i];
+                    if (found >= 0 && index > found) {
+                        continue;
+                    }
+                    int x = points.getX(index);
+                    int y = points.getY(index);
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        found = index;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int colOf(int x) {
+        return Math.min(Math.max(Math.floorDiv(x, cellSize), 0), cols - 1);
+    }
+
+    private int rowOf(int y) {
+        return Math.min(Math.max(Math.floorDiv(y, cellSize), 0), rows - 1);
+    }
+
+    private int cellOf(int x, int y) {
+        return rowOf(y) * cols + colOf(x);
+    }
+
+    private void ensureItemCapacity(int minCapacity) {
+        if (minCapacity > itemCell.length) {
+            int newCapacity = Math.max(minCapacity, itemCell.length * 2);
+            itemCell = Arrays.copyOf(itemCell, newCapacity);
+            itemSlot = Arrays.copyOf(itemSlot, newCapacity);
+        }
+    }
+}
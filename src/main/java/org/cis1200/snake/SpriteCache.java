@@ -0,0 +1,143 @@
+package org.cis1200.snake;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A process-wide cache of decoded and pre-scaled images.
+ *
+ * Each file is decoded at most once per run, no matter how many game objects
+ * ask for it or how often the game restarts. get() also returns the image
+ * already scaled to the size it will be drawn at and converted to the
+ * screen's native pixel layout, so drawing it is a plain copy with no
+ * per-frame scaling or color conversion.
+ *
+ * Only the most recently requested size is kept for each file, so resizing
+ * the window does not pile up scaled copies of the full-board images.
+ */
+public final class SpriteCache {
+    private static final Logger LOGGER = Logger.getLogger(SpriteCache.class.getName());
+
+    /* Stands in for files that could not be read, so they are not retried */
+    private static final BufferedImage MISSING =
+            new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private static final Map<String, BufferedImage> DECODED = new ConcurrentHashMap<>();
+    private static final Map<String, BufferedImage> SCALED = new ConcurrentHashMap<>();
+
+    private SpriteCache() {
+    }
+
+    /**
+     * Returns the image at path as decoded from disk, or null if it cannot be
+     * read. The file is only read the first time it is asked for.
+     */
+    public static BufferedImage load(String path) {
+        BufferedImage image = DECODED.computeIfAbsent(path, SpriteCache::decode);
+        return image == MISSING ? null : image;
+    }
+
+    /**
+     * Returns the image at path scaled to width x height in a format
+     * compatible with the default screen, or null if it cannot be read.
+     */
+    public static BufferedImage get(String path, int width, int height) {
+        BufferedImage source = load(path);
+        if (source == null || width <= 0 || height <= 0) {
+            return null;
+        }
+        return SCALED.compute(path, (key, cached) ->
+                cached != null && cached.getWidth() == width && cached.getHeight() == height
+                        ? cached : scale(source, width, height));
+    }
+
+    /**
+     * Drops every cached image. Mostly useful for tests.
+     */
+    public static void clear() {
+        DECODED.clear();
+        SCALED.clear();
+    }
+
+    /**************************************************************************
+     * HELPERS
+     **************************************************************************/
+    private static BufferedImage decode(String path) {
+        try {
+            BufferedImage image = ImageIO.read(new File(path));
+            if (image != null) {
+                return image;
+            }
+            LOGGER.log(Level.WARNING, "No decoder for image " + path);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load image " + path, e);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Draws source into a new width x height image once, so that painting
+     * never has to scale it again. Large reductions are done in steps of at
+     * most one half, which keeps the small sprites smooth where a single
+     * pass would drop most of the source pixels.
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            if (current.getWidth() <= width || current.getHeight() <= height) {
+                w = width;
+                h = height;
+            }
+            BufferedImage step = createCompatibleImage(w, h);
+            Graphics2D g2d = step.createGraphics();
+            try {
+                g2d.setComposite(AlphaComposite.Src);
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                g2d.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g2d.dispose();
+            }
+            current = step;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    /**
+     * Creates a translucent image in the default screen's native layout, or a
+     * premultiplied ARGB image when there is no screen.
+     */
+    static BufferedImage createCompatibleImage(int width, int height) {
+        return createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Creates an image with the given Transparency in the default screen's
+     * native layout, or a plain RGB or premultiplied ARGB image when there is
+     * no screen.
+     */
+    static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        if (transparency == Transparency.OPAQUE) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+}
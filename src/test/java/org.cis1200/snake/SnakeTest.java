@@ -1,9 +1,32 @@
 package org.cis1200.snake;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class SnakeTest {
@@ -170,19 +193,24 @@ public class SnakeTest {
         assertEquals(9, snake.getSnakeVY());
     }
 
+    // Where courts made by tests keep their saves and scores
+    @TempDir
+    Path courtDir;
+
     @Test
     public void testGameCourtInitialization() {
         JLabel status = new JLabel();
-        GameCourt court = new GameCourt(status);
+        GameCourt court = new GameCourt(status, courtDir);
         assertNotNull(court);
         assertTrue(court.getPreferredSize().getWidth() > 0);
         assertTrue(court.getPreferredSize().getHeight() > 0);
+        court.close();
     }
 
     @Test
     public void testGameCourtReset() {
         JLabel status = new JLabel();
-        GameCourt court = new GameCourt(status);
+        GameCourt court = new GameCourt(status, courtDir);
         court.reset();
         assertEquals(1, court.getSnake().getGameObjects().size());
         assertEquals(1, court.getApple().getGameObjects().size());
@@ -190,14 +218,904 @@ public class SnakeTest {
         assertEquals(3, court.getSnake().getSnakeVX());
         assertEquals(3, court.getSnake().getSnakeVY());
         assertEquals(0, court.getScore());
+        court.close();
     }
 
     @Test
     public void testGameCourtInstructions() {
         JLabel status = new JLabel();
-        GameCourt court = new GameCourt(status);
+        GameCourt court = new GameCourt(status, courtDir);
         court.instructions();
         assertFalse(court.isPlaying());
+        court.close();
+    }
+
+    @Test
+    public void testGameCourtRecoversAutosaveWithoutTouchingTheSaveSlot() throws Exception {
+        GameCourt first = new GameCourt(new JLabel(), courtDir);
+        first.reset();
+        first.save();
+        first.getPersistence().flush();
+        Path saveSlot = courtDir.resolve("game.snapshot");
+        byte[] saved = Files.readAllBytes(saveSlot);
+
+        // The next game is autosaved and left unfinished
+        first.reset();
+        first.close();
+        assertTrue(Files.exists(courtDir.resolve("autosave.snapshot")));
+
+        GameCourt second = new GameCourt(new JLabel(), courtDir);
+        assertArrayEquals(saved, Files.readAllBytes(saveSlot));
+        assertTrue(second.hasRecoveredGame());
+        second.resume();
+        assertFalse(second.hasRecoveredGame());
+        assertTrue(second.isPlaying());
+        second.close();
+    }
+
+    @Test
+    public void testSnakeMoveFollowsHead() {
+        Snake snake = new Snake(400, 400);
+        snake.grow(2);
+        snake.setVx(5);
+        snake.setVy(0);
+        snake.move();
+        snake.move();
+        assertEquals(3, snake.getGameObjects().size());
+        assertEquals(new Point(30, 20), snake.getGameObjects().get(0));
+        assertEquals(new Point(25, 20), snake.getGameObjects().get(1));
+        assertEquals(new Point(20, 20), snake.getGameObjects().get(2));
+    }
+
+    @Test
+    public void testSnakeShrinkKeepsHead() {
+        Snake snake = new Snake(400, 400);
+        snake.grow(4);
+        snake.shrink(10);
+        assertEquals(1, snake.getGameObjects().size());
+        assertEquals(new Point(20, 20), snake.getGameObjects().get(0));
+    }
+
+    @Test
+    public void testSnakeHitsItselfAfterTurningBack() {
+        Snake snake = new Snake(400, 400);
+        snake.grow(5);
+        snake.setVx(10);
+        for (int i = 0; i < 5; i++) {
+            snake.move();
+        }
+        assertFalse(snake.hasHitItself());
+        snake.setVx(-10);
+        assertTrue(snake.hasHitItself());
+        snake.setVx(0);
+        snake.setVy(10);
+        assertFalse(snake.hasHitItself());
+    }
+
+    @Test
+    public void testOccupancyFollowsShrink() {
+        Snake snake = new Snake(400, 400);
+        snake.getGameObjects().add(new Point(23, 20));
+        snake.setVx(3);
+        assertTrue(snake.hasHitItself());
+        snake.shrink(1);
+        assertFalse(snake.hasHitItself());
+    }
+
+    @Test
+    public void testFeastIntersectsOnlyNearbyFood() {
+        Apple apple = new Apple(2000, 2000);
+        apple.remove(0);
+        for (int x = 0; x < 1900; x += 100) {
+            for (int y = 0; y < 1900; y += 100) {
+                apple.addPoint(x, y);
+            }
+        }
+        int count = apple.getGameObjects().size();
+        Snake snake = new Snake(2000, 2000);
+        snake.setPx(540);
+        snake.setPy(760);
+        assertFalse(apple.intersects(snake));
+
+        snake.setPx(520);
+        snake.setPy(790);
+        assertTrue(apple.intersects(snake));
+        assertEquals(count - 1, apple.getGameObjects().size());
+        assertFalse(apple.getGameObjects().contains(new Point(500, 800)));
+        assertFalse(apple.intersects(snake));
+    }
+
+    @Test
+    public void testSpatialIndexMatchesScanAfterRemovals() {
+        Apple apple = new Apple(600, 400);
+        for (int i = 0; i < 200; i++) {
+            apple.addPoint((i * 37) % 570, (i * 53) % 370);
+        }
+        Snake snake = new Snake(600, 400);
+        for (int i = 0; i < 300; i++) {
+            snake.setPx((i * 29) % 580);
+            snake.setPy((i * 17) % 380);
+            boolean expected = false;
+            for (Point p : apple.getGameObjects()) {
+                expected |= p.x + Apple.SIZE >= snake.getPx()
+                        && p.y + Apple.SIZE >= snake.getPy()
+                        && snake.getPx() + Snake.SIZE >= p.x
+                        && snake.getPy() + Snake.SIZE >= p.y;
+            }
+            assertEquals(expected, apple.intersects(snake));
+        }
+    }
+
+    @Test
+    public void testEngineStepSteersAndMoves() {
+        SnakeEngine engine = new SnakeEngine(600, 400, 1L);
+        engine.reset();
+        engine.getApple().remove(0);
+        engine.getGoldenApple().remove(0);
+        engine.getPoisonApple().remove(0);
+
+        assertEquals(0, engine.step(Direction.RIGHT));
+        assertEquals(0, engine.step(null));
+        assertEquals(26, engine.getSnake().getPx());
+        assertEquals(20, engine.getSnake().getPy());
+        assertEquals(2, engine.getTick());
+        assertEquals(2 * SnakeEngine.TICK_MILLIS, engine.getElapsedMillis());
+    }
+
+    @Test
+    public void testEngineEatsAppleAndGrows() {
+        SnakeEngine engine = new SnakeEngine(600, 400, 1L);
+        engine.reset();
+        engine.getApple().remove(0);
+        engine.getApple().addPoint(40, 20);
+        engine.getGoldenApple().remove(0);
+        engine.getPoisonApple().remove(0);
+
+        int events = engine.step(Direction.RIGHT);
+        assertEquals(SnakeEngine.ATE_APPLE, events);
+        assertEquals(1, engine.getScore());
+        assertEquals(4, engine.getSnake().getSegments().size());
+    }
+
+    @Test
+    public void testEngineStopsAtWall() {
+        SnakeEngine engine = new SnakeEngine(600, 400, 1L);
+        engine.reset();
+        engine.getApple().remove(0);
+        engine.getGoldenApple().remove(0);
+        engine.getPoisonApple().remove(0);
+
+        int events = 0;
+        for (int i = 0; i < 20 && engine.isPlaying(); i++) {
+            events = engine.step(Direction.UP);
+        }
+        assertEquals(SnakeEngine.GAME_OVER, events);
+        assertFalse(engine.isPlaying());
+        assertEquals(0, engine.step(Direction.DOWN));
+    }
+
+    @Test
+    public void testEngineSteadyStateTickDoesNotAllocate() {
+        // Warm up on throwaway games so that class loading and JIT
+        // recompilation do not count against the checked ticks
+        for (int game = 0; game < 50; game++) {
+            SnakeEngine warmup = emptyBoardEngine();
+            for (int i = 0; i < 100; i++) {
+                warmup.step(i % 2 == 0 ? Direction.RIGHT : Direction.DOWN);
+            }
+        }
+
+        SnakeEngine engine = emptyBoardEngine();
+        engine.setCheckAllocations(true);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, engine.step(i % 2 == 0 ? Direction.RIGHT : Direction.DOWN));
+        }
+    }
+
+    private static SnakeEngine emptyBoardEngine() {
+        SnakeEngine engine = new SnakeEngine(600, 400, 1L);
+        engine.reset();
+        engine.getApple().remove(0);
+        engine.getGoldenApple().remove(0);
+        engine.getPoisonApple().remove(0);
+        engine.getSnake().grow(20);
+        return engine;
+    }
+
+    @Test
+    public void testEngineSameSeedPlaysSameGame() {
+        SnakeEngine first = new SnakeEngine(600, 400, 7L);
+        SnakeEngine second = new SnakeEngine(600, 400, 7L);
+        first.reset();
+        second.reset();
+        assertEquals(first.getSeed(), second.getSeed());
+
+        Direction[] inputs = {Direction.RIGHT, Direction.DOWN, Direction.RIGHT};
+        for (int i = 0; i < 60; i++) {
+            Direction d = inputs[i / 20];
+            assertEquals(first.step(d), second.step(d));
+            // Effects may draw from the cosmetic stream without changing the game
+            first.getCosmeticRandom().nextInt();
+        }
+        assertEquals(first.getScore(), second.getScore());
+        assertEquals(first.getSnake().getSegments().toString(),
+                second.getSnake().getSegments().toString());
+        assertEquals(first.getApple().getSegments().toString(),
+                second.getApple().getSegments().toString());
+        assertEquals(first.getGoldenApple().getSegments().toString(),
+                second.getGoldenApple().getSegments().toString());
+    }
+
+    @Test
+    public void testEngineResetReusesOccupancyGrid() {
+        SnakeEngine engine = new SnakeEngine(600, 400, 5L);
+        engine.reset();
+        OccupancyGrid grid = engine.getSnake().getSegments().getOccupancy();
+        engine.getSnake().grow(3);
+        for (int i = 0; i < 20; i++) {
+            engine.step(Direction.RIGHT);
+        }
+
+        engine.reset();
+        Snake snake = engine.getSnake();
+        assertSame(grid, snake.getSegments().getOccupancy());
+        assertEquals(1, grid.count(snake.getPx(), snake.getPy()));
+        assertFalse(snake.hasHitItself());
+    }
+
+    @Test
+    public void testFoodSpawnsInsideBoard() {
+        SplittableRandom random = new SplittableRandom(3L);
+        for (int i = 0; i < 100; i++) {
+            Apple apple = new Apple(600, 400, random);
+            assertTrue(apple.getPx() >= 0 && apple.getPx() <= apple.getMaxX());
+            assertTrue(apple.getPy() >= 0 && apple.getPy() <= apple.getMaxY());
+        }
+    }
+
+    @Test
+    public void testSpriteCacheScalesOnce() {
+        BufferedImage first = SpriteCache.get(Apple.IMAGE_PATH, Apple.SIZE, Apple.SIZE);
+        assertNotNull(first);
+        assertEquals(Apple.SIZE, first.getWidth());
+        assertEquals(Apple.SIZE, first.getHeight());
+        assertSame(first, SpriteCache.get(Apple.IMAGE_PATH, Apple.SIZE, Apple.SIZE));
+        assertSame(SpriteCache.load(Apple.IMAGE_PATH), SpriteCache.load(Apple.IMAGE_PATH));
+        assertNull(SpriteCache.get("files/noSuchImage.png", 10, 10));
+    }
+
+    @Test
+    public void testSnakeDrawsFromAtlas() {
+        BufferedImage canvas =
+                new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = canvas.createGraphics();
+        SnakeAtlas atlas = SnakeAtlas.forGraphics(g2d);
+        assertSame(atlas, SnakeAtlas.forGraphics(g2d));
+        assertEquals(SnakeAtlas.CELL * (SnakeAtlas.BODY_PATTERNS + 2), atlas.getImage().getWidth());
+
+        Snake snake = new Snake(100, 100);
+        snake.draw(g2d);
+        g2d.dispose();
+        // The head's body color is opaque at its center
+        assertEquals(0xFF, canvas.getRGB(Snake.INIT_POS_X + 10, Snake.INIT_POS_Y + 15) >>> 24);
+    }
+
+    @Test
+    public void testSnakeMoveOnlyRedrawsHeadAndTail() {
+        Snake snake = new Snake(300, 300);
+        snake.setVx(3);
+        for (int i = 0; i < 60; i++) {
+            snake.move();
+            snake.grow(1);
+        }
+        SegmentBuffer body = snake.getSegments();
+        Rectangle oldHead = spriteBounds(body.firstX(), body.firstY());
+        Rectangle oldTail = spriteBounds(body.lastX(), body.lastY());
+        BufferedImage before = drawSnake(snake);
+        snake.move();
+        Rectangle newHead = spriteBounds(body.firstX(), body.firstY());
+        BufferedImage after = drawSnake(snake);
+
+        int changed = 0;
+        for (int y = 0; y < before.getHeight(); y++) {
+            for (int x = 0; x < before.getWidth(); x++) {
+                if (before.getRGB(x, y) != after.getRGB(x, y)) {
+                    changed++;
+                    assertTrue(oldHead.contains(x, y) || oldTail.contains(x, y)
+                            || newHead.contains(x, y), "pixel changed at " + x + "," + y);
+                }
+            }
+        }
+        assertTrue(changed > 0);
+    }
+
+    private static Rectangle spriteBounds(int x, int y) {
+        return new Rectangle(x - SnakeAtlas.PAD, y - SnakeAtlas.PAD, SnakeAtlas.CELL, SnakeAtlas.CELL);
+    }
+
+    private static BufferedImage drawSnake(Snake snake) {
+        return drawSnake(snake, 1.0);
+    }
+
+    private static BufferedImage drawSnake(Snake snake, double alpha) {
+        BufferedImage canvas = new BufferedImage(
+                300, 300, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = canvas.createGraphics();
+        snake.draw(g2d, alpha);
+        g2d.dispose();
+        return canvas;
+    }
+
+    @Test
+    public void testSnakeDrawInterpolatesHead() {
+        Snake snake = new Snake(300, 300);
+        snake.setVx(40);
+        int fromX = snake.getSegments().firstX();
+        snake.move();
+        int toX = snake.getSegments().firstX();
+        int y = snake.getSegments().firstY();
+        int headColor = 0xFF2ECC71;
+
+        BufferedImage start = drawSnake(snake, 0.0);
+        assertEquals(headColor, start.getRGB(fromX + 10, y + 15));
+        assertNotEquals(headColor, start.getRGB(toX + 10, y + 15));
+
+        BufferedImage end = drawSnake(snake, 1.0);
+        assertEquals(headColor, end.getRGB(toX + 10, y + 15));
+        assertNotEquals(headColor, end.getRGB(fromX + 10, y + 15));
+    }
+
+    @Test
+    public void testSnakeCopyDrawsLikeTheOriginal() {
+        Snake snake = new Snake(300, 300);
+        snake.setVx(3);
+        for (int i = 0; i < 40; i++) {
+            snake.move();
+            snake.grow(1);
+        }
+        Snake copy = new Snake(Snake.SIZE, Snake.SIZE);
+        copy.copyFrom(snake);
+        // Moving the original afterwards must not change the copy
+        BufferedImage expected = drawSnake(snake, 0.5);
+        snake.move();
+
+        BufferedImage actual = drawSnake(copy, 0.5);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel at " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    public void testLayerCacheRepaintsOnlyOnChange() {
+        int[] paints = new int[1];
+        LayerCache layer = new LayerCache((g2d, width, height, state) -> paints[0]++,
+                Transparency.TRANSLUCENT);
+
+        BufferedImage first = layer.get(50, 40, 0);
+        assertSame(first, layer.get(50, 40, 0));
+        assertEquals(1, paints[0]);
+
+        layer.get(50, 40, 1);
+        layer.get(60, 40, 1);
+        assertEquals(3, paints[0]);
+        layer.invalidate();
+        layer.get(60, 40, 1);
+        assertEquals(4, paints[0]);
+        assertNull(layer.get(0, 40, 1));
+    }
+
+    @Test
+    public void testGameMetricsCountsSamplesAndLateFrames() {
+        GameMetrics metrics = new GameMetrics();
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            metrics.record(GameMetrics.TICK_ENGINE, start);
+        }
+        assertEquals(100L, metrics.getSampleCounts().get("tick.engine"));
+        assertEquals(0L, metrics.getSampleCounts().get("paint"));
+        assertTrue(metrics.getP99Micros(GameMetrics.TICK_ENGINE)
+                <= metrics.getMaxMicros().get("tick.engine"));
+
+        long budget = 16_000_000L;
+        metrics.recordFrameInterval(budget, budget);
+        metrics.recordFrameInterval(budget * 3, budget);
+        assertEquals(2, metrics.getFrameCount());
+        assertEquals(1, metrics.getLateFrames());
+        assertEquals(2, metrics.getDroppedFrames());
+
+        metrics.reset();
+        assertEquals(0, metrics.getFrameCount());
+        assertEquals(0, metrics.getTickCount());
+        assertEquals(0.0, metrics.getMeanMicros(GameMetrics.TICK_ENGINE));
+    }
+
+    @Test
+    public void testParticleSystemSwapRemovesDeadParticles() {
+        ParticleSystem particles = new ParticleSystem(3, 2, Color.RED, Color.BLUE);
+        assertTrue(particles.spawn(0, 0, 1, 1, 5, 0));
+        particles.update();
+        assertTrue(particles.spawn(10, 10, -1, 0, 5, 1));
+        assertTrue(particles.spawn(20, 20, 0, 2, 5, 0));
+        assertFalse(particles.spawn(30, 30, 0, 0, 5, 1));
+        assertEquals(3, particles.size());
+
+        // The first particle dies and the last one takes its slot
+        particles.update();
+        assertEquals(2, particles.size());
+        assertEquals(20, particles.getX(0));
+        assertEquals(22, particles.getY(0));
+        assertEquals(0, particles.getColor(0));
+        assertEquals(9, particles.getX(1));
+        assertEquals(1, particles.getColor(1));
+
+        particles.update();
+        assertEquals(0, particles.size());
+        assertTrue(particles.spawn(30, 30, 0, 0, 5, 1));
+    }
+
+    @Test
+    public void testGameSnapshotRoundTripsAndRejectsCorruption() throws Exception {
+        SnakeEngine engine = new SnakeEngine(600, 600, 42L);
+        engine.reset();
+        engine.getSnake().grow(40);
+        engine.step(Direction.DOWN);
+        Path dir = Files.createTempDirectory("snapshot");
+        Path file = dir.resolve("game.snapshot");
+        try {
+            GameSnapshot snapshot = new GameSnapshot();
+            snapshot.capture(engine);
+            snapshot.write(file);
+            assertFalse(Files.exists(dir.resolve("game.snapshot.tmp")));
+
+            GameSnapshot saved = GameSnapshot.read(file);
+            SnakeEngine restored = new SnakeEngine(600, 600, 7L);
+            restored.reset();
+            saved.restore(restored, 600, 600);
+            assertEquals(engine.getScore(), restored.getScore());
+            assertEquals(engine.getSnake().getSegments().toString(),
+                    restored.getSnake().getSegments().toString());
+            assertEquals(engine.getApple().getSegments().toString(),
+                    restored.getApple().getSegments().toString());
+            assertEquals(engine.getSnake().getSnakeVY(), restored.getSnake().getSnakeVY());
+
+            // Flip one coordinate bit
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[60] ^= 1;
+            Files.write(file, bytes);
+            assertThrows(IOException.class, () -> GameSnapshot.read(file));
+            assertNull(GameSnapshot.read(dir.resolve("missing.snapshot")));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testPersistenceServiceCoalescesWrites() throws Exception {
+        Path file = Files.createTempFile("bestScore", ".txt");
+        GameMetrics metrics = new GameMetrics();
+        PersistenceService persistence = new PersistenceService(metrics, 60_000);
+        try {
+            for (int score = 1; score <= 100; score++) {
+                persistence.submit(file, Integer.toString(score).getBytes());
+            }
+            persistence.flush();
+            assertEquals("100", new String(Files.readAllBytes(file)));
+            // At most one write before the interval started, and the flush
+            assertTrue(metrics.getSampleCounts().get("persist") <= 2);
+
+            persistence.close();
+            persistence.submit(file, "101".getBytes());
+            assertEquals("101", new String(Files.readAllBytes(file)));
+        } finally {
+            persistence.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testLeaderboardKeepsTopScoresPerProfile() throws Exception {
+        Path file = Files.createTempFile("leaderboard", ".dat");
+        Files.delete(file);
+        try (Leaderboard first = Leaderboard.open(file, 4, 3);
+             Leaderboard second = Leaderboard.open(file)) {
+            // The second instance uses the layout the first one created
+            assertEquals(3, second.getEntriesPerProfile());
+
+            assertEquals(0, first.record("ana", 10, 1000L, 1L));
+            assertEquals(0, second.record("ana", 30, 2000L, 2L));
+            assertEquals(1, first.record("ana", 20, 3000L, 3L));
+            assertEquals(-1, second.record("ana", 5, 4000L, 4L));
+            assertEquals(2, first.record("ana", 15, 5000L, 5L));
+            assertEquals(0, second.record("ben", 7, 6000L, 6L));
+
+            assertEquals(30, first.getBestScore("ana"));
+            assertEquals(7, first.getBestScore("ben"));
+            assertEquals(0, first.getBestScore("cy"));
+            List<Leaderboard.Entry> entries = second.getEntries("ana");
+            assertEquals(3, entries.size());
+            assertEquals(20, entries.get(1).getScore());
+            assertEquals(3000L, entries.get(1).getTimestamp());
+            assertEquals(15, entries.get(2).getScore());
+            assertEquals(5L, entries.get(2).getSeed());
+
+            // A game in progress is recorded again as it sets new bests
+            assertEquals(0, first.record("ben", 9, 7000L, 7L));
+            assertEquals(0, second.record("ben", 12, 7000L, 7L));
+            assertEquals(0, first.record("ben", 11, 7000L, 7L));
+            entries = first.getEntries("ben");
+            assertEquals(2, entries.size());
+            assertEquals(12, entries.get(0).getScore());
+            assertEquals(7, entries.get(1).getScore());
+        }
+        try (Leaderboard reopened = Leaderboard.open(file)) {
+            assertEquals(30, reopened.getBestScore("ana"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testInputJournalReplaysSameGame() throws Exception {
+        SnakeEngine engine = new SnakeEngine(600, 400, 11L);
+        engine.reset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(bytes, engine.getSeed(), 600, 400);
+
+        SplittableRandom player = new SplittableRandom(5);
+        Direction[] directions = {Direction.RIGHT, Direction.DOWN};
+        while (engine.isPlaying()) {
+            if (engine.getTick() == 40) {
+                engine.resizeBoard(500, 400);
+                recorder.recordResize(engine.getTick(), 500, 400);
+            }
+            Direction direction = null;
+            if (player.nextInt(10) == 0) {
+                direction = directions[player.nextInt(directions.length)];
+                recorder.recordDirection(engine.getTick(), direction);
+            }
+            engine.step(direction);
+        }
+        recorder.finish(engine.getTick());
+
+        InputReplayer replayer = new InputReplayer(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(engine.getTick(), replayer.run());
+        SnakeEngine replayed = replayer.getEngine();
+        assertTrue(replayer.isFinished());
+        assertEquals(engine.getScore(), replayed.getScore());
+        assertEquals(engine.getSnake().getSegments().toString(),
+                replayed.getSnake().getSegments().toString());
+        assertEquals(500, replayed.getBoardWidth());
+    }
+
+    @Test
+    public void testInputJournalKeepsEventsOfUnfinishedGame() throws Exception {
+        SnakeEngine engine = new SnakeEngine(600, 400, 11L);
+        engine.reset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(new BufferedOutputStream(bytes),
+                engine.getSeed(), 600, 400);
+        recorder.recordDirection(engine.getTick(), Direction.DOWN);
+        engine.step(Direction.DOWN);
+        engine.resizeBoard(500, 400);
+        recorder.recordResize(engine.getTick(), 500, 400);
+        engine.step(null);
+
+        // Never finished or closed, as if the game crashed here
+        InputReplayer replayer = new InputReplayer(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        replayer.step();
+        replayer.step();
+        assertEquals(500, replayer.getEngine().getBoardWidth());
+        assertEquals(engine.getSnake().getSegments().toString(),
+                replayer.getEngine().getSnake().getSegments().toString());
+    }
+
+    @Test
+    public void testAutosaveReplaysDeltasOntoCheckpoint() throws Exception {
+        Path dir = Files.createTempDirectory("autosave");
+        Path checkpoint = dir.resolve("autosave.snapshot");
+        Path deltas = dir.resolve("autosave.deltas");
+        PersistenceService persistence = new PersistenceService(null, 0);
+        Autosave autosave = new Autosave(checkpoint, deltas, persistence, 10, 4);
+
+        SnakeEngine engine = new SnakeEngine(600, 400, 2L);
+        engine.reset();
+        autosave.start(engine);
+        String segments = null;
+        String apples = null;
+        int score = 0;
+        int seen = 0;
+        while (engine.isPlaying() && engine.getTick() < 800) {
+            // Chase the first apple so the snake grows, shrinks and eats
+            SegmentBuffer head = engine.getSnake().getSegments();
+            SegmentBuffer apple = engine.getApple().getSegments();
+            int dx = apple.getX(0) + 5 - head.firstX();
+            int dy = apple.getY(0) + 5 - head.firstY();
+            Direction direction = Math.abs(dx) > Math.abs(dy)
+                    ? (dx > 0 ? Direction.RIGHT : Direction.LEFT)
+                    : (dy > 0 ? Direction.DOWN : Direction.UP);
+            int events = engine.step(direction);
+            if ((events & SnakeEngine.GAME_OVER) != 0) {
+                break;
+            }
+            seen |= events;
+            autosave.recordTick(engine, events);
+            if (engine.getTick() % 10 == 0) {
+                segments = engine.getSnake().getSegments().toString();
+                apples = engine.getApple().getSegments().toString();
+                score = engine.getScore();
+            }
+        }
+        assertEquals(SnakeEngine.ATE_APPLE | SnakeEngine.ATE_GOLDEN_APPLE
+                | SnakeEngine.ATE_POISON_APPLE, seen);
+        persistence.close();
+
+        // A delta torn by a crash is ignored
+        Files.write(deltas, new byte[] {0, 0, 0, 9, 1, 2},
+                StandardOpenOption.APPEND);
+        GameSnapshot saved = Autosave.read(checkpoint, deltas);
+        SnakeEngine resumed = new SnakeEngine(600, 400, 2L);
+        saved.restore(resumed, 600, 400);
+        assertEquals(segments, resumed.getSnake().getSegments().toString());
+        assertEquals(apples, resumed.getApple().getSegments().toString());
+        assertEquals(score, resumed.getScore());
+        assertTrue(Files.size(deltas) < 2000);
+    }
+
+    @Test
+    public void testBatchSimulatorScoresSameOnAnyThreadCount() throws Exception {
+        BatchSimulator.Report one =
+                new BatchSimulator(24, 9L, 2000, 1, () -> BatchSimulator.CHASE).run();
+        BatchSimulator.Report four =
+                new BatchSimulator(24, 9L, 2000, 4, () -> BatchSimulator.CHASE).run();
+        assertEquals(24, four.getGames());
+        for (int i = 0; i < 24; i++) {
+            assertEquals(one.getScore(i), four.getScore(i));
+            assertEquals(one.getTicks(i), four.getTicks(i));
+            assertTrue(four.getTicks(i) <= 2000);
+        }
+        assertTrue(four.getScorePercentile(0.5) <= four.getScorePercentile(1.0));
+
+        // Game i uses the seed of the engine's i-th reset, so it can be replayed
+        SnakeEngine engine = new SnakeEngine(BatchSimulator.BOARD_WIDTH,
+                BatchSimulator.BOARD_HEIGHT, 9L);
+        engine.reset();
+        engine.reset();
+        assertEquals(four.getSeed(1), engine.getSeed());
+        while (engine.isPlaying() && engine.getTick() < 2000) {
+            engine.step(BatchSimulator.CHASE.decide(engine));
+        }
+        assertEquals(four.getScore(1), engine.getScore());
+    }
+
+    @Test
+    public void testAutopilotEatsWithoutAllocating() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)
+                ManagementFactory.getThreadMXBean();
+        SnakeEngine engine = new SnakeEngine(600, 400, 21L);
+        engine.reset();
+        Autopilot autopilot = new Autopilot();
+        engine.step(autopilot.decide(engine));
+
+        long allocated = 0;
+        while (engine.isPlaying() && engine.getTick() < 3000) {
+            int speed = engine.getSnake().getSnakeVX();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            Direction direction = autopilot.decide(engine);
+            long after = threads.getCurrentThreadAllocatedBytes();
+            // Only a slower snake needs a finer lattice, and it never slows down
+            if (speed == engine.getSnake().getSnakeVX()) {
+                allocated += after - before;
+            }
+            engine.step(direction);
+        }
+        assertEquals(0, allocated);
+        assertTrue(engine.getScore() >= 30, "score " + engine.getScore());
+    }
+
+    @Test
+    public void testGiantWorldPlaysTheSameInAnyRegionLayout() {
+        GiantWorld single = new GiantWorld(120, 90, 1, 300, 600, 9L);
+        GiantWorld sharded = new GiantWorld(120, 90, 4, 300, 600, 9L);
+        assertEquals(1, single.getRegionCount());
+        assertEquals(16, sharded.getRegionCount());
+
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            for (int t = 0; t < 200; t++) {
+                single.step(one);
+                sharded.step(many);
+            }
+        } finally {
+            one.shutdown();
+            many.shutdown();
+        }
+        assertEquals(single.checksum(), sharded.checksum());
+        assertEquals(single.getEaten(), sharded.getEaten());
+        assertTrue(sharded.getEaten() > 0);
+        assertTrue(sharded.getDeaths() > 0);
+        assertEquals(600, sharded.getFoodCount());
+        for (int id = 0; id < sharded.getSnakeCount(); id++) {
+            assertEquals(sharded.isAlive(id), !sharded.getBody(id).isEmpty());
+        }
+    }
+
+    @Test
+    public void testSnakeServerBroadcastsTheBoardToEveryPlayer() throws Exception {
+        GiantWorld world = new GiantWorld(40, 30, 1, 2, 20, 4L);
+        InetSocketAddress address =
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (SnakeServer server = new SnakeServer(address, world, 5)) {
+            server.start();
+            InetSocketAddress local = new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), server.getPort());
+            try (SnakeClient first = new SnakeClient(local);
+                 SnakeClient second = new SnakeClient(local);
+                 SnakeClient third = new SnakeClient(local)) {
+                assertTrue(first.await(5000));
+                assertTrue(second.await(5000));
+                assertEquals(Set.of(0, 1), Set.of(first.getSlot(), second.getSlot()));
+                assertEquals(40, first.getWidth());
+                assertEquals(30, first.getHeight());
+                assertEquals(2, first.getSnakeCount());
+                assertEquals(20, first.getFood().size());
+
+                // The board has a snake for two players only
+                assertFalse(third.await(200));
+                assertTrue(third.isRejected());
+
+                first.steer(Direction.UP);
+                long tick = first.getTick();
+                while (first.getTick() < tick + 5) {
+                    assertTrue(first.await(5000));
+                }
+                assertEquals(1, server.getInputsReceived());
+                assertEquals(2, server.getConnectionCount());
+                for (int id = 0; id < 2; id++) {
+                    SegmentBuffer body = first.getBody(id);
+                    for (int i = 1; i < body.size(); i++) {
+                        assertEquals(1, Math.abs(body.getX(i) - body.getX(i - 1))
+                                + Math.abs(body.getY(i) - body.getY(i - 1)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeltaCodecSendsChangesAgainstAnAckedBaseline() throws Exception {
+        SnakeEngine engine = new SnakeEngine(600, 400, 21L);
+        engine.reset();
+        Autopilot autopilot = new Autopilot();
+        Map<Long, DeltaCodec.State> received = new HashMap<>();
+        ArrayDeque<DeltaCodec.State> sent = new ArrayDeque<>();
+
+        DeltaCodec.State acked = null;
+        int largestDelta = 0;
+        while (engine.isPlaying() && engine.getTick() < 2000) {
+            engine.step(autopilot.decide(engine));
+            DeltaCodec.State state = DeltaCodec.State.of(engine);
+            byte[] delta = DeltaCodec.encode(acked, state);
+            if (acked != null) {
+                largestDelta = Math.max(largestDelta, delta.length);
+            }
+            DeltaCodec.State decoded =
+                    DeltaCodec.decode(ByteBuffer.wrap(delta), received::get);
+            assertEquals(state.getTick(), decoded.getTick());
+            assertTrue(state.sameAs(decoded), "tick " + state.getTick());
+            received.put(decoded.getTick(), decoded);
+
+            // Acks arrive three ticks late
+            sent.addLast(state);
+            if (sent.size() > 3) {
+                acked = sent.removeFirst();
+            }
+        }
+
+        // Deltas stay small while a keyframe grows with the snake
+        assertTrue(engine.getSnake().getSegments().size() > 30);
+        int keyframe = DeltaCodec.encode(null, DeltaCodec.State.of(engine)).length;
+        assertTrue(largestDelta < 64, "largest delta " + largestDelta);
+        assertTrue(keyframe > 2 * largestDelta, "keyframe " + keyframe);
+    }
+
+    @Test
+    public void testReplayFileSeeksToAnyTick() throws Exception {
+        Path dir = Files.createTempDirectory("snake-replay");
+        Path journal = dir.resolve("game.journal");
+        Path replay = dir.resolve("game.replay");
+        List<DeltaCodec.State> states = new ArrayList<>();
+
+        // Play and journal a game, keeping every state to compare against
+        SnakeEngine engine = new SnakeEngine(600, 400, 21L);
+        engine.reset();
+        Autopilot autopilot = new Autopilot();
+        try (InputRecorder recorder = new InputRecorder(Files.newOutputStream(journal),
+                engine.getSeed(), 600, 400)) {
+            states.add(DeltaCodec.State.of(engine));
+            while (engine.isPlaying() && engine.getTick() < 1500) {
+                Direction direction = autopilot.decide(engine);
+                if (direction != null) {
+                    recorder.recordDirection(engine.getTick(), direction);
+                }
+                engine.step(direction);
+                states.add(DeltaCodec.State.of(engine));
+            }
+            recorder.finish(engine.getTick());
+        }
+
+        assertEquals(states.size() - 1, ReplayFile.convert(journal, replay, 100));
+        ReplayFile file = ReplayFile.open(replay);
+        assertEquals((states.size() + 99) / 100, file.getKeyframeCount());
+        for (long tick : new long[] {states.size() - 1, 0, 750, 99, 100, 101, 1234, 1235}) {
+            DeltaCodec.State expected = states.get((int) Math.min(tick, states.size() - 1));
+            DeltaCodec.State state = file.seek(tick);
+            assertEquals(expected.getTick(), state.getTick());
+            assertTrue(expected.sameAs(state), "tick " + tick);
+        }
+        assertEquals(states.size() - 1, file.last().getTick());
+
+        // Without its index the file is scanned up to the torn record
+        byte[] bytes = Files.readAllBytes(replay);
+        Files.write(replay, Arrays.copyOf(bytes, bytes.length * 2 / 3));
+        ReplayFile torn = ReplayFile.open(replay);
+        assertTrue(torn.getKeyframeCount() > 0);
+        DeltaCodec.State last = torn.last();
+        assertTrue(last.getTick() > 0 && last.getTick() < states.size() - 1);
+        assertTrue(states.get((int) last.getTick()).sameAs(last));
+        assertTrue(states.get(42).sameAs(torn.seek(42)));
+    }
+
+    @Test
+    public void testReplayFileConvertCleansUpAfterBadJournal() throws Exception {
+        Path dir = Files.createTempDirectory("snake-replay");
+        Path journal = dir.resolve("game.journal");
+        Path replay = dir.resolve("game.replay");
+        Files.write(replay, new byte[] {1, 2, 3});
+
+        // A journal that turns to garbage a few ticks in
+        try (OutputStream out = Files.newOutputStream(journal)) {
+            InputRecorder recorder = new InputRecorder(out, 21L, 600, 400);
+            recorder.recordDirection(0, Direction.DOWN);
+            Varint.write(out, (3L << InputRecorder.KIND_BITS) | 7);
+        }
+
+        assertThrows(IOException.class, () -> ReplayFile.convert(journal, replay, 100));
+        assertFalse(Files.exists(dir.resolve("game.replay.tmp")));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(replay));
+    }
+
+    @Test
+    public void testGameSnapshotReadsLegacyTextFiles() throws Exception {
+        GameSnapshot saved = GameSnapshot.readLegacy("files/gameState.txt",
+                "files/snakeObjs.txt", "files/appleObjs.txt", "files/goldenAppleObjs.txt");
+        assertNotNull(saved);
+        assertTrue(saved.getSnakeLength() > 0);
+        assertNull(GameSnapshot.readLegacy("files/noSuchState.txt",
+                "files/snakeObjs.txt", "files/appleObjs.txt", "files/goldenAppleObjs.txt"));
+    }
+
+    @Test
+    public void testSegmentBufferWrapsAround() {
+        SegmentBuffer buffer = new SegmentBuffer();
+        for (int i = 0; i < 100; i++) {
+            buffer.addFirst(i, -i);
+            if (buffer.size() > 10) {
+                buffer.removeLast();
+            }
+        }
+        assertEquals(10, buffer.size());
+        assertEquals(99, buffer.firstX());
+        assertEquals(90, buffer.lastX());
+        assertEquals(-95, buffer.getY(4));
+        buffer.removeAt(0);
+        assertEquals(98, buffer.firstX());
+        assertEquals(9, buffer.size());
     }
 
 